@@ -0,0 +1,113 @@
+package com.mpbauer.serverless.samples.petclinic.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the bodies of <code>/api/owners</code> and <code>/api/visits</code> responses in the JSON, CBOR
+ * and Smile formats the API negotiates. The owners come with two pets each and every pet with a visit, the visits
+ * with their pets and owners. The size of each payload is printed before its first iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"owners", "visits"})
+    String resource;
+
+    /**
+     * The number of rows, 100 is the default page size.
+     */
+    @Param({"100", "500"})
+    int size;
+
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private ObjectMapper mapper;
+    private JavaType type;
+    private List<?> rows;
+    private byte[] payload;
+
+    @Setup
+    public void createPayload() throws IOException {
+        mapper = newMapper(format).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+
+        List<Owner> owners = new ArrayList<>();
+        List<Visit> visits = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            Owner owner = SerializationBenchmark.newOwner(i);
+            for (int j = 1; j <= 2; j++) {
+                Pet pet = SerializationBenchmark.newPet(2 * i + j, cat);
+                owner.addPet(pet);
+                Visit visit = SerializationBenchmark.newVisit(2 * i + j);
+                pet.addVisit(visit);
+                visits.add(visit);
+            }
+            owners.add(owner);
+        }
+        if ("owners".equals(resource)) {
+            rows = owners;
+            type = mapper.getTypeFactory().constructCollectionType(List.class, Owner.class);
+        } else {
+            rows = visits.subList(0, size);
+            type = mapper.getTypeFactory().constructCollectionType(List.class, Visit.class);
+        }
+        payload = mapper.writeValueAsBytes(rows);
+        System.out.printf("%n%s %s payload: %d bytes%n", format, resource, payload.length);
+    }
+
+    private static ObjectMapper newMapper(String format) {
+        switch (format) {
+            case "cbor":
+                return new CBORMapper();
+            case "smile":
+                return new SmileMapper();
+            default:
+                return new ObjectMapper();
+        }
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        mapper.writeValue(sink, rows);
+    }
+
+    @Benchmark
+    public List<?> decode() throws IOException {
+        return mapper.readValue(payload, type);
+    }
+}
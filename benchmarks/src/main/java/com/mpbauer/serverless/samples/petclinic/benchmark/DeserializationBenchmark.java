@@ -0,0 +1,69 @@
+package com.mpbauer.serverless.samples.petclinic.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserializes the request bodies of the owner, pet and visit endpoints with the custom deserializers of the model.
+ * Run with <code>-prof gc</code> to see the bytes allocated per operation next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+
+    private static final byte[] OWNER = ("{\"id\":1,\"firstName\":\"George\",\"lastName\":\"Franklin\","
+        + "\"address\":\"110 W. Liberty St.\",\"city\":\"Madison\",\"telephone\":\"6085551023\",\"pets\":[]}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] PET = ("{\"id\":7,\"name\":\"Samantha\",\"birthDate\":\"2012/09/04\","
+        + "\"type\":{\"id\":1,\"name\":\"cat\"},"
+        + "\"owner\":{\"id\":6,\"firstName\":\"Jean\",\"lastName\":\"Coleman\",\"address\":\"105 N. Lake St.\","
+        + "\"city\":\"Monona\",\"telephone\":\"6085552654\"},\"visits\":[]}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] VISIT = ("{\"id\":1,\"date\":\"2013/01/01\",\"description\":\"rabies shot\","
+        + "\"pet\":{\"id\":7,\"name\":\"Samantha\",\"birthDate\":\"2012/09/04\",\"type\":{\"id\":1,\"name\":\"cat\"},"
+        + "\"owner\":{\"id\":6,\"firstName\":\"Jean\",\"lastName\":\"Coleman\",\"address\":\"105 N. Lake St.\","
+        + "\"city\":\"Monona\",\"telephone\":\"6085552654\"},\"visits\":[]}}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectReader ownerReader = mapper.readerFor(Owner.class);
+    private final ObjectReader petReader = mapper.readerFor(Pet.class);
+    private final ObjectReader visitReader = mapper.readerFor(Visit.class);
+
+    @Benchmark
+    public Owner deserializeOwner() throws IOException {
+        return ownerReader.readValue(OWNER);
+    }
+
+    @Benchmark
+    public Pet deserializePet() throws IOException {
+        return petReader.readValue(PET);
+    }
+
+    @Benchmark
+    public Visit deserializeVisit() throws IOException {
+        return visitReader.readValue(VISIT);
+    }
+}
@@ -0,0 +1,114 @@
+package com.mpbauer.serverless.samples.petclinic.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes owner, pet and visit graphs with the custom serializers of the model. Run with <code>-prof gc</code> to
+ * see the bytes allocated per operation next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    /**
+     * The number of pets of the owner and the number of visits of the pet.
+     */
+    @Param({"1", "10", "100", "1000", "10000"})
+    int size;
+
+    private final ObjectMapper mapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private Owner owner;
+    private Pet pet;
+    private Visit visit;
+
+    @Setup
+    public void createGraphs() {
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+
+        owner = newOwner(1);
+        for (int i = 1; i <= size; i++) {
+            Pet ownersPet = newPet(i, cat);
+            owner.addPet(ownersPet);
+            ownersPet.addVisit(newVisit(i));
+        }
+
+        pet = newPet(size + 1, cat);
+        newOwner(2).addPet(pet);
+        for (int i = 1; i <= size; i++) {
+            pet.addVisit(newVisit(size + i));
+        }
+        visit = pet.getVisits().get(0);
+    }
+
+    @Benchmark
+    public void serializeOwner() throws IOException {
+        mapper.writeValue(sink, owner);
+    }
+
+    @Benchmark
+    public void serializePet() throws IOException {
+        mapper.writeValue(sink, pet);
+    }
+
+    @Benchmark
+    public void serializeVisit() throws IOException {
+        mapper.writeValue(sink, visit);
+    }
+
+    static Owner newOwner(int id) {
+        Owner owner = new Owner();
+        owner.setId(id);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setAddress("110 W. Liberty St.");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+        return owner;
+    }
+
+    static Pet newPet(int id, PetType type) {
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName("Leo " + id);
+        pet.setBirthDate(new Date(1283860800000L + id * 86400000L));
+        pet.setType(type);
+        return pet;
+    }
+
+    static Visit newVisit(int id) {
+        Visit visit = new Visit();
+        visit.setId(id);
+        visit.setDate(new Date(1357027200000L + id * 86400000L));
+        visit.setDescription("rabies shot");
+        return visit;
+    }
+}
@@ -0,0 +1,38 @@
+// k6 load test of the read endpoints with 2,000 concurrent clients, see "Load test" in the README.
+//
+//   k6 run -e BASE_URL=https://<service url>/petclinic -e TOKEN=<token> -e MODE=<worker|virtual> loadtest/concurrency.js
+//
+// Run it once with petclinic.virtual-threads.enabled=false and once with true, MODE only labels the results. Requests
+// that waited too long for a database connection are answered with 503 and counted as rejected, not as failed.
+import http from 'k6/http';
+import {check} from 'k6';
+import {Rate} from 'k6/metrics';
+import {BASE_URL, PARAMS, PATHS} from './petclinic.js';
+
+const MODE = __ENV.MODE || 'worker';
+const rejected = new Rate('rejected');
+
+http.setResponseCallback(http.expectedStatuses(200, 503));
+
+export const options = {
+    scenarios: {
+        clients: {
+            executor: 'constant-vus',
+            vus: 2000,
+            duration: '2m',
+            gracefulStop: '10s',
+        },
+    },
+    tags: {mode: MODE},
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        'http_req_duration{expected_response:true}': ['p(99)>0'],
+    },
+};
+
+export default function () {
+    const response = http.get(BASE_URL + PATHS[Math.floor(Math.random() * PATHS.length)], PARAMS);
+    rejected.add(response.status === 503);
+    check(response, {'status is 200': r => r.status === 200});
+}
@@ -0,0 +1,35 @@
+// k6 load test of the read endpoints, see "Load test" in the README.
+//
+//   k6 run -e BASE_URL=https://<service url>/petclinic -e TOKEN=<JWT with ROLE_OWNER_ADMIN and ROLE_VET_ADMIN> loadtest/petclinic.js
+//
+// The number of virtual users doubles every stage, the summary shows how throughput and latency follow.
+import http from 'k6/http';
+import {check} from 'k6';
+
+export const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/petclinic';
+export const PARAMS = {headers: {Authorization: `Bearer ${__ENV.TOKEN}`, Accept: 'application/json'}};
+
+export const PATHS = [
+    '/api/owners/1',
+    '/api/owners?limit=20',
+    '/api/owners/*/lastname/Davis',
+    '/api/pets/7',
+    '/api/vets/3',
+    '/api/vets',
+    '/api/visits/1',
+    '/api/pettypes',
+    '/api/specialties',
+];
+
+export const options = {
+    stages: [1, 2, 4, 8, 16, 32, 64, 128, 256].map(target => ({duration: '30s', target})),
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const response = http.get(BASE_URL + PATHS[Math.floor(Math.random() * PATHS.length)], PARAMS);
+    check(response, {'status is 200': r => r.status === 200});
+}
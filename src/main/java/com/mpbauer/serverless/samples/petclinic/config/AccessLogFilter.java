@@ -0,0 +1,138 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.vertx.core.MultiMap;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.event.Observes;
+import javax.inject.Singleton;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ResourceInfo;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one access log event per request to the <code>petclinic.access</code> category: method, path template,
+ * status, duration in microseconds and response bytes, as a JSON object on a single line.
+ * <p>
+ * The filter is a Vert.x route ahead of all others, so the duration starts when the request arrives and covers the
+ * authentication and everything after it, and requests that no resource method matched, or that are not served by
+ * RESTEasy, are logged as well, with the path <code>unmatched</code>. Once a resource method has matched, a request
+ * filter records its path template. The event is assembled once the response has been sent, so the request itself
+ * only pays for the sampling decision.
+ * A share of <code>petclinic.access-log.sample-rate</code> of the requests is logged, server errors always are. The
+ * category is written through an asynchronous handler with a bounded queue that drops events when it is full, see
+ * <code>application.properties</code>. Headers are only logged if <code>petclinic.access-log.headers</code> is set,
+ * the values of the <code>petclinic.access-log.redacted-headers</code> are replaced.
+ */
+@Singleton
+public class AccessLogFilter {
+
+    static final String REDACTED = "[redacted]";
+    static final String UNMATCHED = "unmatched";
+
+    private static final String PATH_TEMPLATE = AccessLogFilter.class.getName() + ".pathTemplate";
+
+    private static final Logger LOG = LoggerFactory.getLogger("petclinic.access");
+
+    private static final Map<Method, String> PATH_TEMPLATES = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "petclinic.access-log.sample-rate", defaultValue = "1.0")
+    double sampleRate;
+
+    @ConfigProperty(name = "petclinic.access-log.headers", defaultValue = "false")
+    boolean logHeaders;
+
+    @ConfigProperty(name = "petclinic.access-log.redacted-headers",
+        defaultValue = "Authorization,Proxy-Authorization,Cookie,Set-Cookie")
+    Set<String> redactedHeaders;
+
+    void registerRoute(@Observes Router router) {
+        router.route().order(Integer.MIN_VALUE).handler(this::logAccess);
+    }
+
+    void logAccess(RoutingContext routingContext) {
+        if (LOG.isInfoEnabled()) {
+            long start = System.nanoTime();
+            boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+            routingContext.addBodyEndHandler(ignored -> {
+                int status = routingContext.response().getStatusCode();
+                if (sampled || status >= 500) {
+                    String pathTemplate = routingContext.get(PATH_TEMPLATE);
+                    LOG.info(event(routingContext, pathTemplate == null ? UNMATCHED : pathTemplate, status,
+                        System.nanoTime() - start));
+                }
+            });
+        }
+        routingContext.next();
+    }
+
+    @ServerRequestFilter
+    public void recordPathTemplate(RoutingContext routingContext, ResourceInfo resourceInfo) {
+        routingContext.put(PATH_TEMPLATE, pathTemplate(resourceInfo.getResourceClass(), resourceInfo.getResourceMethod()));
+    }
+
+    private String event(RoutingContext routingContext, String pathTemplate, int status, long durationNanos) {
+        JsonObjectBuilder event = Json.createObjectBuilder()
+            .add("method", routingContext.request().rawMethod())
+            .add("path", pathTemplate)
+            .add("status", status)
+            .add("durationMicros", durationNanos / 1000)
+            .add("bytes", routingContext.response().bytesWritten());
+        if (logHeaders) {
+            event.add("requestHeaders", headers(routingContext.request().headers()));
+            event.add("responseHeaders", headers(routingContext.response().headers()));
+        }
+        return event.build().toString();
+    }
+
+    private JsonObjectBuilder headers(MultiMap headers) {
+        JsonObjectBuilder json = Json.createObjectBuilder();
+        for (String name : headers.names()) {
+            json.add(name.toLowerCase(Locale.ROOT), redact(name, String.join(",", headers.getAll(name)), redactedHeaders));
+        }
+        return json;
+    }
+
+    /**
+     * @return the value, or a placeholder if the header is one of the redacted ones, compared case-insensitively
+     */
+    static String redact(String name, String value, Set<String> redactedHeaders) {
+        for (String redacted : redactedHeaders) {
+            if (redacted.equalsIgnoreCase(name)) {
+                return REDACTED;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the path template of the resource method, such as <code>/api/owners/{ownerId}</code>, which unlike the
+     * request path does not grow a new value for every id
+     */
+    static String pathTemplate(Class<?> resourceClass, Method resourceMethod) {
+        if (resourceClass == null || resourceMethod == null) {
+            return UNMATCHED;
+        }
+        return PATH_TEMPLATES.computeIfAbsent(resourceMethod, method -> {
+            Path classPath = resourceClass.getAnnotation(Path.class);
+            Path methodPath = method.getAnnotation(Path.class);
+            String template = (classPath == null ? "" : "/" + classPath.value())
+                + (methodPath == null ? "" : "/" + methodPath.value());
+            template = template.replaceAll("/{2,}", "/");
+            return template.length() > 1 && template.endsWith("/")
+                ? template.substring(0, template.length() - 1)
+                : template;
+        });
+    }
+}
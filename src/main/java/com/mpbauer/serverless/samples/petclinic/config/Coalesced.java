@@ -0,0 +1,20 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets concurrent identical requests of a <code>GET</code> resource method share one response. Only for methods
+ * whose response depends on nothing but the path, the query, the <code>Accept</code> and <code>If-None-Match</code>
+ * headers and the roles of the caller.
+ *
+ * @see RequestCoalescing
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Coalesced {
+}
@@ -0,0 +1,205 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.vertx.ext.web.RoutingContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.json.Json;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers a repeated <code>POST</code> request of an {@link Idempotent} resource method with the response of the
+ * first request that had the same <code>Idempotency-Key</code> header, without running the method again. Clients
+ * that did not get a response, for example because the network dropped it, can retry without creating a second row.
+ * <p>
+ * Keys are scoped to the caller and the path. A repeat must carry the same body as the first request, a different
+ * body gets <code>422 Unprocessable Entity</code>, as in the IETF <code>Idempotency-Key</code> draft; the entries only
+ * keep a SHA-256 hash of it. Only successful responses are kept. A request that fails, or ends
+ * without a response, frees its key so that it can be retried. A repeat that arrives while the first request is still
+ * running gets <code>409 Conflict</code>. The first request reserves its key with an atomic insert into the store, so
+ * concurrent duplicates are detected without a lock around the requests.
+ * <p>
+ * The store keeps at most <code>petclinic.idempotency.maximum-size</code> keys, each for
+ * <code>petclinic.idempotency.time-to-live</code> after the first request. It only covers the requests of this
+ * instance.
+ */
+@Singleton
+public class IdempotencyKeys {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final String ENTRY = IdempotencyKeys.class.getName() + ".entry";
+    static final int MAX_KEY_LENGTH = 255;
+    // not in Response.Status of JAX-RS 2.1
+    static final int UNPROCESSABLE_ENTITY = 422;
+
+    static final Metadata KEYS = Metadata.builder()
+        .withName("petclinic.idempotency.keys")
+        .withDescription("Number of idempotency keys in the store")
+        .withType(MetricType.GAUGE)
+        .build();
+    static final Metadata REPLAYED = Metadata.builder()
+        .withName("petclinic.idempotency.replayed")
+        .withDescription("Number of repeated requests answered with the response of the first request")
+        .withType(MetricType.COUNTER)
+        .build();
+    static final Metadata CONFLICTS = Metadata.builder()
+        .withName("petclinic.idempotency.conflicts")
+        .withDescription("Number of repeated requests rejected because the first request was still running")
+        .withType(MetricType.COUNTER)
+        .build();
+
+    @ConfigProperty(name = "petclinic.idempotency.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "petclinic.idempotency.time-to-live", defaultValue = "24H")
+    Duration timeToLive;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    private Cache<String, Entry> entries;
+
+    @PostConstruct
+    void createStore() {
+        entries = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+            .build();
+    }
+
+    void registerGauge(@Observes StartupEvent event) {
+        metricRegistry.register(KEYS, (Gauge<Long>) entries::estimatedSize);
+    }
+
+    @Idempotent
+    @ServerRequestFilter
+    public Response deduplicate(ContainerRequestContext requestContext, RoutingContext routingContext)
+        throws IOException {
+        String key = requestContext.getHeaderString(HEADER);
+        if (key == null || !HttpMethod.POST.equals(requestContext.getMethod())) {
+            return null;
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return error(Response.Status.BAD_REQUEST.getStatusCode(),
+                "The " + HEADER + " header must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String caller = identity.isAnonymous() ? "" : identity.getPrincipal().getName();
+        // the body is read here to tell a retry from another request that reuses its key, the method reads it again
+        byte[] body = requestContext.getEntityStream().readAllBytes();
+        requestContext.setEntityStream(new ByteArrayInputStream(body));
+        Entry entry = new Entry(caller + '\n' + routingContext.request().path() + '\n' + key, sha256(body));
+        Entry first = entries.asMap().putIfAbsent(entry.key, entry);
+        if (first == null) {
+            requestContext.setProperty(ENTRY, entry);
+            routingContext.addEndHandler(ignored -> release(entry));
+            return null;
+        }
+        if (!MessageDigest.isEqual(first.bodyHash, entry.bodyHash)) {
+            return error(UNPROCESSABLE_ENTITY, "This " + HEADER + " was used for a request with a different body");
+        }
+        ResponseSnapshot response = first.response;
+        if (response == null) {
+            metricRegistry.counter(CONFLICTS).inc();
+            return error(Response.Status.CONFLICT.getStatusCode(),
+                "A request with this " + HEADER + " is still in progress");
+        }
+        metricRegistry.counter(REPLAYED).inc();
+        return Response.fromResponse(response.toResponse()).header(REPLAYED_HEADER, Boolean.TRUE).build();
+    }
+
+    @Idempotent
+    @ServerResponseFilter
+    public void keep(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Entry entry = (Entry) requestContext.getProperty(ENTRY);
+        if (entry == null) {
+            return;
+        }
+        if (responseContext.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            requestContext.removeProperty(ENTRY);
+            release(entry);
+            return;
+        }
+        entry.pending = ResponseSnapshot.of(responseContext);
+        if (!responseContext.hasEntity()) {
+            entry.response = entry.pending;
+        }
+    }
+
+    /**
+     * Keeps the response with the body the {@link IdempotencyKeysWriterInterceptor} captured.
+     */
+    void complete(Entry entry, MediaType mediaType, byte[] body) {
+        entry.response = entry.pending.withBody(mediaType, body);
+    }
+
+    /**
+     * Frees the key of a request that has not completed, so that it can be retried.
+     */
+    private void release(Entry entry) {
+        if (entry.response == null) {
+            entries.asMap().remove(entry.key, entry);
+        }
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Response error(int status, String message) {
+        return Response.status(status)
+            .entity(Json.createObjectBuilder().add("errorMessage", message).build().toString())
+            .type(MediaType.APPLICATION_JSON)
+            .build();
+    }
+
+    /**
+     * The first request with a key, the hash of its body, and once it has completed its response.
+     */
+    static final class Entry {
+
+        final String key;
+        final byte[] bodyHash;
+        ResponseSnapshot pending;
+        volatile ResponseSnapshot response;
+
+        Entry(String key, byte[] bodyHash) {
+            this.key = key;
+            this.bodyHash = bodyHash;
+        }
+    }
+}
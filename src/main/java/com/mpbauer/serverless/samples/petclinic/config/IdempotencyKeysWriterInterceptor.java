@@ -0,0 +1,28 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.inject.Inject;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Captures the serialized body of a response that {@link IdempotencyKeys} keeps for repeated requests.
+ */
+@Idempotent
+@Provider
+public class IdempotencyKeysWriterInterceptor implements WriterInterceptor {
+
+    @Inject
+    IdempotencyKeys idempotencyKeys;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        IdempotencyKeys.Entry entry = (IdempotencyKeys.Entry) context.getProperty(IdempotencyKeys.ENTRY);
+        if (entry == null) {
+            context.proceed();
+            return;
+        }
+        idempotencyKeys.complete(entry, context.getMediaType(), ResponseSnapshot.writeBody(context));
+    }
+}
@@ -0,0 +1,19 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets clients retry a <code>POST</code> resource method with an <code>Idempotency-Key</code> header: a repeated
+ * request with the same key gets the response of the first one instead of running the method again.
+ *
+ * @see IdempotencyKeys
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Idempotent {
+}
@@ -0,0 +1,32 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.agroal.api.AgroalPoolInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Makes pooled connections writable again after a
+ * {@link com.mpbauer.serverless.samples.petclinic.service.ReadOnlyTransactional} method used them. Agroal does not
+ * reset the read-only flag itself, so the next transaction on the connection would fail to write.
+ */
+@ApplicationScoped
+public class ReadOnlyConnectionReset implements AgroalPoolInterceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyConnectionReset.class);
+
+    @Override
+    public void onConnectionReturn(Connection connection) {
+        try {
+            if (connection.isReadOnly()) {
+                connection.setReadOnly(false);
+            }
+        } catch (SQLException e) {
+            // a connection that cannot be reset is broken and will be evicted by the pool validation
+            LOG.warn("Unable to reset read-only connection", e);
+        }
+    }
+}
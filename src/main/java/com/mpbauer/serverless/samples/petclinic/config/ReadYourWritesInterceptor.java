@@ -0,0 +1,33 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.transaction.Transactional;
+
+/**
+ * Records a write of the current caller in {@link ReplicaRouting} and in {@link RequestCoalescing} once a
+ * {@link Transactional} method returned. It runs outside of the transaction interceptor, so the window starts after
+ * the commit.
+ */
+@Transactional
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 199)
+public class ReadYourWritesInterceptor {
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Inject
+    RequestCoalescing requestCoalescing;
+
+    @AroundInvoke
+    Object recordWrite(InvocationContext context) throws Exception {
+        Object result = context.proceed();
+        replicaRouting.recordWrite();
+        requestCoalescing.recordWrite();
+        return result;
+    }
+}
@@ -0,0 +1,141 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.arc.Arc;
+import io.quarkus.security.identity.SecurityIdentity;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides whether a {@link com.mpbauer.serverless.samples.petclinic.service.ReadOnlyTransactional} call reads from
+ * the primary or from the optional <code>replica</code> datasource.
+ * <p>
+ * Both datasources are Hibernate tenants (<code>quarkus.hibernate-orm.multitenant=DATABASE</code>), the tenant is
+ * chosen when the session of a transaction is opened, see {@link ReplicaTenantResolver}. Only sessions opened by
+ * {@link #openSession(Runnable)} can go to the replica, everything else, and every read of a caller that wrote within
+ * the last <code>petclinic.replica.read-your-writes-window</code>, stays on the primary so replication lag never hides
+ * the caller's own changes. Callers are told apart by their principal name; anonymous callers share one window.
+ */
+@ApplicationScoped
+public class ReplicaRouting {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final String ANONYMOUS = "";
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    @ConfigProperty(name = "petclinic.replica.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "petclinic.replica.read-your-writes-window", defaultValue = "5S")
+    Duration readYourWritesWindow;
+
+    @Inject
+    @DataSource(REPLICA)
+    Instance<AgroalDataSource> replicaDataSource;
+
+    @Inject
+    SecurityIdentity identity;
+
+    private final ThreadLocal<Boolean> openingReplicaSession = new ThreadLocal<>();
+
+    // caller -> System.nanoTime() until which its reads go to the primary
+    private final ConcurrentMap<String, Long> readYourWritesDeadlines = new ConcurrentHashMap<>();
+
+    /**
+     * @return <code>true</code> if routing is enabled and a <code>replica</code> datasource is configured
+     */
+    public boolean isEnabled() {
+        return enabled && replicaDataSource.isResolvable();
+    }
+
+    /**
+     * @return how long the reads of a caller stay on the primary after it wrote, the replication lag the routing
+     * allows for
+     */
+    public Duration getReadYourWritesWindow() {
+        return readYourWritesWindow;
+    }
+
+    /**
+     * @return the replica datasource, only available if {@link #isEnabled()}
+     */
+    public AgroalDataSource getReplicaDataSource() {
+        return replicaDataSource.get();
+    }
+
+    /**
+     * Opens the session of a read-only transaction, on the replica unless the current caller has to read its own
+     * writes.
+     *
+     * @param opener the first call on the transaction scoped session, which opens the session of the transaction
+     */
+    public void openSession(Runnable opener) {
+        if (!readsFromReplica()) {
+            opener.run();
+            return;
+        }
+        openingReplicaSession.set(Boolean.TRUE);
+        try {
+            opener.run();
+        } finally {
+            openingReplicaSession.remove();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if a read-only transaction the current caller opened now would read from the replica
+     */
+    public boolean readsFromReplica() {
+        return isEnabled() && !isWithinReadYourWritesWindow(currentCaller());
+    }
+
+    /**
+     * @return the tenant of the session that is being opened on the current thread
+     */
+    public String currentTenant() {
+        return Boolean.TRUE.equals(openingReplicaSession.get()) ? REPLICA : PRIMARY;
+    }
+
+    /**
+     * Starts the read-your-writes window of the current caller after one of its transactions committed.
+     */
+    public void recordWrite() {
+        if (!isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (readYourWritesDeadlines.size() > PURGE_THRESHOLD) {
+            readYourWritesDeadlines.values().removeIf(deadline -> deadline - now < 0);
+        }
+        readYourWritesDeadlines.put(currentCaller(), now + readYourWritesWindow.toNanos());
+    }
+
+    private boolean isWithinReadYourWritesWindow(String caller) {
+        Long deadline = readYourWritesDeadlines.get(caller);
+        if (deadline == null) {
+            return false;
+        }
+        if (deadline - System.nanoTime() < 0) {
+            readYourWritesDeadlines.remove(caller, deadline);
+            return false;
+        }
+        return true;
+    }
+
+    private String currentCaller() {
+        // the identity is request scoped, calls outside of a request are anonymous
+        if (!Arc.container().requestContext().isActive() || identity.isAnonymous()) {
+            return ANONYMOUS;
+        }
+        return identity.getPrincipal().getName();
+    }
+}
@@ -0,0 +1,30 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.hibernate.orm.runtime.customized.QuarkusConnectionProvider;
+import io.quarkus.hibernate.orm.runtime.tenant.TenantConnectionResolver;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Maps the tenants of {@link ReplicaTenantResolver} to the default and the <code>replica</code> datasource.
+ */
+@ApplicationScoped
+public class ReplicaTenantConnectionResolver implements TenantConnectionResolver {
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Override
+    public ConnectionProvider resolve(String tenantId) {
+        if (ReplicaRouting.REPLICA.equals(tenantId)) {
+            return new QuarkusConnectionProvider(replicaRouting.getReplicaDataSource());
+        }
+        return new QuarkusConnectionProvider(dataSource);
+    }
+}
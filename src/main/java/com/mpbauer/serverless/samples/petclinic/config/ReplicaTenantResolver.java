@@ -0,0 +1,26 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.quarkus.hibernate.orm.runtime.tenant.TenantResolver;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Resolves the Hibernate tenant, and with it the datasource, of a newly opened session. See {@link ReplicaRouting}.
+ */
+@ApplicationScoped
+public class ReplicaTenantResolver implements TenantResolver {
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Override
+    public String getDefaultTenantId() {
+        return ReplicaRouting.PRIMARY;
+    }
+
+    @Override
+    public String resolveTenantId() {
+        return replicaRouting.currentTenant();
+    }
+}
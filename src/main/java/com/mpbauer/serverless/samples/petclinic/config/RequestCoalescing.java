@@ -0,0 +1,143 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.RoutingContext;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Answers concurrent identical requests of a {@link Coalesced} resource method with one response. The first request
+ * runs the method; requests with the same path, query, <code>Accept</code> and <code>If-None-Match</code> headers,
+ * caller roles and {@link ReplicaRouting} target that arrive while it is in flight wait for it and get its status,
+ * headers and serialized body. The service call, its SQL and the serialization run once for all of them. Once the
+ * response has been written the next request runs the method again; nothing is cached.
+ * <p>
+ * A committed write ends the sharing of the calls in flight, they may have read the data before the write. While the
+ * reads of a caller stay on the primary after its own write, it only joins calls that read from the primary too. A
+ * caller that reads after its own write therefore never gets an older response than it would have without
+ * coalescing. If the first request ends without a response, for example because its client went away, the waiting
+ * requests run the method themselves.
+ */
+@Singleton
+public class RequestCoalescing {
+
+    static final String CALL = RequestCoalescing.class.getName() + ".call";
+
+    static final Metadata COALESCED = Metadata.builder()
+        .withName("petclinic.requests.coalesced")
+        .withDescription("Number of requests answered with the response of an identical request in flight")
+        .withType(MetricType.COUNTER)
+        .build();
+
+    private final ConcurrentMap<String, Call> inFlight = new ConcurrentHashMap<>();
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    @Coalesced
+    @ServerRequestFilter
+    public Uni<Response> coalesce(ContainerRequestContext requestContext, RoutingContext routingContext) {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())) {
+            return Uni.createFrom().nullItem();
+        }
+        Call call = new Call(key(requestContext, routingContext));
+        Call leader = inFlight.putIfAbsent(call.key, call);
+        if (leader == null) {
+            requestContext.setProperty(CALL, call);
+            routingContext.addEndHandler(ignored -> complete(call, null));
+            return Uni.createFrom().nullItem();
+        }
+        metricRegistry.counter(COALESCED).inc();
+        return Uni.createFrom().completionStage(leader.result)
+            .map(shared -> shared == null ? null : shared.toResponse());
+    }
+
+    @Coalesced
+    @ServerResponseFilter
+    public void share(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Call call = (Call) requestContext.getProperty(CALL);
+        if (call == null) {
+            return;
+        }
+        call.response = ResponseSnapshot.of(responseContext);
+        if (!responseContext.hasEntity()) {
+            complete(call, call.response);
+        }
+    }
+
+    /**
+     * Shares the body the {@link RequestCoalescingWriterInterceptor} captured.
+     */
+    void share(Call call, MediaType mediaType, byte[] body) {
+        complete(call, call.response.withBody(mediaType, body));
+    }
+
+    /**
+     * Ends the sharing of the calls in flight once a transaction has committed.
+     */
+    public void recordWrite() {
+        inFlight.clear();
+    }
+
+    private void complete(Call call, ResponseSnapshot response) {
+        inFlight.remove(call.key, call);
+        call.result.complete(response);
+    }
+
+    private String key(ContainerRequestContext requestContext, RoutingContext routingContext) {
+        // the path and query as sent, which unlike the decoded values cannot contain the separator
+        StringBuilder key = new StringBuilder(routingContext.request().path()).append('\n');
+        String query = routingContext.request().query();
+        if (query != null) {
+            // the order of the parameters does not change the response
+            String[] parameters = query.split("&");
+            Arrays.sort(parameters);
+            key.append(String.join("&", parameters));
+        }
+        key.append('\n').append(new TreeSet<>(identity.getRoles()))
+            .append('\n').append(requestContext.getHeaderString(HttpHeaders.ACCEPT))
+            .append('\n').append(requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH))
+            .append('\n').append(replicaRouting.readsFromReplica() ? ReplicaRouting.REPLICA : ReplicaRouting.PRIMARY);
+        return key.toString();
+    }
+
+    /**
+     * A request in flight whose response is shared.
+     */
+    static final class Call {
+
+        final String key;
+        final CompletableFuture<ResponseSnapshot> result = new CompletableFuture<>();
+        ResponseSnapshot response;
+
+        Call(String key) {
+            this.key = key;
+        }
+    }
+}
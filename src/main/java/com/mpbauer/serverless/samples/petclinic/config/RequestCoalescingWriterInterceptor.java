@@ -0,0 +1,29 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.inject.Inject;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Captures the serialized body of a response that {@link RequestCoalescing} shares, so the requests that wait for it
+ * get the same bytes instead of serializing the entities again.
+ */
+@Coalesced
+@Provider
+public class RequestCoalescingWriterInterceptor implements WriterInterceptor {
+
+    @Inject
+    RequestCoalescing requestCoalescing;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        RequestCoalescing.Call call = (RequestCoalescing.Call) context.getProperty(RequestCoalescing.CALL);
+        if (call == null) {
+            context.proceed();
+            return;
+        }
+        requestCoalescing.share(call, context.getMediaType(), ResponseSnapshot.writeBody(context));
+    }
+}
@@ -0,0 +1,78 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The status, headers and serialized body of a response, to answer other requests with. See {@link RequestCoalescing}
+ * and {@link IdempotencyKeys}.
+ * <p>
+ * Status and headers are taken in a response filter. Writer interceptors only run for responses with a body, they
+ * capture the body with {@link #writeBody(WriterInterceptorContext)}.
+ */
+final class ResponseSnapshot {
+
+    final int status;
+    final MultivaluedMap<String, Object> headers;
+    final MediaType mediaType;
+    final byte[] body;
+
+    private ResponseSnapshot(int status, MultivaluedMap<String, Object> headers, MediaType mediaType, byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.mediaType = mediaType;
+        this.body = body;
+    }
+
+    /**
+     * @return the status and headers of the response, without a body
+     */
+    static ResponseSnapshot of(ContainerResponseContext responseContext) {
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>(responseContext.getHeaders());
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        return new ResponseSnapshot(responseContext.getStatus(), headers, null, null);
+    }
+
+    /**
+     * @return this snapshot with the body
+     */
+    ResponseSnapshot withBody(MediaType mediaType, byte[] body) {
+        return new ResponseSnapshot(status, headers, mediaType, body);
+    }
+
+    /**
+     * @return a new response with the status, headers and body of the snapshot
+     */
+    Response toResponse() {
+        Response.ResponseBuilder response = Response.status(status).replaceAll(new MultivaluedHashMap<>(headers));
+        return body == null ? response.build() : response.entity(body).type(mediaType).build();
+    }
+
+    /**
+     * Serializes the body of the response into a buffer and then writes it to the client.
+     *
+     * @return the serialized body
+     */
+    static byte[] writeBody(WriterInterceptorContext context) throws IOException {
+        OutputStream out = context.getOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        context.setOutputStream(body);
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(out);
+        }
+        byte[] bytes = body.toByteArray();
+        out.write(bytes);
+        out.close();
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.InjectableContext;
+import io.quarkus.arc.ManagedContext;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the blocking work of the REST resources, and with it the {@code ClinicService} transactions, on virtual
+ * threads when <code>petclinic.virtual-threads.enabled</code> is set and the JVM supports them (Java 21 and later).
+ * Otherwise the work runs on the worker thread the resource method was called on.
+ * <p>
+ * A resource method hands its work to {@link #run(Callable)} and returns the result. On a virtual thread the worker
+ * thread is released right away. Resource methods that run on the event loop hand the work they cannot do there to
+ * {@link #runOffEventLoop(Callable)}, which runs it on a virtual thread or on the worker pool. The request context is carried over, so request scoped beans such as the security
+ * identity stay available. The number of concurrent database calls is limited by
+ * {@link com.mpbauer.serverless.samples.petclinic.service.ConnectionLimit}, not by the number of threads.
+ * <p>
+ * The JDBC driver, the transaction manager and Hibernate hold monitors while they talk to the database, which pins
+ * the virtual thread to its carrier thread for every round trip. No more database calls run at the same time than
+ * there are carrier threads (<code>jdk.virtualThreadScheduler.parallelism</code>, the number of CPUs by default). The
+ * connection limit is only capped at that number with <code>petclinic.virtual-threads.limit-to-carriers</code>.
+ */
+@ApplicationScoped
+public class VirtualThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+    // on Java 19 and 20 the factory method exists, but it fails unless the preview features are enabled
+    private static final int MIN_JAVA_VERSION = 21;
+
+    @ConfigProperty(name = "petclinic.virtual-threads.enabled", defaultValue = "false")
+    boolean enabled;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void createExecutor() {
+        if (!enabled) {
+            return;
+        }
+        if (Runtime.version().feature() < MIN_JAVA_VERSION) {
+            LOG.warn("Virtual threads need Java {} or later, blocking endpoints stay on the worker pool",
+                MIN_JAVA_VERSION);
+            return;
+        }
+        try {
+            // looked up reflectively, the application is still compiled for Java 11
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.info("Running blocking endpoints on virtual threads with {} carrier threads", getCarrierThreads());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if blocking work runs on virtual threads
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * @return the number of carrier threads of the virtual thread scheduler
+     */
+    public int getCarrierThreads() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param work the blocking work of a request
+     * @return the result of the work, computed on a virtual thread or right away on the calling thread
+     */
+    public <T> Uni<T> run(Callable<T> work) {
+        if (executor == null) {
+            return call(work);
+        }
+        return runOn(executor, work);
+    }
+
+    /**
+     * @param work blocking work of a request whose resource method runs on the event loop
+     * @return the result of the work, computed on a virtual thread or on a thread of the worker pool
+     */
+    public <T> Uni<T> runOffEventLoop(Callable<T> work) {
+        return runOn(executor != null ? executor : Infrastructure.getDefaultWorkerPool(), work);
+    }
+
+    private static <T> Uni<T> runOn(Executor executor, Callable<T> work) {
+        ManagedContext requestContext = Arc.container().requestContext();
+        InjectableContext.ContextState state = requestContext.isActive() ? requestContext.getState() : null;
+        return Uni.createFrom().deferred(() -> {
+            if (state == null) {
+                return call(work);
+            }
+            requestContext.activate(state);
+            try {
+                return call(work);
+            } finally {
+                // leaves the context to the request, which destroys it when it ends
+                requestContext.deactivate();
+            }
+        }).runSubscriptionOn(executor);
+    }
+
+    private static <T> Uni<T> call(Callable<T> work) {
+        try {
+            return Uni.createFrom().item(work.call());
+        } catch (Exception e) {
+            return Uni.createFrom().failure(e);
+        }
+    }
+}
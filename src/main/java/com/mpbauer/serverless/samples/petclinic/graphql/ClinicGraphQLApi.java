@@ -0,0 +1,141 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.rest.KeysetPagination;
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import org.eclipse.microprofile.graphql.Description;
+import org.eclipse.microprofile.graphql.GraphQLApi;
+import org.eclipse.microprofile.graphql.Id;
+import org.eclipse.microprofile.graphql.Name;
+import org.eclipse.microprofile.graphql.Query;
+import org.eclipse.microprofile.graphql.Source;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * GraphQL queries over the {@link ClinicService}, served at <code>/api/graphql</code>. Clients select the fields they
+ * need instead of getting the fixed shapes of the REST resources.
+ * <p>
+ * The queries return read-only views of the entities, loaded without their collections. The pets of owners and the
+ * visits of pets are resolved in batches: each of these fields is loaded for all entities of one level of the result
+ * at once, so a query for owners, their pets and the pets' visits runs three SQL statements however many owners it
+ * returns.
+ */
+@GraphQLApi
+public class ClinicGraphQLApi {
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    KeysetPagination pagination;
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @Query
+    @Description("An owner by id")
+    public OwnerView owner(@Name("id") @Id int id) {
+        return view(this.clinicService.findOwnerById(id, Owner.GRAPH_SUMMARY), OwnerView::new);
+    }
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @Query
+    @Description("The owners whose last name starts with lastName, or a page of all owners ordered by id")
+    public List<OwnerView> owners(@Name("lastName") String lastName, @Name("after") Integer after,
+                                  @Name("limit") Integer limit) {
+        if (lastName != null) {
+            return views(this.clinicService.findOwnerByLastName(lastName, Owner.GRAPH_SUMMARY), OwnerView::new);
+        }
+        return views(this.clinicService.findOwnersPage(after, this.pagination.pageSize(limit), Owner.GRAPH_SUMMARY),
+            OwnerView::new);
+    }
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @Query
+    @Description("A pet by id")
+    public PetView pet(@Name("id") @Id int id) {
+        return view(this.clinicService.findPetById(id, Pet.GRAPH_SUMMARY), PetView::new);
+    }
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @Query
+    @Description("A page of pets ordered by id")
+    public List<PetView> pets(@Name("after") Integer after, @Name("limit") Integer limit) {
+        return views(this.clinicService.findPetsPage(after, this.pagination.pageSize(limit), Pet.GRAPH_SUMMARY),
+            PetView::new);
+    }
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @Query
+    @Description("A visit by id")
+    public VisitView visit(@Name("id") @Id int id) {
+        return view(this.clinicService.findVisitById(id), VisitView::new);
+    }
+
+    @RolesAllowed(Roles.VET_ADMIN)
+    @Query
+    @Description("A vet by id")
+    public VetView vet(@Name("id") @Id int id) {
+        return view(this.clinicService.findVetById(id), VetView::new);
+    }
+
+    @RolesAllowed(Roles.VET_ADMIN)
+    @Query
+    @Description("All vets")
+    public List<VetView> vets() {
+        return views(this.clinicService.findAllVets(), VetView::new);
+    }
+
+    @RolesAllowed({Roles.OWNER_ADMIN, Roles.VET_ADMIN})
+    @Query
+    @Description("All pet types")
+    public List<PetTypeView> petTypes() {
+        return views(this.clinicService.findAllPetTypes(), PetTypeView::new);
+    }
+
+    @RolesAllowed(Roles.VET_ADMIN)
+    @Query
+    @Description("All specialties")
+    public List<SpecialtyView> specialties() {
+        return views(this.clinicService.findAllSpecialties(), SpecialtyView::new);
+    }
+
+    /**
+     * @return the pets of each owner, ordered by name
+     */
+    @Description("The pets of the owner, ordered by name")
+    public List<List<PetView>> pets(@Source List<OwnerView> owners) {
+        List<Integer> ownerIds = owners.stream().map(OwnerView::getId).collect(Collectors.toList());
+        Map<Integer, List<PetView>> pets = this.clinicService.findPetsByOwnerIds(ownerIds).stream()
+            .map(PetView::new)
+            .collect(Collectors.groupingBy(pet -> pet.getOwner().getId()));
+        return ownerIds.stream().map(id -> pets.getOrDefault(id, List.of())).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the visits of each pet, ordered by date
+     */
+    @Description("The visits of the pet, ordered by date")
+    public List<List<VisitView>> visits(@Source List<PetView> pets) {
+        List<Integer> petIds = pets.stream().map(PetView::getId).collect(Collectors.toList());
+        Map<Integer, List<VisitView>> visits = this.clinicService.findVisitsByPetIds(petIds).stream()
+            .map(VisitView::new)
+            .collect(Collectors.groupingBy(visit -> visit.getPet().getId()));
+        return petIds.stream().map(id -> visits.getOrDefault(id, List.of())).collect(Collectors.toList());
+    }
+
+    private static <T, V> V view(T entity, Function<T, V> view) {
+        return entity == null ? null : view.apply(entity);
+    }
+
+    private static <T, V> List<V> views(Collection<T> entities, Function<T, V> view) {
+        return entities.stream().map(view).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,51 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import org.eclipse.microprofile.graphql.Type;
+
+/**
+ * GraphQL type of an {@link Owner}. Its pets are resolved in batches by {@link ClinicGraphQLApi}.
+ */
+@Type("Owner")
+public class OwnerView {
+
+    private final Integer id;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String city;
+    private final String telephone;
+
+    public OwnerView(Owner owner) {
+        this.id = owner.getId();
+        this.firstName = owner.getFirstName();
+        this.lastName = owner.getLastName();
+        this.address = owner.getAddress();
+        this.city = owner.getCity();
+        this.telephone = owner.getTelephone();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public String getTelephone() {
+        return telephone;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import org.eclipse.microprofile.graphql.Type;
+
+/**
+ * GraphQL type of a {@link PetType}.
+ */
+@Type("PetType")
+public class PetTypeView {
+
+    private final Integer id;
+    private final String name;
+
+    public PetTypeView(PetType petType) {
+        this.id = petType.getId();
+        this.name = petType.getName();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,48 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import org.eclipse.microprofile.graphql.Type;
+
+import java.time.LocalDate;
+
+/**
+ * GraphQL type of a {@link Pet}, created from a pet that was loaded with its type and owner. Its visits are resolved
+ * in batches by {@link ClinicGraphQLApi}.
+ */
+@Type("Pet")
+public class PetView {
+
+    private final Integer id;
+    private final String name;
+    private final LocalDate birthDate;
+    private final PetTypeView type;
+    private final OwnerView owner;
+
+    public PetView(Pet pet) {
+        this.id = pet.getId();
+        this.name = pet.getName();
+        this.birthDate = VisitView.toLocalDate(pet.getBirthDate());
+        this.type = pet.getType() == null ? null : new PetTypeView(pet.getType());
+        this.owner = pet.getOwner() == null ? null : new OwnerView(pet.getOwner());
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDate getBirthDate() {
+        return birthDate;
+    }
+
+    public PetTypeView getType() {
+        return type;
+    }
+
+    public OwnerView getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import org.eclipse.microprofile.graphql.Type;
+
+/**
+ * GraphQL type of a {@link Specialty}.
+ */
+@Type("Specialty")
+public class SpecialtyView {
+
+    private final Integer id;
+    private final String name;
+
+    public SpecialtyView(Specialty specialty) {
+        this.id = specialty.getId();
+        this.name = specialty.getName();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import org.eclipse.microprofile.graphql.Type;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * GraphQL type of a {@link Vet}. Vets are always loaded with their specialties, which are cached along with them.
+ */
+@Type("Vet")
+public class VetView {
+
+    private final Integer id;
+    private final String firstName;
+    private final String lastName;
+    private final List<SpecialtyView> specialties;
+
+    public VetView(Vet vet) {
+        this.id = vet.getId();
+        this.firstName = vet.getFirstName();
+        this.lastName = vet.getLastName();
+        this.specialties = vet.getSpecialties().stream().map(SpecialtyView::new).collect(Collectors.toList());
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public List<SpecialtyView> getSpecialties() {
+        return specialties;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import org.eclipse.microprofile.graphql.Type;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * GraphQL type of a {@link Visit}, created from a visit that was loaded with its pet and the pet's type and owner.
+ */
+@Type("Visit")
+public class VisitView {
+
+    private final Integer id;
+    private final LocalDate date;
+    private final String description;
+    private final PetView pet;
+
+    public VisitView(Visit visit) {
+        this.id = visit.getId();
+        this.date = toLocalDate(visit.getDate());
+        this.description = visit.getDescription();
+        this.pet = visit.getPet() == null ? null : new PetView(visit.getPet());
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public PetView getPet() {
+        return pet;
+    }
+
+    /**
+     * The entities hold <code>java.sql.Date</code>s, which do not support {@link Date#toInstant()}.
+     */
+    static LocalDate toLocalDate(Date date) {
+        return date == null ? null : LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
+    }
+}
@@ -16,14 +16,22 @@
 package com.mpbauer.serverless.samples.petclinic.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GeneratorType;
 
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 
 /**
  * Simple JavaBean domain object with an id property. Used as a base class for objects needing this property.
+ * <p>
+ * The version is incremented by Hibernate on every update. It guards concurrent updates and is the basis of the
+ * <code>ETag</code> headers of the REST API. The change sequence is set on every insert and update, see
+ * {@link ChangeSequence}; it tells the clients of <code>/api/sync</code> which rows have changed.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -34,6 +42,14 @@ public class BaseEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     protected Integer id;
 
+    @Version
+    @Column(name = "version")
+    protected Integer version;
+
+    @GeneratorType(type = ChangeSequence.class, when = GenerationTime.ALWAYS)
+    @Column(name = "change_seq")
+    protected Long changeSeq;
+
     public Integer getId() {
         return id;
     }
@@ -41,6 +57,21 @@ public class BaseEntity {
     public void setId(Integer id) {
         this.id = id;
     }
+
+    @JsonIgnore
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
     @JsonIgnore
     public boolean isNew() {
         return this.id == null;
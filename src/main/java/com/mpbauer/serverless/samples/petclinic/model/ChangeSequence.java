@@ -0,0 +1,30 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import org.hibernate.Session;
+import org.hibernate.tuple.ValueGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Takes the next number of the <code>change_seq</code> database sequence for every insert and update of an entity, see
+ * {@link BaseEntity#getChangeSeq()}. The sequence is shared by all tables, so the numbers order the changes of all
+ * entities and of the {@link Tombstone}s of deleted ones.
+ * <p>
+ * The number is read over the session's own connection, a query through the session would flush it again.
+ */
+public class ChangeSequence implements ValueGenerator<Long> {
+
+    static final String NEXT_VALUE = "SELECT nextval('change_seq')";
+
+    @Override
+    public Long generateValue(Session session, Object owner) {
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(NEXT_VALUE);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomChangeSetSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One page of <code>/api/sync</code>: the entities inserted or updated and the {@link Tombstone}s of the entities
+ * deleted after a change sequence, see {@link BaseEntity#getChangeSeq()}.
+ * <p>
+ * A list is <code>null</code> if its entity was not requested, e.g. because the client may not read it.
+ */
+@JsonSerialize(using = JacksonCustomChangeSetSerializer.class)
+public class ChangeSet {
+
+    public static final String OWNER = "owner";
+    public static final String PET = "pet";
+    public static final String VISIT = "visit";
+    public static final String VET = "vet";
+    public static final String PET_TYPE = "petType";
+    public static final String SPECIALTY = "specialty";
+
+    public static final Set<String> ENTITIES = Set.of(OWNER, PET, VISIT, VET, PET_TYPE, SPECIALTY);
+
+    private final long since;
+    private long next;
+    private boolean more;
+    private List<Owner> owners;
+    private List<Pet> pets;
+    private List<Visit> visits;
+    private List<Vet> vets;
+    private List<PetType> petTypes;
+    private List<Specialty> specialties;
+    private List<Tombstone> deleted = new ArrayList<>();
+
+    public ChangeSet(long since) {
+        this.since = since;
+        this.next = since;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * @return the change sequence to pass as <code>since</code> for the next page
+     */
+    public long getNext() {
+        return next;
+    }
+
+    public void setNext(long next) {
+        this.next = next;
+    }
+
+    /**
+     * @return true if there are more changes after {@link #getNext()}
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    public List<Owner> getOwners() {
+        return owners;
+    }
+
+    public void setOwners(List<Owner> owners) {
+        this.owners = owners;
+    }
+
+    public List<Pet> getPets() {
+        return pets;
+    }
+
+    public void setPets(List<Pet> pets) {
+        this.pets = pets;
+    }
+
+    public List<Visit> getVisits() {
+        return visits;
+    }
+
+    public void setVisits(List<Visit> visits) {
+        this.visits = visits;
+    }
+
+    public List<Vet> getVets() {
+        return vets;
+    }
+
+    public void setVets(List<Vet> vets) {
+        this.vets = vets;
+    }
+
+    public List<PetType> getPetTypes() {
+        return petTypes;
+    }
+
+    public void setPetTypes(List<PetType> petTypes) {
+        this.petTypes = petTypes;
+    }
+
+    public List<Specialty> getSpecialties() {
+        return specialties;
+    }
+
+    public void setSpecialties(List<Specialty> specialties) {
+        this.specialties = specialties;
+    }
+
+    public List<Tombstone> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Tombstone> deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return the highest change sequence of this page, or <code>since</code> if the page is empty
+     */
+    public long getLastChangeSeq() {
+        long last = since;
+        for (Collection<? extends BaseEntity> entities : List.of(nonNull(owners), nonNull(pets), nonNull(visits),
+            nonNull(vets), nonNull(petTypes), nonNull(specialties))) {
+            for (BaseEntity entity : entities) {
+                last = Math.max(last, entity.getChangeSeq());
+            }
+        }
+        for (Tombstone tombstone : deleted) {
+            last = Math.max(last, tombstone.getChangeSeq());
+        }
+        return last;
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+}
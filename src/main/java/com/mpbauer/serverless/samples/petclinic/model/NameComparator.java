@@ -0,0 +1,46 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Orders named entities by name ignoring case, the order in which an owner's pets and a vet's specialties are kept.
+ * Entities with names that differ only in case are ordered by the exact name, and entities with the same name by id,
+ * so that the order is the same for every load and a sorted set never drops one of them. Unsaved entities come after
+ * the saved ones, among themselves they keep the order in which they
+ * were created. New entities get the highest ids, so they keep
+ * their place once they are saved.
+ * <p>
+ * The name of an entity must not change while it is in a sorted set. Updates are saved from freshly loaded entities,
+ * whose owners reload the set.
+ */
+public class NameComparator implements Comparator<NamedEntity>, Serializable {
+
+    private static final Comparator<String> NAMES = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+    private static final Comparator<Integer> IDS = Comparator.nullsLast(Comparator.naturalOrder());
+
+    /**
+     * @return the order of two names ignoring case, with <code>null</code> first
+     */
+    static int compareNames(String a, String b) {
+        return NAMES.compare(a, b);
+    }
+
+    @Override
+    public int compare(NamedEntity a, NamedEntity b) {
+        if (a == b) {
+            return 0;
+        }
+        int order = compareNames(a.getName(), b.getName());
+        if (order == 0 && a.getName() != null) {
+            order = a.getName().compareTo(b.getName());
+        }
+        if (order == 0) {
+            order = IDS.compare(a.getId(), b.getId());
+        }
+        if (order == 0 && a.getId() == null) {
+            order = Long.compare(a.getInstanceNumber(), b.getInstanceNumber());
+        }
+        return order;
+    }
+}
@@ -17,7 +17,9 @@ package com.mpbauer.serverless.samples.petclinic.model;
 
 import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotEmpty;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -30,6 +32,12 @@ import javax.validation.constraints.NotEmpty;
 @MappedSuperclass
 public class NamedEntity extends BaseEntity {
 
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    // tells unsaved entities with equal names apart in a sorted set, see NameComparator
+    @Transient
+    private transient long instanceNumber = INSTANCES.getAndIncrement();
+
     @Column(name = "name")
     @NotEmpty
     private String name;
@@ -42,6 +50,10 @@ public class NamedEntity extends BaseEntity {
         this.name = name;
     }
 
+    long getInstanceNumber() {
+        return this.instanceNumber;
+    }
+
     @Override
     public String toString() {
         return this.getName();
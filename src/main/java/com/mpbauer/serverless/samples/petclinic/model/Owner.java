@@ -20,14 +20,15 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomOwnerDeserializer;
 import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomOwnerSerializer;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.SortComparator;
 
 import javax.persistence.*;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotEmpty;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Simple JavaBean domain object representing an owner.
@@ -39,9 +40,32 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Table(name = "owners")
+@NamedEntityGraph(name = Owner.GRAPH_SUMMARY)
+@NamedEntityGraph(name = Owner.GRAPH_PETS,
+    attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pets"),
+    subgraphs = @NamedSubgraph(name = "pets", attributeNodes = @NamedAttributeNode("type")))
+@NamedEntityGraph(name = Owner.GRAPH_DETAIL,
+    attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pets"),
+    subgraphs = @NamedSubgraph(name = "pets", attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("visits")}))
 @JsonSerialize(using = JacksonCustomOwnerSerializer.class)
 @JsonDeserialize(using = JacksonCustomOwnerDeserializer.class)
 public class Owner extends Person {
+
+    /**
+     * Fetch graph for the owner columns only.
+     */
+    public static final String GRAPH_SUMMARY = "Owner.summary";
+
+    /**
+     * Fetch graph for an owner with its pets and their types, but without visits.
+     */
+    public static final String GRAPH_PETS = "Owner.pets";
+
+    /**
+     * Fetch graph for an owner with its pets, their types and their visits.
+     */
+    public static final String GRAPH_DETAIL = "Owner.detail";
+
     @Column(name = "address")
     @NotEmpty
     private String address;
@@ -55,8 +79,9 @@ public class Owner extends Person {
     @Digits(fraction = 0, integer = 10)
     private String telephone;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner", fetch = FetchType.EAGER)
-    private Set<Pet> pets;
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner", fetch = FetchType.LAZY)
+    @SortComparator(NameComparator.class)
+    private SortedSet<Pet> pets;
 
 
     public String getAddress() {
@@ -84,19 +109,31 @@ public class Owner extends Person {
     }
 
     @JsonIgnore
-    protected Set<Pet> getPetsInternal() {
+    protected SortedSet<Pet> getPetsInternal() {
         if (this.pets == null) {
-            this.pets = new HashSet<>();
+            this.pets = new TreeSet<>(new NameComparator());
         }
         return this.pets;
     }
 
-    protected void setPetsInternal(Set<Pet> pets) {
+    protected void setPetsInternal(SortedSet<Pet> pets) {
         this.pets = pets;
     }
 
+    /**
+     * @return the pets ordered by name ignoring case; they are kept in that order, so this only copies them
+     */
     public List<Pet> getPets() {
-        return getPetsInternal().stream().sorted((a, b) -> a.getName().compareToIgnoreCase(b.getName())).collect(Collectors.toUnmodifiableList());
+        return List.copyOf(getPetsInternal());
+    }
+
+    /**
+     * @return false if the pets were not part of the fetch graph this owner was loaded with
+     */
+    @JsonIgnore
+    public boolean isPetsLoaded() {
+        // with bytecode enhancement reading an unloaded field would load it, so ask the interceptor first
+        return Hibernate.isPropertyInitialized(this, "pets") && Hibernate.isInitialized(this.pets);
     }
 
     public void addPet(Pet pet) {
@@ -121,14 +158,27 @@ public class Owner extends Person {
      * @return true if pet name is already in use
      */
     public Pet getPet(String name, boolean ignoreNew) {
-        name = name.toLowerCase();
-        for (Pet pet : getPetsInternal()) {
+        // the pets are sorted by name ignoring case, then by the exact name; the probe sorts before the pets with
+        // exactly this name, so the pets whose names differ only in case lie on both sides of it
+        Pet probe = new Pet();
+        probe.setName(name);
+        probe.setId(Integer.MIN_VALUE);
+        SortedSet<Pet> pets = getPetsInternal();
+        for (Pet pet : pets.tailSet(probe)) {
+            if (NameComparator.compareNames(pet.getName(), name) != 0) {
+                break;
+            }
+            if (!ignoreNew || !pet.isNew()) {
+                return pet;
+            }
+        }
+        for (SortedSet<Pet> before = pets.headSet(probe); !before.isEmpty(); before = before.headSet(before.last())) {
+            Pet pet = before.last();
+            if (NameComparator.compareNames(pet.getName(), name) != 0) {
+                break;
+            }
             if (!ignoreNew || !pet.isNew()) {
-                String compName = pet.getName();
-                compName = compName.toLowerCase();
-                if (compName.equals(name)) {
-                    return pet;
-                }
+                return pet;
             }
         }
         return null;
@@ -0,0 +1,103 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomOwnerSummarySerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only view of an {@link Owner} with the ids and names of its pets. Used by the last name search, which does not
+ * need the pets' types and visits that loading full <code>Owner</code> entities would pull in.
+ * <p>
+ * Instances are created by a JPQL constructor expression that returns one row per owner and pet, see
+ * {@link #OwnerSummary(Integer, String, String, String, String, String, Integer, String)}. Rows of the same owner are
+ * combined with {@link #merge(OwnerSummary)}.
+ */
+@JsonSerialize(using = JacksonCustomOwnerSummarySerializer.class)
+public class OwnerSummary {
+
+    private final Integer id;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String city;
+    private final String telephone;
+    private final List<PetSummary> pets = new ArrayList<>();
+
+    /**
+     * @param petId   id of one of the owner's pets, or <code>null</code> if the owner has no pets
+     * @param petName name of that pet, or <code>null</code> if the owner has no pets
+     */
+    public OwnerSummary(Integer id, String firstName, String lastName, String address, String city, String telephone,
+                        Integer petId, String petName) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.address = address;
+        this.city = city;
+        this.telephone = telephone;
+        if (petId != null) {
+            this.pets.add(new PetSummary(petId, petName));
+        }
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public String getTelephone() {
+        return telephone;
+    }
+
+    public List<PetSummary> getPets() {
+        return Collections.unmodifiableList(pets);
+    }
+
+    /**
+     * Append the pets of another row of the same owner to this summary.
+     *
+     * @param other a summary with the same id
+     * @return this summary
+     */
+    public OwnerSummary merge(OwnerSummary other) {
+        this.pets.addAll(other.pets);
+        return this;
+    }
+
+    public static class PetSummary {
+
+        private final Integer id;
+        private final String name;
+
+        public PetSummary(Integer id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -23,7 +23,6 @@ import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomPe
 
 import javax.persistence.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Simple business object representing a pet.
@@ -34,10 +33,24 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Table(name = "pets")
+@NamedEntityGraph(name = Pet.GRAPH_SUMMARY,
+    attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("owner")})
+@NamedEntityGraph(name = Pet.GRAPH_DETAIL,
+    attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("owner"), @NamedAttributeNode("visits")})
 @JsonSerialize(using = JacksonCustomPetSerializer.class)
 @JsonDeserialize(using = JacksonCustomPetDeserializer.class)
 public class Pet extends NamedEntity {
 
+    /**
+     * Fetch graph for a pet with its type and its owner, but without its visits.
+     */
+    public static final String GRAPH_SUMMARY = "Pet.summary";
+
+    /**
+     * Fetch graph for a pet with its type, its owner and its visits.
+     */
+    public static final String GRAPH_DETAIL = "Pet.detail";
+
     @Column(name = "birth_date")
     @Temporal(TemporalType.DATE)
     private Date birthDate;
@@ -50,8 +63,9 @@ public class Pet extends NamedEntity {
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet", fetch = FetchType.EAGER)
-    private Set<Visit> visits;
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet", fetch = FetchType.LAZY)
+    @OrderBy("date ASC, id ASC")
+    private List<Visit> visits;
 
 
     public void setBirthDate(Date birthDate) {
@@ -79,24 +93,41 @@ public class Pet extends NamedEntity {
     }
 
     @JsonIgnore
-    protected Set<Visit> getVisitsInternal() {
+    protected List<Visit> getVisitsInternal() {
         if (this.visits == null) {
-            this.visits = new HashSet<>();
+            this.visits = new ArrayList<>();
         }
         return this.visits;
     }
 
-    protected void setVisitsInternal(Set<Visit> visits) {
+    protected void setVisitsInternal(List<Visit> visits) {
         this.visits = visits;
     }
 
+    /**
+     * @return the visits ordered by date, as loaded from the database and kept by {@link #addVisit(Visit)}
+     */
     public List<Visit> getVisits() {
-        return getVisitsInternal().stream().sorted(Comparator.comparing(Visit::getDate)).collect(Collectors.toUnmodifiableList());
+        return Collections.unmodifiableList(getVisitsInternal());
     }
 
+    /**
+     * Adds a visit after the visits with the same or an earlier date.
+     */
     public void addVisit(Visit visit) {
-        getVisitsInternal().add(visit);
+        List<Visit> visits = getVisitsInternal();
+        if (!visits.contains(visit)) {
+            int index = visits.size();
+            while (index > 0 && isBefore(visit, visits.get(index - 1))) {
+                index--;
+            }
+            visits.add(index, visit);
+        }
         visit.setPet(this);
     }
 
+    private static boolean isBefore(Visit visit, Visit other) {
+        return visit.getDate() != null && other.getDate() != null && visit.getDate().getTime() < other.getDate().getTime();
+    }
+
 }
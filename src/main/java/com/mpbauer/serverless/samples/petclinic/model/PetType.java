@@ -15,6 +15,7 @@
  */
 package com.mpbauer.serverless.samples.petclinic.model;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
@@ -23,6 +24,7 @@ import javax.persistence.Table;
  *         Can be Cat, Dog, Hamster...
  */
 @Entity
+@Cacheable
 @Table(name = "types")
 public class PetType extends NamedEntity {
 
@@ -15,6 +15,7 @@
  */
 package com.mpbauer.serverless.samples.petclinic.model;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
@@ -24,6 +25,7 @@ import javax.persistence.Table;
  * @author Juergen Hoeller
  */
 @Entity
+@Cacheable
 @Table(name = "specialties")
 public class Specialty extends NamedEntity {
 
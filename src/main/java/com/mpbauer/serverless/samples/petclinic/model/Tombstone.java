@@ -0,0 +1,40 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Marks a deleted row of the <code>tombstones</code> table, so the clients of <code>/api/sync</code> learn about
+ * deletes. The repositories write a tombstone for every deleted entity, including the pets and visits deleted along
+ * with their owner or pet type.
+ */
+@JsonPropertyOrder({"entity", "id"})
+public class Tombstone {
+
+    private final long changeSeq;
+    private final String entity;
+    private final Integer id;
+
+    /**
+     * @param entity one of the entity names of {@link ChangeSet}
+     * @param id     the id of the deleted entity
+     */
+    public Tombstone(long changeSeq, String entity, Integer id) {
+        this.changeSeq = changeSeq;
+        this.entity = entity;
+        this.id = id;
+    }
+
+    @JsonIgnore
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
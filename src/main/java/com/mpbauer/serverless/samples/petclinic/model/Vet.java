@@ -16,11 +16,15 @@
 package com.mpbauer.serverless.samples.petclinic.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.JacksonCustomVetSerializer;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SortComparator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlElement;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Simple JavaBean domain object representing a veterinarian.
@@ -31,29 +35,55 @@ import java.util.stream.Collectors;
  * @author Arjen Poutsma
  */
 @Entity
+@Cacheable
 @Table(name = "vets")
+@NamedEntityGraph(name = Vet.GRAPH_SUMMARY)
+@NamedEntityGraph(name = Vet.GRAPH_DETAIL, attributeNodes = @NamedAttributeNode("specialties"))
+@JsonSerialize(using = JacksonCustomVetSerializer.class)
 public class Vet extends Person {
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    /**
+     * Fetch graph for the vet columns only.
+     */
+    public static final String GRAPH_SUMMARY = "Vet.summary";
+
+    /**
+     * Fetch graph for a vet with its specialties.
+     */
+    public static final String GRAPH_DETAIL = "Vet.detail";
+
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(name = "vet_specialties", joinColumns = @JoinColumn(name = "vet_id"),
         inverseJoinColumns = @JoinColumn(name = "specialty_id"))
-    private Set<Specialty> specialties;
+    @SortComparator(NameComparator.class)
+    private SortedSet<Specialty> specialties;
 
     @JsonIgnore
-    protected Set<Specialty> getSpecialtiesInternal() {
+    protected SortedSet<Specialty> getSpecialtiesInternal() {
         if (this.specialties == null) {
-            this.specialties = new HashSet<>();
+            this.specialties = new TreeSet<>(new NameComparator());
         }
         return this.specialties;
     }
 
-    protected void setSpecialtiesInternal(Set<Specialty> specialties) {
+    protected void setSpecialtiesInternal(SortedSet<Specialty> specialties) {
         this.specialties = specialties;
     }
 
     @XmlElement
     public List<Specialty> getSpecialties() {
-        return getSpecialtiesInternal().stream().sorted(Comparator.comparing(NamedEntity::getName)).collect(Collectors.toUnmodifiableList());
+        return List.copyOf(getSpecialtiesInternal());
+    }
+
+    /**
+     * Replaces the specialties; JSON bodies are bound through this, so that they end up in the sorted set.
+     */
+    public void setSpecialties(List<Specialty> specialties) {
+        clearSpecialties();
+        if (specialties != null) {
+            specialties.forEach(this::addSpecialty);
+        }
     }
 
     @JsonIgnore
@@ -32,10 +32,18 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "visits")
+@NamedEntityGraph(name = Visit.GRAPH_DETAIL,
+    attributeNodes = @NamedAttributeNode(value = "pet", subgraph = "pet"),
+    subgraphs = @NamedSubgraph(name = "pet", attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("owner")}))
 @JsonSerialize(using = JacksonCustomVisitSerializer.class)
 @JsonDeserialize(using = JacksonCustomVisitDeserializer.class)
 public class Visit extends BaseEntity {
 
+    /**
+     * Fetch graph for a visit with its pet and the pet's type and owner.
+     */
+    public static final String GRAPH_DETAIL = "Visit.detail";
+
     /**
      * Holds value of property date.
      */
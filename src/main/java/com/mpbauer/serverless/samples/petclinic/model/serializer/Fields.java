@@ -0,0 +1,130 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A sparse fieldset, the fields of a response that a client asked for with the <code>fields</code> query parameter.
+ * The parameter is a comma separated list of field names, nested fields are addressed with dots, e.g.
+ * <code>fields=id,lastName,pets.name</code>. Naming an object or array field without a nested field selects all of its
+ * fields.
+ * <p>
+ * Controllers wrap the response body with {@link #apply(Object)}. The custom serializers look up the fieldset of the
+ * current call with {@link #of(SerializerProvider)} and skip the fields that were not selected.
+ */
+public final class Fields {
+
+    /**
+     * The name of the query parameter.
+     */
+    public static final String PARAM = "fields";
+
+    /**
+     * Selects every field, the fieldset of requests without a <code>fields</code> parameter.
+     */
+    public static final Fields ALL = new Fields(null);
+
+    // null for all fields, otherwise the selected fields with the fieldsets of their nested fields
+    private final Map<String, Fields> selected;
+
+    private Fields(Map<String, Fields> selected) {
+        this.selected = selected;
+    }
+
+    /**
+     * Parses the <code>fields</code> query parameter. JAX-RS calls this method for parameters of this type.
+     *
+     * @param spec the value of the parameter, may be <code>null</code>
+     * @return the fieldset, {@link #ALL} if the parameter is absent or blank
+     */
+    public static Fields fromString(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return ALL;
+        }
+        Fields fields = new Fields(new TreeMap<>());
+        for (String path : spec.split(",")) {
+            fields.add(path.trim().split("\\."), 0);
+        }
+        return fields;
+    }
+
+    private void add(String[] path, int index) {
+        String name = path[index];
+        if (name.isEmpty()) {
+            return;
+        }
+        if (index == path.length - 1) {
+            selected.put(name, ALL);
+            return;
+        }
+        Fields nested = selected.computeIfAbsent(name, key -> new Fields(new TreeMap<>()));
+        if (nested != ALL) {
+            nested.add(path, index + 1);
+        }
+    }
+
+    /**
+     * @param provider the provider of the current serialization
+     * @return the fieldset the response body was wrapped with, or {@link #ALL}
+     */
+    static Fields of(SerializerProvider provider) {
+        Object fields = provider.getAttribute(Fields.class);
+        return fields == null ? ALL : (Fields) fields;
+    }
+
+    public boolean isAll() {
+        return selected == null;
+    }
+
+    /**
+     * @param field the name of a field of the current object
+     * @return true if the field or one of its nested fields was selected
+     */
+    public boolean includes(String field) {
+        return selected == null || selected.containsKey(field);
+    }
+
+    /**
+     * @param field the name of an object or array field of the current object
+     * @return the fieldset of the nested objects, {@link #ALL} if the field was selected without nested fields
+     */
+    public Fields get(String field) {
+        if (selected == null) {
+            return ALL;
+        }
+        return selected.getOrDefault(field, new Fields(Collections.emptyMap()));
+    }
+
+    /**
+     * @param body an entity or a collection of entities
+     * @return the body itself if all fields are selected, otherwise the body wrapped for serialization with this
+     * fieldset
+     */
+    public Object apply(Object body) {
+        return isAll() ? body : new SparseFieldset(body, this);
+    }
+
+    /**
+     * @return the fieldset in a normalized form of the <code>fields</code> parameter
+     */
+    @Override
+    public String toString() {
+        if (selected == null) {
+            return "*";
+        }
+        StringBuilder spec = new StringBuilder();
+        selected.forEach((name, nested) -> {
+            if (spec.length() > 0) {
+                spec.append(',');
+            }
+            spec.append(name);
+            if (!nested.isAll()) {
+                spec.append('(').append(nested).append(')');
+            }
+        });
+        return spec.toString();
+    }
+}
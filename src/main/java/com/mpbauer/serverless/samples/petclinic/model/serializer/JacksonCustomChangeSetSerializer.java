@@ -0,0 +1,57 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a {@link ChangeSet}. Every entity is written flat, with the ids of the entities it refers to instead of
+ * nested copies of them; the referenced entities come with their own changes.
+ */
+public class JacksonCustomChangeSetSerializer extends StdSerializer<ChangeSet> {
+
+    static final Fields OWNER_FIELDS = Fields.fromString("id,firstName,lastName,address,city,telephone");
+    static final Fields PET_FIELDS = Fields.fromString("id,name,birthDate,type.id,owner.id");
+    static final Fields VISIT_FIELDS = Fields.fromString("id,date,description,pet.id");
+    static final Fields VET_FIELDS = Fields.fromString("id,firstName,lastName,specialties.id");
+
+    public JacksonCustomChangeSetSerializer() {
+        this(null);
+    }
+
+    public JacksonCustomChangeSetSerializer(Class<ChangeSet> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(ChangeSet changes, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        Object fields = provider.getAttribute(Fields.class);
+        jgen.writeStartObject();
+        jgen.writeNumberField("since", changes.getSince());
+        jgen.writeNumberField("next", changes.getNext());
+        jgen.writeBooleanField("more", changes.isMore());
+        writeList("owners", changes.getOwners(), OWNER_FIELDS, jgen, provider);
+        writeList("pets", changes.getPets(), PET_FIELDS, jgen, provider);
+        writeList("visits", changes.getVisits(), VISIT_FIELDS, jgen, provider);
+        writeList("vets", changes.getVets(), VET_FIELDS, jgen, provider);
+        writeList("petTypes", changes.getPetTypes(), Fields.ALL, jgen, provider);
+        writeList("specialties", changes.getSpecialties(), Fields.ALL, jgen, provider);
+        writeList("deleted", changes.getDeleted(), Fields.ALL, jgen, provider);
+        jgen.writeEndObject();
+        provider.setAttribute(Fields.class, fields);
+    }
+
+    private static void writeList(String name, List<?> list, Fields fields, JsonGenerator jgen,
+                                  SerializerProvider provider) throws IOException {
+        if (list == null) {
+            return;
+        }
+        provider.setAttribute(Fields.class, fields);
+        jgen.writeFieldName(name);
+        provider.defaultSerializeValue(list, jgen);
+    }
+}
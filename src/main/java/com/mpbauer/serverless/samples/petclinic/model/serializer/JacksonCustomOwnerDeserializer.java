@@ -17,8 +17,8 @@
 package com.mpbauer.serverless.samples.petclinic.model.serializer;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
 
@@ -40,21 +40,34 @@ public class JacksonCustomOwnerDeserializer extends StdDeserializer<Owner> {
 
     @Override
     public Owner deserialize(JsonParser parser, DeserializationContext context) throws IOException {
-        JsonNode node = parser.getCodec().readTree(parser);
         Owner owner = new Owner();
-        String firstName = node.get("firstName").asText(null);
-        String lastName = node.get("lastName").asText(null);
-        String address = node.get("address").asText(null);
-        String city = node.get("city").asText(null);
-        String telephone = node.get("telephone").asText(null);
-        if (node.hasNonNull("id")) {
-            owner.setId(node.get("id").asInt());
+        for (JsonToken token = JsonTokens.firstField(parser, context, Owner.class); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    owner.setId(JsonTokens.id(parser, context));
+                    break;
+                case "firstName":
+                    owner.setFirstName(JsonTokens.text(parser));
+                    break;
+                case "lastName":
+                    owner.setLastName(JsonTokens.text(parser));
+                    break;
+                case "address":
+                    owner.setAddress(JsonTokens.text(parser));
+                    break;
+                case "city":
+                    owner.setCity(JsonTokens.text(parser));
+                    break;
+                case "telephone":
+                    owner.setTelephone(JsonTokens.text(parser));
+                    break;
+                default:
+                    // pets are added through their own endpoint
+                    parser.skipChildren();
+            }
         }
-        owner.setFirstName(firstName);
-        owner.setLastName(lastName);
-        owner.setAddress(address);
-        owner.setCity(city);
-        owner.setTelephone(telephone);
         return owner;
     }
 
@@ -21,12 +21,9 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
-import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import java.io.IOException;
-import java.text.Format;
-import java.text.SimpleDateFormat;
 
 /**
  * @author Vitaliy Fedoriv
@@ -44,60 +41,90 @@ public class JacksonCustomOwnerSerializer extends StdSerializer<Owner> {
 
     @Override
     public void serialize(Owner owner, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-        Format formatter = new SimpleDateFormat("yyyy/MM/dd");
+        Fields fields = Fields.of(provider);
         jgen.writeStartObject();
-        if (owner.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", owner.getId());
-        }
-
-        jgen.writeStringField("firstName", owner.getFirstName());
-        jgen.writeStringField("lastName", owner.getLastName());
-        jgen.writeStringField("address", owner.getAddress());
-        jgen.writeStringField("city", owner.getCity());
-        jgen.writeStringField("telephone", owner.getTelephone());
-        // write pets array
-        jgen.writeArrayFieldStart("pets");
-        for (Pet pet : owner.getPets()) {
-            jgen.writeStartObject(); // pet
-            if (pet.getId() == null) {
+        if (fields.includes("id")) {
+            if (owner.getId() == null) {
                 jgen.writeNullField("id");
             } else {
-                jgen.writeNumberField("id", pet.getId());
+                jgen.writeNumberField("id", owner.getId());
             }
-            jgen.writeStringField("name", pet.getName());
-            jgen.writeStringField("birthDate", formatter.format(pet.getBirthDate()));
-
-            PetType petType = pet.getType();
-            jgen.writeObjectFieldStart("type");
-            jgen.writeNumberField("id", petType.getId());
-            jgen.writeStringField("name", petType.getName());
-            jgen.writeEndObject(); // type
-
-            if (pet.getOwner().getId() == null) {
-                jgen.writeNullField("owner");
-            } else {
-                jgen.writeNumberField("owner", pet.getOwner().getId());
-            }
-            // write visits array
-            jgen.writeArrayFieldStart("visits");
-            for (Visit visit : pet.getVisits()) {
-                jgen.writeStartObject(); // visit
-                if (visit.getId() == null) {
-                    jgen.writeNullField("id");
-                } else {
-                    jgen.writeNumberField("id", visit.getId());
+        }
+        if (fields.includes("firstName")) {
+            jgen.writeStringField("firstName", owner.getFirstName());
+        }
+        if (fields.includes("lastName")) {
+            jgen.writeStringField("lastName", owner.getLastName());
+        }
+        if (fields.includes("address")) {
+            jgen.writeStringField("address", owner.getAddress());
+        }
+        if (fields.includes("city")) {
+            jgen.writeStringField("city", owner.getCity());
+        }
+        if (fields.includes("telephone")) {
+            jgen.writeStringField("telephone", owner.getTelephone());
+        }
+        // pets are left out if the owner was loaded without them, e.g. in owner lists
+        if (fields.includes("pets") && owner.isPetsLoaded()) {
+            Fields petFields = fields.get("pets");
+            Fields visitFields = petFields.get("visits");
+            // write pets array
+            jgen.writeArrayFieldStart("pets");
+            for (Pet pet : owner.getPets()) {
+                jgen.writeStartObject(); // pet
+                if (petFields.includes("id")) {
+                    if (pet.getId() == null) {
+                        jgen.writeNullField("id");
+                    } else {
+                        jgen.writeNumberField("id", pet.getId());
+                    }
+                }
+                if (petFields.includes("name")) {
+                    jgen.writeStringField("name", pet.getName());
+                }
+                if (petFields.includes("birthDate")) {
+                    jgen.writeStringField("birthDate", JsonDateFormat.format(pet.getBirthDate()));
+                }
+                if (petFields.includes("type")) {
+                    JacksonCustomPetSerializer.writePetType(pet.getType(), petFields.get("type"), jgen);
+                }
+                if (petFields.includes("owner")) {
+                    if (pet.getOwner().getId() == null) {
+                        jgen.writeNullField("owner");
+                    } else {
+                        jgen.writeNumberField("owner", pet.getOwner().getId());
+                    }
+                }
+                if (petFields.includes("visits")) {
+                    // write visits array
+                    jgen.writeArrayFieldStart("visits");
+                    for (Visit visit : pet.getVisits()) {
+                        jgen.writeStartObject(); // visit
+                        if (visitFields.includes("id")) {
+                            if (visit.getId() == null) {
+                                jgen.writeNullField("id");
+                            } else {
+                                jgen.writeNumberField("id", visit.getId());
+                            }
+                        }
+                        if (visitFields.includes("date")) {
+                            jgen.writeStringField("date", JsonDateFormat.format(visit.getDate()));
+                        }
+                        if (visitFields.includes("description")) {
+                            jgen.writeStringField("description", visit.getDescription());
+                        }
+                        if (visitFields.includes("pet")) {
+                            jgen.writeNumberField("pet", visit.getPet().getId());
+                        }
+                        jgen.writeEndObject(); // visit
+                    }
+                    jgen.writeEndArray(); // visits
                 }
-                jgen.writeStringField("date", formatter.format(visit.getDate()));
-                jgen.writeStringField("description", visit.getDescription());
-                jgen.writeNumberField("pet", visit.getPet().getId());
-                jgen.writeEndObject(); // visit
+                jgen.writeEndObject(); // pet
             }
-            jgen.writeEndArray(); // visits
-            jgen.writeEndObject(); // pet
+            jgen.writeEndArray(); // pets
         }
-        jgen.writeEndArray(); // pets
         jgen.writeEndObject(); // owner
     }
 
@@ -0,0 +1,45 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.mpbauer.serverless.samples.petclinic.model.OwnerSummary;
+
+import java.io.IOException;
+
+/**
+ * Writes an {@link OwnerSummary} in the same shape as {@link JacksonCustomOwnerSerializer}, but with pets reduced to
+ * their id and name.
+ */
+public class JacksonCustomOwnerSummarySerializer extends StdSerializer<OwnerSummary> {
+
+    public JacksonCustomOwnerSummarySerializer() {
+        this(null);
+    }
+
+    public JacksonCustomOwnerSummarySerializer(Class<OwnerSummary> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(OwnerSummary owner, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        jgen.writeStartObject();
+        jgen.writeNumberField("id", owner.getId());
+        jgen.writeStringField("firstName", owner.getFirstName());
+        jgen.writeStringField("lastName", owner.getLastName());
+        jgen.writeStringField("address", owner.getAddress());
+        jgen.writeStringField("city", owner.getCity());
+        jgen.writeStringField("telephone", owner.getTelephone());
+        // write pets array
+        jgen.writeArrayFieldStart("pets");
+        for (OwnerSummary.PetSummary pet : owner.getPets()) {
+            jgen.writeStartObject(); // pet
+            jgen.writeNumberField("id", pet.getId());
+            jgen.writeStringField("name", pet.getName());
+            jgen.writeEndObject(); // pet
+        }
+        jgen.writeEndArray(); // pets
+        jgen.writeEndObject(); // owner
+    }
+
+}
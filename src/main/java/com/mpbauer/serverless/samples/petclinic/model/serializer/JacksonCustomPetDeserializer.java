@@ -17,19 +17,14 @@
 package com.mpbauer.serverless.samples.petclinic.model.serializer;
 
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * @author Vitaliy Fedoriv
@@ -46,35 +41,32 @@ public class JacksonCustomPetDeserializer extends StdDeserializer<Pet> {
     }
 
     @Override
-    public Pet deserialize(JsonParser parser, DeserializationContext context) throws IOException, JsonProcessingException {
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd");
+    public Pet deserialize(JsonParser parser, DeserializationContext context) throws IOException {
         Pet pet = new Pet();
-        Owner owner = new Owner();
-        PetType petType = new PetType();
-        ObjectMapper mapper = new ObjectMapper();
-        Date birthDate = null;
-        JsonNode node = parser.getCodec().readTree(parser);
-        JsonNode owner_node = node.get("owner");
-        JsonNode type_node = node.get("type");
-        owner = mapper.treeToValue(owner_node, Owner.class);
-        petType = mapper.treeToValue(type_node, PetType.class);
-        int petId = node.get("id").asInt();
-        String name = node.get("name").asText(null);
-        String birthDateStr = node.get("birthDate").asText(null);
-        try {
-            birthDate = formatter.parse(birthDateStr);
-        } catch (ParseException e) {
-            e.printStackTrace();
-            throw new IOException(e);
+        for (JsonToken token = JsonTokens.firstField(parser, context, Pet.class); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    pet.setId(JsonTokens.id(parser, context));
+                    break;
+                case "name":
+                    pet.setName(JsonTokens.text(parser));
+                    break;
+                case "birthDate":
+                    pet.setBirthDate(JsonDateFormat.parse(parser, context));
+                    break;
+                case "type":
+                    pet.setType(JsonTokens.object(parser, context, PetType.class));
+                    break;
+                case "owner":
+                    pet.setOwner(JsonTokens.object(parser, context, Owner.class));
+                    break;
+                default:
+                    // visits are added through their own endpoint
+                    parser.skipChildren();
+            }
         }
-
-        if (!(petId == 0)) {
-            pet.setId(petId);
-        }
-        pet.setName(name);
-        pet.setBirthDate(birthDate);
-        pet.setOwner(owner);
-        pet.setType(petType);
         return pet;
     }
 
@@ -25,8 +25,6 @@ import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import java.io.IOException;
-import java.text.Format;
-import java.text.SimpleDateFormat;
 
 /**
  * @author Vitaliy Fedoriv
@@ -44,43 +42,98 @@ public class JacksonCustomPetSerializer extends StdSerializer<Pet> {
 
     @Override
     public void serialize(Pet pet, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-        Format formatter = new SimpleDateFormat("yyyy/MM/dd");
+        Fields fields = Fields.of(provider);
         jgen.writeStartObject(); // pet
-        if (pet.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", pet.getId());
+        if (fields.includes("id")) {
+            if (pet.getId() == null) {
+                jgen.writeNullField("id");
+            } else {
+                jgen.writeNumberField("id", pet.getId());
+            }
         }
-        jgen.writeStringField("name", pet.getName());
-        jgen.writeStringField("birthDate", formatter.format(pet.getBirthDate()));
+        if (fields.includes("name")) {
+            jgen.writeStringField("name", pet.getName());
+        }
+        if (fields.includes("birthDate")) {
+            jgen.writeStringField("birthDate", JsonDateFormat.format(pet.getBirthDate()));
+        }
+        if (fields.includes("type")) {
+            writePetType(pet.getType(), fields.get("type"), jgen);
+        }
+        if (fields.includes("owner")) {
+            writeOwner(pet.getOwner(), fields.get("owner"), jgen);
+        }
+        if (fields.includes("visits")) {
+            Fields visitFields = fields.get("visits");
+            // write visits array
+            jgen.writeArrayFieldStart("visits");
+            for (Visit visit : pet.getVisits()) {
+                jgen.writeStartObject(); // visit
+                if (visitFields.includes("id")) {
+                    jgen.writeNumberField("id", visit.getId());
+                }
+                if (visitFields.includes("date")) {
+                    jgen.writeStringField("date", JsonDateFormat.format(visit.getDate()));
+                }
+                if (visitFields.includes("description")) {
+                    jgen.writeStringField("description", visit.getDescription());
+                }
+                if (visitFields.includes("pet")) {
+                    jgen.writeNumberField("pet", visit.getPet().getId());
+                }
+                jgen.writeEndObject(); // visit
+            }
+            jgen.writeEndArray(); // visits
+        }
+        jgen.writeEndObject(); // pet
+    }
 
-        PetType petType = pet.getType();
+    /**
+     * Writes the <code>type</code> field of a pet.
+     */
+    static void writePetType(PetType petType, Fields fields, JsonGenerator jgen) throws IOException {
         jgen.writeObjectFieldStart("type");
-        jgen.writeNumberField("id", petType.getId());
-        jgen.writeStringField("name", petType.getName());
+        if (fields.includes("id")) {
+            if (petType.getId() == null) {
+                jgen.writeNullField("id");
+            } else {
+                jgen.writeNumberField("id", petType.getId());
+            }
+        }
+        if (fields.includes("name")) {
+            jgen.writeStringField("name", petType.getName());
+        }
         jgen.writeEndObject(); // type
+    }
 
-        Owner owner = pet.getOwner();
+    /**
+     * Writes the <code>owner</code> field of a pet, the owner without its pets.
+     */
+    static void writeOwner(Owner owner, Fields fields, JsonGenerator jgen) throws IOException {
         jgen.writeObjectFieldStart("owner");
-        jgen.writeNumberField("id", owner.getId());
-        jgen.writeStringField("firstName", owner.getFirstName());
-        jgen.writeStringField("lastName", owner.getLastName());
-        jgen.writeStringField("address", owner.getAddress());
-        jgen.writeStringField("city", owner.getCity());
-        jgen.writeStringField("telephone", owner.getTelephone());
-        jgen.writeEndObject(); // owner
-        // write visits array
-        jgen.writeArrayFieldStart("visits");
-        for (Visit visit : pet.getVisits()) {
-            jgen.writeStartObject(); // visit
-            jgen.writeNumberField("id", visit.getId());
-            jgen.writeStringField("date", formatter.format(visit.getDate()));
-            jgen.writeStringField("description", visit.getDescription());
-            jgen.writeNumberField("pet", visit.getPet().getId());
-            jgen.writeEndObject(); // visit
+        if (fields.includes("id")) {
+            if (owner.getId() == null) {
+                jgen.writeNullField("id");
+            } else {
+                jgen.writeNumberField("id", owner.getId());
+            }
         }
-        jgen.writeEndArray(); // visits
-        jgen.writeEndObject(); // pet
+        if (fields.includes("firstName")) {
+            jgen.writeStringField("firstName", owner.getFirstName());
+        }
+        if (fields.includes("lastName")) {
+            jgen.writeStringField("lastName", owner.getLastName());
+        }
+        if (fields.includes("address")) {
+            jgen.writeStringField("address", owner.getAddress());
+        }
+        if (fields.includes("city")) {
+            jgen.writeStringField("city", owner.getCity());
+        }
+        if (fields.includes("telephone")) {
+            jgen.writeStringField("telephone", owner.getTelephone());
+        }
+        jgen.writeEndObject(); // owner
     }
 
 }
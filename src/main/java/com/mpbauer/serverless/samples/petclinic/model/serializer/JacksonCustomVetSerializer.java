@@ -0,0 +1,64 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import com.mpbauer.serverless.samples.petclinic.model.Vet;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link Vet} in the shape of the default bean serialization it replaces, but honours the {@link Fields} of
+ * the request.
+ */
+public class JacksonCustomVetSerializer extends StdSerializer<Vet> {
+
+    public JacksonCustomVetSerializer() {
+        this(null);
+    }
+
+    public JacksonCustomVetSerializer(Class<Vet> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(Vet vet, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        Fields fields = Fields.of(provider);
+        jgen.writeStartObject(); // vet
+        if (fields.includes("id")) {
+            if (vet.getId() == null) {
+                jgen.writeNullField("id");
+            } else {
+                jgen.writeNumberField("id", vet.getId());
+            }
+        }
+        if (fields.includes("firstName")) {
+            jgen.writeStringField("firstName", vet.getFirstName());
+        }
+        if (fields.includes("lastName")) {
+            jgen.writeStringField("lastName", vet.getLastName());
+        }
+        if (fields.includes("specialties")) {
+            Fields specialtyFields = fields.get("specialties");
+            jgen.writeArrayFieldStart("specialties");
+            for (Specialty specialty : vet.getSpecialties()) {
+                jgen.writeStartObject(); // specialty
+                if (specialtyFields.includes("id")) {
+                    if (specialty.getId() == null) {
+                        jgen.writeNullField("id");
+                    } else {
+                        jgen.writeNumberField("id", specialty.getId());
+                    }
+                }
+                if (specialtyFields.includes("name")) {
+                    jgen.writeStringField("name", specialty.getName());
+                }
+                jgen.writeEndObject(); // specialty
+            }
+            jgen.writeEndArray(); // specialties
+        }
+        jgen.writeEndObject(); // vet
+    }
+
+}
@@ -17,17 +17,13 @@
 package com.mpbauer.serverless.samples.petclinic.model.serializer;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * @author Vitaliy Fedoriv
@@ -45,30 +41,27 @@ public class JacksonCustomVisitDeserializer extends StdDeserializer<Visit> {
 
     @Override
     public Visit deserialize(JsonParser parser, DeserializationContext context) throws IOException {
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd");
         Visit visit = new Visit();
-        Pet pet = new Pet();
-        ObjectMapper mapper = new ObjectMapper();
-        Date visitDate = null;
-        JsonNode node = parser.getCodec().readTree(parser);
-        JsonNode pet_node = node.get("pet");
-        pet = mapper.treeToValue(pet_node, Pet.class);
-        int visitId = node.get("id").asInt();
-        String visitDateStr = node.get("date").asText(null);
-        String description = node.get("description").asText(null);
-        try {
-            visitDate = formatter.parse(visitDateStr);
-        } catch (ParseException e) {
-            e.printStackTrace();
-            throw new IOException(e);
+        for (JsonToken token = JsonTokens.firstField(parser, context, Visit.class); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    visit.setId(JsonTokens.id(parser, context));
+                    break;
+                case "date":
+                    visit.setDate(JsonDateFormat.parse(parser, context));
+                    break;
+                case "description":
+                    visit.setDescription(JsonTokens.text(parser));
+                    break;
+                case "pet":
+                    visit.setPet(JsonTokens.object(parser, context, Pet.class));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
         }
-
-        if (!(visitId == 0)) {
-            visit.setId(visitId);
-        }
-        visit.setDate(visitDate);
-        visit.setDescription(description);
-        visit.setPet(pet);
         return visit;
     }
 
@@ -19,14 +19,10 @@ package com.mpbauer.serverless.samples.petclinic.model.serializer;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
-import com.mpbauer.serverless.samples.petclinic.model.Owner;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
-import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import java.io.IOException;
-import java.text.Format;
-import java.text.SimpleDateFormat;
 
 /**
  * @author Vitaliy Fedoriv
@@ -47,50 +43,46 @@ public class JacksonCustomVisitSerializer extends StdSerializer<Visit> {
         if ((visit == null) || (visit.getPet() == null)) {
             throw new IOException("Cannot serialize Visit object - visit or visit.pet is null");
         }
-        Format formatter = new SimpleDateFormat("yyyy/MM/dd");
+        Fields fields = Fields.of(provider);
         jgen.writeStartObject(); // visit
-        if (visit.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", visit.getId());
+        if (fields.includes("id")) {
+            if (visit.getId() == null) {
+                jgen.writeNullField("id");
+            } else {
+                jgen.writeNumberField("id", visit.getId());
+            }
         }
-        jgen.writeStringField("date", formatter.format(visit.getDate()));
-        jgen.writeStringField("description", visit.getDescription());
-
-        Pet pet = visit.getPet();
-        jgen.writeObjectFieldStart("pet");
-        if (pet.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", pet.getId());
+        if (fields.includes("date")) {
+            jgen.writeStringField("date", JsonDateFormat.format(visit.getDate()));
         }
-        jgen.writeStringField("name", pet.getName());
-        jgen.writeStringField("birthDate", formatter.format(pet.getBirthDate()));
-
-        PetType petType = pet.getType();
-        jgen.writeObjectFieldStart("type");
-        if (petType.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", petType.getId());
+        if (fields.includes("description")) {
+            jgen.writeStringField("description", visit.getDescription());
         }
-        jgen.writeStringField("name", petType.getName());
-        jgen.writeEndObject(); // type
-
-        Owner owner = pet.getOwner();
-        jgen.writeObjectFieldStart("owner");
-        if (owner.getId() == null) {
-            jgen.writeNullField("id");
-        } else {
-            jgen.writeNumberField("id", owner.getId());
+        if (fields.includes("pet")) {
+            Fields petFields = fields.get("pet");
+            Pet pet = visit.getPet();
+            jgen.writeObjectFieldStart("pet");
+            if (petFields.includes("id")) {
+                if (pet.getId() == null) {
+                    jgen.writeNullField("id");
+                } else {
+                    jgen.writeNumberField("id", pet.getId());
+                }
+            }
+            if (petFields.includes("name")) {
+                jgen.writeStringField("name", pet.getName());
+            }
+            if (petFields.includes("birthDate")) {
+                jgen.writeStringField("birthDate", JsonDateFormat.format(pet.getBirthDate()));
+            }
+            if (petFields.includes("type")) {
+                JacksonCustomPetSerializer.writePetType(pet.getType(), petFields.get("type"), jgen);
+            }
+            if (petFields.includes("owner")) {
+                JacksonCustomPetSerializer.writeOwner(pet.getOwner(), petFields.get("owner"), jgen);
+            }
+            jgen.writeEndObject(); // pet
         }
-        jgen.writeStringField("firstName", owner.getFirstName());
-        jgen.writeStringField("lastName", owner.getLastName());
-        jgen.writeStringField("address", owner.getAddress());
-        jgen.writeStringField("city", owner.getCity());
-        jgen.writeStringField("telephone", owner.getTelephone());
-        jgen.writeEndObject(); // owner
-        jgen.writeEndObject(); // pet
         jgen.writeEndObject(); // visit
     }
 
@@ -0,0 +1,62 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * The <code>yyyy/MM/dd</code> format of birth and visit dates in the JSON API. Unlike a <code>SimpleDateFormat</code>
+ * the formatters are immutable, so the serializers and deserializers share one instance instead of creating one per
+ * call.
+ */
+final class JsonDateFormat {
+
+    static final String PATTERN = "yyyy/MM/dd";
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+    // like the lenient SimpleDateFormat that was used before, accept months and days without a leading zero
+    private static final DateTimeFormatter PARSER = DateTimeFormatter.ofPattern("yyyy/M/d");
+
+    // dates are stored without a time zone, SimpleDateFormat used to format them in the default one as well
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private JsonDateFormat() {
+    }
+
+    /**
+     * @param date a <code>java.util.Date</code> or a <code>java.sql.Date</code> loaded by Hibernate
+     * @return the formatted date
+     */
+    static String format(Date date) {
+        // java.sql.Date does not support toInstant()
+        return FORMATTER.format(LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), ZONE));
+    }
+
+    /**
+     * Reads the date at the current token of a parser.
+     *
+     * @param parser  a parser positioned at a string or null value
+     * @param context the context used to report a malformed date
+     * @return the start of the day in the default time zone, or <code>null</code> for a null value
+     * @throws IOException if the value is not a date in the expected format
+     */
+    static Date parse(JsonParser parser, DeserializationContext context) throws IOException {
+        String text = parser.getValueAsString();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Date.from(LocalDate.parse(text, PARSER).atStartOfDay(ZONE).toInstant());
+        } catch (DateTimeParseException e) {
+            return (Date) context.handleWeirdStringValue(Date.class, text, "expected a date in the format %s", PATTERN);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+import java.io.IOException;
+
+/**
+ * Helpers for the deserializers, which read their objects token by token in a single pass instead of building a
+ * <code>JsonNode</code> tree first.
+ */
+final class JsonTokens {
+
+    private JsonTokens() {
+    }
+
+    /**
+     * Moves a parser that is positioned at the start of an object to its first field.
+     *
+     * @param parser  a parser positioned at <code>START_OBJECT</code>, or already at the first field
+     * @param context the context used to report a value that is not an object
+     * @param type    the type that is deserialized
+     * @return the current token, a <code>FIELD_NAME</code> or the <code>END_OBJECT</code> of an empty object
+     * @throws IOException if the value is not an object
+     */
+    static JsonToken firstField(JsonParser parser, DeserializationContext context, Class<?> type) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+        if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            context.handleUnexpectedToken(type, parser);
+        }
+        return token;
+    }
+
+    /**
+     * @param parser  a parser positioned at the value of an id field
+     * @param context the context used to report a value that is not an id
+     * @return the id, or <code>null</code> for a null value
+     * @throws IOException if the value is neither a number nor a string of one
+     */
+    static Integer id(JsonParser parser, DeserializationContext context) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getIntValue();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                try {
+                    return Integer.valueOf(text);
+                } catch (NumberFormatException e) {
+                    throw InvalidFormatException.from(parser, "Not a valid id: \"" + text + "\"", text, Integer.class);
+                }
+            default:
+                return (Integer) context.handleUnexpectedToken(Integer.class, parser);
+        }
+    }
+
+    /**
+     * @param parser a parser positioned at the value of a text field
+     * @return the text, or <code>null</code> for a null value; objects and arrays are skipped and read as
+     * <code>null</code>
+     */
+    static String text(JsonParser parser) throws IOException {
+        String text = parser.getValueAsString();
+        parser.skipChildren();
+        return text;
+    }
+
+    /**
+     * Reads a nested object with the deserializer registered for its type.
+     *
+     * @param parser  a parser positioned at the value of the field
+     * @param context the context of the enclosing deserializer
+     * @param type    the type of the nested object
+     * @return the object, or <code>null</code> for a null value
+     */
+    static <T> T object(JsonParser parser, DeserializationContext context, Class<T> type) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return context.readValue(parser, type);
+    }
+}
@@ -0,0 +1,45 @@
+package com.mpbauer.serverless.samples.petclinic.model.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A response body together with the {@link Fields} to write. Serializing it makes the fieldset available to the
+ * serializers of the body and of everything nested in it.
+ */
+@JsonSerialize(using = SparseFieldset.Serializer.class)
+public final class SparseFieldset {
+
+    private final Object value;
+    private final Fields fields;
+
+    SparseFieldset(Object value, Fields fields) {
+        this.value = value;
+        this.fields = fields;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public Fields getFields() {
+        return fields;
+    }
+
+    public static class Serializer extends StdSerializer<SparseFieldset> {
+
+        public Serializer() {
+            super(SparseFieldset.class);
+        }
+
+        @Override
+        public void serialize(SparseFieldset sparse, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            provider.setAttribute(Fields.class, sparse.fields);
+            provider.defaultSerializeValue(sparse.value, jgen);
+        }
+    }
+}
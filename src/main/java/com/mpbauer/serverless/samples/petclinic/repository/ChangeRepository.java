@@ -0,0 +1,47 @@
+package com.mpbauer.serverless.samples.petclinic.repository;
+
+import com.mpbauer.serverless.samples.petclinic.model.BaseEntity;
+import com.mpbauer.serverless.samples.petclinic.model.Tombstone;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Repository for the changes of all entities, ordered by the change sequence that every insert, update and
+ * {@link Tombstone} takes, see {@link com.mpbauer.serverless.samples.petclinic.model.BaseEntity#getChangeSeq()}.
+ */
+public interface ChangeRepository {
+
+    /**
+     * Retrieve the change sequences that bound a page of changes.
+     *
+     * @param since    the change sequence of the last change the client has
+     * @param until    the change sequence of the last change that may be included
+     * @param limit    the maximum number of changes of the page
+     * @param entities the entity names of {@link com.mpbauer.serverless.samples.petclinic.model.ChangeSet} to include
+     * @return the change sequence of the last change of the page followed by the one of the first change after the
+     * page, or fewer if there are not that many changes
+     */
+    List<Long> findPageBounds(long since, long until, int limit, Set<String> entities);
+
+    /**
+     * Retrieve the inserted and updated entities of one type.
+     *
+     * @param entity     the entity class
+     * @param since      the change sequence after which the changes start
+     * @param until      the change sequence of the last change to include
+     * @param fetchGraph the name of the entity graph to load the entities with, or <code>null</code>
+     * @return the entities ordered by change sequence
+     */
+    <T extends BaseEntity> List<T> findChanged(Class<T> entity, long since, long until, String fetchGraph);
+
+    /**
+     * Retrieve the tombstones of deleted entities.
+     *
+     * @param since    the change sequence after which the changes start
+     * @param until    the change sequence of the last change to include
+     * @param entities the entity names of the tombstones to include
+     * @return the tombstones ordered by change sequence
+     */
+    List<Tombstone> findTombstones(long since, long until, Set<String> entities);
+}
@@ -0,0 +1,89 @@
+package com.mpbauer.serverless.samples.petclinic.repository;
+
+import com.mpbauer.serverless.samples.petclinic.model.BaseEntity;
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.model.Tombstone;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * JPA implementation of the {@link ChangeRepository} interface. Every query reads the <code>change_seq</code> index of
+ * its table, so the cost of a page does not depend on how old the client's change sequence is.
+ */
+@ApplicationScoped
+public class ChangeRepositoryImpl implements ChangeRepository {
+
+    private static final Map<String, String> TABLES = Map.of(
+        ChangeSet.OWNER, "owners",
+        ChangeSet.PET, "pets",
+        ChangeSet.VISIT, "visits",
+        ChangeSet.VET, "vets",
+        ChangeSet.PET_TYPE, "types",
+        ChangeSet.SPECIALTY, "specialties");
+
+    @Inject
+    @PersistenceContext
+    EntityManager em;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findPageBounds(long since, long until, int limit, Set<String> entities) {
+        StringJoiner changes = new StringJoiner(" UNION ALL ");
+        for (String entity : entities) {
+            changes.add("SELECT change_seq FROM " + TABLES.get(entity) +
+                " WHERE change_seq > :since AND change_seq <= :until");
+        }
+        changes.add("SELECT change_seq FROM tombstones " +
+            "WHERE change_seq > :since AND change_seq <= :until AND entity IN (:entities)");
+        Query query = this.em.createNativeQuery("SELECT change_seq FROM (" + changes + ") changes ORDER BY change_seq");
+        query.setParameter("since", since);
+        query.setParameter("until", until);
+        query.setParameter("entities", entities);
+        query.setFirstResult(limit - 1);
+        query.setMaxResults(2);
+        List<Long> bounds = new ArrayList<>();
+        for (Object changeSeq : query.getResultList()) {
+            bounds.add(((Number) changeSeq).longValue());
+        }
+        return bounds;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends BaseEntity> List<T> findChanged(Class<T> entity, long since, long until, String fetchGraph) {
+        // no limit, the bounds keep the result within one page
+        Query query = this.em.createQuery("SELECT DISTINCT e FROM " + entity.getSimpleName() + " e " +
+            "WHERE e.changeSeq > :since AND e.changeSeq <= :until ORDER BY e.changeSeq");
+        query.setParameter("since", since);
+        query.setParameter("until", until);
+        if (fetchGraph != null) {
+            EntityGraphs.apply(this.em, query, fetchGraph);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public List<Tombstone> findTombstones(long since, long until, Set<String> entities) {
+        List<Tombstone> tombstones = new ArrayList<>();
+        Query query = this.em.createNativeQuery("SELECT change_seq, entity, entity_id FROM tombstones " +
+            "WHERE change_seq > :since AND change_seq <= :until AND entity IN (:entities) ORDER BY change_seq");
+        query.setParameter("since", since);
+        query.setParameter("until", until);
+        query.setParameter("entities", entities);
+        for (Object row : query.getResultList()) {
+            Object[] columns = (Object[]) row;
+            tombstones.add(new Tombstone(((Number) columns[0]).longValue(), (String) columns[1],
+                ((Number) columns[2]).intValue()));
+        }
+        return tombstones;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mpbauer.serverless.samples.petclinic.repository;
+
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the named entity graphs that {@link com.mpbauer.serverless.samples.petclinic.service.ClinicService} methods
+ * pass to the repositories. The graph is used as a fetch graph, so associations that are not part of it keep the
+ * fetch type of their mapping.
+ */
+final class EntityGraphs {
+
+    private EntityGraphs() {
+    }
+
+    /**
+     * @param em        the entity manager that owns the graph
+     * @param graphName the name of a {@link javax.persistence.NamedEntityGraph}
+     * @return the properties to pass to {@link EntityManager#find(Class, Object, Map)}
+     */
+    static Map<String, Object> hints(EntityManager em, String graphName) {
+        return Collections.singletonMap(QueryHints.HINT_FETCHGRAPH, em.getEntityGraph(graphName));
+    }
+
+    /**
+     * Sets the fetch graph on a query. Graphs that contain collections join them, so such queries have to select
+     * <code>DISTINCT</code> roots; the hint keeps that <code>DISTINCT</code> out of the SQL.
+     *
+     * @param em        the entity manager that owns the graph
+     * @param query     the query to configure
+     * @param graphName the name of a {@link javax.persistence.NamedEntityGraph}
+     * @return the query
+     */
+    static <Q extends Query> Q apply(EntityManager em, Q query, String graphName) {
+        query.setHint(QueryHints.HINT_FETCHGRAPH, em.getEntityGraph(graphName));
+        query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        return query;
+    }
+
+    /**
+     * Loads the entities with the given ids. Keyset pages are first resolved to ids and then loaded with this method,
+     * because limiting a query that joins collections would make Hibernate paginate in memory.
+     *
+     * @param em        the entity manager
+     * @param entity    the entity name used in the JPQL query
+     * @param ids       the ids of the page, in order
+     * @param graphName the name of a {@link javax.persistence.NamedEntityGraph}
+     * @return the entities ordered by id
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> findByIds(EntityManager em, String entity, List<Integer> ids, String graphName) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query query = em.createQuery("SELECT DISTINCT e FROM " + entity + " e WHERE e.id IN :ids ORDER BY e.id");
+        query.setParameter("ids", ids);
+        return apply(em, query, graphName).getResultList();
+    }
+}
@@ -16,8 +16,11 @@
 package com.mpbauer.serverless.samples.petclinic.repository;
 
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.OwnerSummary;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant with Spring Data naming
@@ -35,19 +38,32 @@ public interface OwnerRepository {
      * Retrieve <code>Owner</code>s from the data store by last name, returning all owners whose last name <i>starts</i>
      * with the given name.
      *
-     * @param lastName Value to search for
+     * @param lastName   Value to search for
+     * @param fetchGraph the name of the entity graph to load the <code>Owner</code>s with
      * @return a <code>Collection</code> of matching <code>Owner</code>s (or an empty <code>Collection</code> if none
      * found)
      */
-    Collection<Owner> findByLastName(String lastName);
+    Collection<Owner> findByLastName(String lastName, String fetchGraph);
+
+    /**
+     * Retrieve <code>OwnerSummary</code> projections from the data store by last name, returning all owners whose last
+     * name <i>starts</i> with the given name together with the id and name of each of their pets. Neither pet types
+     * nor visits are loaded.
+     *
+     * @param lastName Value to search for
+     * @return a <code>Collection</code> of matching <code>OwnerSummary</code>s ordered by owner id (or an empty
+     * <code>Collection</code> if none found)
+     */
+    Collection<OwnerSummary> findSummariesByLastName(String lastName);
 
     /**
      * Retrieve an <code>Owner</code> from the data store by id.
      *
-     * @param id the id to search for
-     * @return the <code>Owner</code> if found
+     * @param id         the id to search for
+     * @param fetchGraph the name of the entity graph to load the <code>Owner</code> with
+     * @return the <code>Owner</code>, or an empty <code>Optional</code> if none found
      */
-    Owner findById(int id);
+    Optional<Owner> findById(int id, String fetchGraph);
 
 
     /**
@@ -61,10 +77,23 @@ public interface OwnerRepository {
     /**
      * Retrieve <code>Owner</code>s from the data store, returning all owners
      *
+     * @param fetchGraph the name of the entity graph to load the <code>Owner</code>s with
      * @return a <code>Collection</code> of <code>Owner</code>s (or an empty <code>Collection</code> if none
      * found)
      */
-    Collection<Owner> findAll();
+    Collection<Owner> findAll(String fetchGraph);
+
+    /**
+     * Retrieve a page of <code>Owner</code>s from the data store, ordered by id. Uses keyset pagination, so the cost
+     * of a page does not depend on how far into the table it is.
+     *
+     * @param afterId    the id of the last <code>Owner</code> of the previous page, or <code>null</code> for the first page
+     * @param limit      the maximum number of <code>Owner</code>s to return
+     * @param fetchGraph the name of the entity graph to load the <code>Owner</code>s with
+     * @return a <code>List</code> of at most <code>limit</code> <code>Owner</code>s with an id greater than
+     * <code>afterId</code>
+     */
+    List<Owner> findPage(Integer afterId, int limit, String fetchGraph);
 
     /**
      * Delete an <code>Owner</code> to the data store by <code>Owner</code>.
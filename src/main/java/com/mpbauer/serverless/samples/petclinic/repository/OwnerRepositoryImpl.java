@@ -15,14 +15,21 @@
  */
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.OwnerSummary;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Map;
 
 /**
  * JPA implementation of the {@link OwnerRepository} interface.
@@ -41,28 +48,37 @@ public class OwnerRepositoryImpl implements OwnerRepository {
     EntityManager em;
 
     /**
-     * Important: in the current version of this method, we load Owners with all their Pets and Visits while
-     * we do not need Visits at all and we only need one property from the Pet objects (the 'name' property).
-     * There are some ways to improve it such as:
-     * - creating a Ligtweight class (example here: https://community.jboss.org/wiki/LightweightClass)
-     * - Turning on lazy-loading and using OpenSessionInViewFilter
+     * Important: with {@link Owner#GRAPH_DETAIL} this method loads Owners with all their Pets and Visits. Searches
+     * that only need the pet names should use {@link #findSummariesByLastName(String)} instead.
      */
     @SuppressWarnings("unchecked")
-    public Collection<Owner> findByLastName(String lastName) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName");
+    public Collection<Owner> findByLastName(String lastName, String fetchGraph) {
+        // the fetch graph decides which associations are joined, DISTINCT removes the duplicate roots
+        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.lastName LIKE :lastName");
         query.setParameter("lastName", lastName + "%");
-        return query.getResultList();
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
     }
 
     @Override
-    public Owner findById(int id) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id");
-        query.setParameter("id", id);
-        return (Owner) query.getSingleResult();
+    public Collection<OwnerSummary> findSummariesByLastName(String lastName) {
+        // the constructor expression returns one row per owner and pet, so the rows are merged by owner id
+        // using 'left join' because it might happen that an owner does not have pets yet
+        TypedQuery<OwnerSummary> query = this.em.createQuery(
+            "SELECT NEW com.mpbauer.serverless.samples.petclinic.model.OwnerSummary(" +
+                "owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone, pet.id, pet.name) " +
+                "FROM Owner owner left join owner.pets pet WHERE owner.lastName LIKE :lastName ORDER BY owner.id, pet.name",
+            OwnerSummary.class);
+        query.setParameter("lastName", lastName + "%");
+        Map<Integer, OwnerSummary> summaries = new LinkedHashMap<>();
+        for (OwnerSummary row : query.getResultList()) {
+            summaries.merge(row.getId(), row, OwnerSummary::merge);
+        }
+        return summaries.values();
+    }
+
+    @Override
+    public Optional<Owner> findById(int id, String fetchGraph) {
+        return Optional.ofNullable(this.em.find(Owner.class, id, EntityGraphs.hints(this.em, fetchGraph)));
     }
 
 
@@ -78,13 +94,26 @@ public class OwnerRepositoryImpl implements OwnerRepository {
 
     @SuppressWarnings("unchecked")
     @Override
-    public Collection<Owner> findAll() {
-        Query query = this.em.createQuery("SELECT owner FROM Owner owner");
-        return query.getResultList();
+    public Collection<Owner> findAll(String fetchGraph) {
+        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner");
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
+    }
+
+    @Override
+    public List<Owner> findPage(Integer afterId, int limit, String fetchGraph) {
+        // ids are generated identity values and therefore always positive
+        TypedQuery<Integer> query = this.em.createQuery("SELECT owner.id FROM Owner owner WHERE owner.id > :afterId ORDER BY owner.id", Integer.class);
+        query.setParameter("afterId", afterId == null ? 0 : afterId);
+        query.setMaxResults(limit);
+        return EntityGraphs.findByIds(this.em, "Owner", query.getResultList(), fetchGraph);
     }
 
     @Override
     public void delete(Owner owner) {
+        Integer ownerId = owner.getId();
+        Tombstones.record(this.em, ChangeSet.VISIT, "visits", "pet_id IN (SELECT id FROM pets WHERE owner_id=" + ownerId + ")");
+        Tombstones.record(this.em, ChangeSet.PET, "pets", "owner_id=" + ownerId);
+        Tombstones.record(this.em, ChangeSet.OWNER, "owners", "id=" + ownerId);
         this.em.remove(this.em.contains(owner) ? owner : this.em.merge(owner));
     }
 
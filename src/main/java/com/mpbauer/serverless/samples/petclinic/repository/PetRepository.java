@@ -20,6 +20,7 @@ import com.mpbauer.serverless.samples.petclinic.model.PetType;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository class for <code>Pet</code> domain objects All method names are compliant with Spring Data naming
@@ -43,10 +44,11 @@ public interface PetRepository {
     /**
      * Retrieve a <code>Pet</code> from the data store by id.
      *
-     * @param id the id to search for
-     * @return the <code>Pet</code> if found
+     * @param id         the id to search for
+     * @param fetchGraph the name of the entity graph to load the <code>Pet</code> with
+     * @return the <code>Pet</code>, or an empty <code>Optional</code> if none found
      */
-    Pet findById(int id);
+    Optional<Pet> findById(int id, String fetchGraph);
 
     /**
      * Save a <code>Pet</code> to the data store, either inserting or updating it.
@@ -59,10 +61,33 @@ public interface PetRepository {
     /**
      * Retrieve <code>Pet</code>s from the data store, returning all owners
      *
+     * @param fetchGraph the name of the entity graph to load the <code>Pet</code>s with
      * @return a <code>Collection</code> of <code>Pet</code>s (or an empty <code>Collection</code> if none
      * found)
      */
-    Collection<Pet> findAll();
+    Collection<Pet> findAll(String fetchGraph);
+
+    /**
+     * Retrieve a page of <code>Pet</code>s from the data store, ordered by id. Uses keyset pagination, so the cost
+     * of a page does not depend on how far into the table it is.
+     *
+     * @param afterId    the id of the last <code>Pet</code> of the previous page, or <code>null</code> for the first page
+     * @param limit      the maximum number of <code>Pet</code>s to return
+     * @param fetchGraph the name of the entity graph to load the <code>Pet</code>s with
+     * @return a <code>List</code> of at most <code>limit</code> <code>Pet</code>s with an id greater than
+     * <code>afterId</code>
+     */
+    List<Pet> findPage(Integer afterId, int limit, String fetchGraph);
+
+    /**
+     * Retrieve the <code>Pet</code>s of several <code>Owner</code>s with a single query.
+     *
+     * @param ownerIds   the ids of the <code>Owner</code>s
+     * @param fetchGraph the name of the entity graph to load the <code>Pet</code>s with
+     * @return the <code>Pet</code>s of the <code>Owner</code>s, ordered by name ignoring case, then by the exact name and
+     * id like the pets of an <code>Owner</code>
+     */
+    List<Pet> findByOwnerIds(Collection<Integer> ownerIds, String fetchGraph);
 
     /**
      * Delete an <code>Pet</code> to the data store by <code>Pet</code>.
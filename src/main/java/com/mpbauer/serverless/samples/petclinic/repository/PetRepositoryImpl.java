@@ -15,15 +15,22 @@
  */
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import org.hibernate.jpa.QueryHints;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * JPA implementation of the {@link PetRepository} interface.
@@ -44,16 +51,20 @@ public class PetRepositoryImpl implements PetRepository {
     @Override
     @SuppressWarnings("unchecked")
     public List<PetType> findPetTypes() {
-        return this.em.createQuery("SELECT ptype FROM PetType ptype ORDER BY ptype.name").getResultList();
+        return this.em.createQuery("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
+            .setHint(QueryHints.HINT_CACHEABLE, true)
+            .getResultList();
     }
 
     @Override
-    public Pet findById(int id) {
-        return this.em.find(Pet.class, id);
+    public Optional<Pet> findById(int id, String fetchGraph) {
+        return Optional.ofNullable(this.em.find(Pet.class, id, EntityGraphs.hints(this.em, fetchGraph)));
     }
 
     @Override
     public void save(Pet pet) {
+        pet.setType(References.resolve(this.em, PetType.class, pet.getType()));
+        pet.setOwner(References.resolve(this.em, Owner.class, pet.getOwner()));
         if (pet.getId() == null) {
             this.em.persist(pet);
         } else {
@@ -63,17 +74,40 @@ public class PetRepositoryImpl implements PetRepository {
 
     @SuppressWarnings("unchecked")
     @Override
-    public Collection<Pet> findAll() {
-        return this.em.createQuery("SELECT pet FROM Pet pet").getResultList();
+    public Collection<Pet> findAll(String fetchGraph) {
+        Query query = this.em.createQuery("SELECT DISTINCT pet FROM Pet pet");
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
+    }
+
+    @Override
+    public List<Pet> findPage(Integer afterId, int limit, String fetchGraph) {
+        TypedQuery<Integer> query = this.em.createQuery("SELECT pet.id FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id", Integer.class);
+        query.setParameter("afterId", afterId == null ? 0 : afterId);
+        query.setMaxResults(limit);
+        return EntityGraphs.findByIds(this.em, "Pet", query.getResultList(), fetchGraph);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Pet> findByOwnerIds(Collection<Integer> ownerIds, String fetchGraph) {
+        if (ownerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query query = this.em.createQuery("SELECT DISTINCT pet FROM Pet pet WHERE pet.owner.id IN :ids ORDER BY lower(pet.name), pet.name, pet.id");
+        query.setParameter("ids", ownerIds);
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
     }
 
     @Override
     public void delete(Pet pet) {
         String petId = pet.getId().toString();
+        Tombstones.record(this.em, ChangeSet.VISIT, "visits", "pet_id=" + petId);
+        Tombstones.record(this.em, ChangeSet.PET, "pets", "id=" + petId);
         this.em.createQuery("DELETE FROM Visit visit WHERE pet_id=" + petId).executeUpdate();
         this.em.createQuery("DELETE FROM Pet pet WHERE id=" + petId).executeUpdate();
+        // the rows are gone already, so the persistence context must not try to delete them a second time
         if (em.contains(pet)) {
-            em.remove(pet);
+            em.detach(pet);
         }
     }
 
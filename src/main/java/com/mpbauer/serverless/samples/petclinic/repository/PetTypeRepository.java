@@ -19,6 +19,7 @@ package com.mpbauer.serverless.samples.petclinic.repository;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
 
 import java.util.Collection;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
@@ -26,7 +27,7 @@ import java.util.Collection;
 
 public interface PetTypeRepository {
 
-    PetType findById(int id);
+    Optional<PetType> findById(int id);
 
     Collection<PetType> findAll();
 
@@ -16,9 +16,11 @@
 
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import org.hibernate.jpa.QueryHints;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -26,6 +28,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
@@ -39,14 +42,16 @@ public class PetTypeRepositoryImpl implements PetTypeRepository {
     EntityManager em;
 
     @Override
-    public PetType findById(int id) {
-        return this.em.find(PetType.class, id);
+    public Optional<PetType> findById(int id) {
+        return Optional.ofNullable(this.em.find(PetType.class, id));
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public Collection<PetType> findAll() {
-        return this.em.createQuery("SELECT ptype FROM PetType ptype").getResultList();
+        return this.em.createQuery("SELECT ptype FROM PetType ptype")
+            .setHint(QueryHints.HINT_CACHEABLE, true)
+            .getResultList();
     }
 
     @Override
@@ -62,8 +67,11 @@ public class PetTypeRepositoryImpl implements PetTypeRepository {
     @SuppressWarnings("unchecked")
     @Override
     public void delete(PetType petType) {
-        this.em.remove(this.em.contains(petType) ? petType : this.em.merge(petType));
         Integer petTypeId = petType.getId();
+        Tombstones.record(this.em, ChangeSet.VISIT, "visits", "pet_id IN (SELECT id FROM pets WHERE type_id=" + petTypeId + ")");
+        Tombstones.record(this.em, ChangeSet.PET, "pets", "type_id=" + petTypeId);
+        Tombstones.record(this.em, ChangeSet.PET_TYPE, "types", "id=" + petTypeId);
+        this.em.remove(this.em.contains(petType) ? petType : this.em.merge(petType));
 
         List<Pet> pets = this.em.createQuery("SELECT pet FROM Pet pet WHERE type_id=" + petTypeId).getResultList();
         for (Pet pet : pets) {
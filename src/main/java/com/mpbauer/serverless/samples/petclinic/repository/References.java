@@ -0,0 +1,36 @@
+package com.mpbauer.serverless.samples.petclinic.repository;
+
+import com.mpbauer.serverless.samples.petclinic.model.BaseEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+
+/**
+ * Resolves the entities a saved entity refers to. Request bodies refer to them with a detached instance that only
+ * carries the id and has no version, which Hibernate would take for a new entity and write as a <code>null</code>
+ * foreign key. The repositories replace such an instance with the managed one before they persist or merge.
+ */
+final class References {
+
+    private References() {
+    }
+
+    /**
+     * @param em     the entity manager of the save
+     * @param type   the type of the referenced entity
+     * @param entity the referenced entity, may be <code>null</code>
+     * @return the managed entity with the id of the given one, or the given one if it is <code>null</code>, new or
+     * managed already
+     * @throws EntityNotFoundException if there is no entity with that id
+     */
+    static <T extends BaseEntity> T resolve(EntityManager em, Class<T> type, T entity) {
+        if (entity == null || entity.isNew() || em.contains(entity)) {
+            return entity;
+        }
+        T managed = em.find(type, entity.getId());
+        if (managed == null) {
+            throw new EntityNotFoundException("No " + type.getSimpleName() + " with id " + entity.getId());
+        }
+        return managed;
+    }
+}
@@ -19,6 +19,7 @@ package com.mpbauer.serverless.samples.petclinic.repository;
 import com.mpbauer.serverless.samples.petclinic.model.Specialty;
 
 import java.util.Collection;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
@@ -26,7 +27,7 @@ import java.util.Collection;
 
 public interface SpecialtyRepository {
 
-    Specialty findById(int id);
+    Optional<Specialty> findById(int id);
 
     Collection<Specialty> findAll();
 
@@ -16,13 +16,17 @@
 
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
 import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Collection;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
@@ -36,14 +40,16 @@ public class SpecialtyRepositoryImpl implements SpecialtyRepository {
     EntityManager em;
 
     @Override
-    public Specialty findById(int id) {
-        return this.em.find(Specialty.class, id);
+    public Optional<Specialty> findById(int id) {
+        return Optional.ofNullable(this.em.find(Specialty.class, id));
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public Collection<Specialty> findAll() {
-        return this.em.createQuery("SELECT s FROM Specialty s").getResultList();
+        return this.em.createQuery("SELECT s FROM Specialty s")
+            .setHint(QueryHints.HINT_CACHEABLE, true)
+            .getResultList();
     }
 
     @Override
@@ -57,9 +63,20 @@ public class SpecialtyRepositoryImpl implements SpecialtyRepository {
 
     @Override
     public void delete(Specialty specialty) {
-        this.em.remove(this.em.contains(specialty) ? specialty : this.em.merge(specialty));
         Integer specId = specialty.getId();
-        this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).executeUpdate();
+        Tombstones.record(this.em, ChangeSet.SPECIALTY, "specialties", "id=" + specId);
+        // the vets lose the specialty, so their sync clients have to fetch them again
+        this.em.createNativeQuery("UPDATE vets SET change_seq=nextval('change_seq') " +
+            "WHERE id IN (SELECT vet_id FROM vet_specialties WHERE specialty_id=" + specId + ")")
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("vets")
+            .executeUpdate();
+        this.em.remove(this.em.contains(specialty) ? specialty : this.em.merge(specialty));
+        // without a query space Hibernate would evict every second-level cache region
+        this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("vet_specialties")
+            .executeUpdate();
         this.em.createQuery("DELETE FROM Specialty specialty WHERE id=" + specId).executeUpdate();
     }
 
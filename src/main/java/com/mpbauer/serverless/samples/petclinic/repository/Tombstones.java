@@ -0,0 +1,30 @@
+package com.mpbauer.serverless.samples.petclinic.repository;
+
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Writes the {@link com.mpbauer.serverless.samples.petclinic.model.Tombstone}s of deleted rows. The repositories call
+ * it before they delete the rows, because the tombstones are selected from them.
+ */
+final class Tombstones {
+
+    private Tombstones() {
+    }
+
+    /**
+     * @param em        the entity manager of the delete
+     * @param entity    one of the entity names of {@link com.mpbauer.serverless.samples.petclinic.model.ChangeSet}
+     * @param table     the table of the entity
+     * @param condition the SQL condition of the rows that are deleted
+     */
+    static void record(EntityManager em, String entity, String table, String condition) {
+        // without a query space Hibernate would evict every second-level cache region
+        em.createNativeQuery("INSERT INTO tombstones (change_seq, entity, entity_id) " +
+            "SELECT nextval('change_seq'), '" + entity + "', id FROM " + table + " WHERE " + condition)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("tombstones")
+            .executeUpdate();
+    }
+}
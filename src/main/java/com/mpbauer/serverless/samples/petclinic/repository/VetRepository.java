@@ -18,6 +18,8 @@ package com.mpbauer.serverless.samples.petclinic.repository;
 import com.mpbauer.serverless.samples.petclinic.model.Vet;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository class for <code>Vet</code> domain objects All method names are compliant with Spring Data naming
@@ -34,11 +36,24 @@ public interface VetRepository {
     /**
      * Retrieve all <code>Vet</code>s from the data store.
      *
+     * @param fetchGraph the name of the entity graph to load the <code>Vet</code>s with
      * @return a <code>Collection</code> of <code>Vet</code>s
      */
-    Collection<Vet> findAll();
+    Collection<Vet> findAll(String fetchGraph);
 
-    Vet findById(int id);
+    /**
+     * Retrieve a page of <code>Vet</code>s from the data store, ordered by id. Uses keyset pagination, so the cost
+     * of a page does not depend on how far into the table it is.
+     *
+     * @param afterId    the id of the last <code>Vet</code> of the previous page, or <code>null</code> for the first page
+     * @param limit      the maximum number of <code>Vet</code>s to return
+     * @param fetchGraph the name of the entity graph to load the <code>Vet</code>s with
+     * @return a <code>List</code> of at most <code>limit</code> <code>Vet</code>s with an id greater than
+     * <code>afterId</code>
+     */
+    List<Vet> findPage(Integer afterId, int limit, String fetchGraph);
+
+    Optional<Vet> findById(int id, String fetchGraph);
 
     void save(Vet vet);
 
@@ -15,13 +15,21 @@
  */
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.model.Specialty;
 import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * JPA implementation of the {@link VetRepository} interface.
@@ -41,29 +49,65 @@ public class VetRepositoryImpl implements VetRepository {
 
 
     @Override
-    public Vet findById(int id) {
-        return this.em.find(Vet.class, id);
+    public Optional<Vet> findById(int id, String fetchGraph) {
+        Vet vet = this.em.find(Vet.class, id, EntityGraphs.hints(this.em, fetchGraph));
+        if (vet != null) {
+            initializeGraph(vet, fetchGraph);
+        }
+        return Optional.ofNullable(vet);
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public Collection<Vet> findAll() {
-        return this.em.createQuery("SELECT vet FROM Vet vet").getResultList();
+    public Collection<Vet> findAll(String fetchGraph) {
+        Query query = this.em.createQuery("SELECT DISTINCT vet FROM Vet vet")
+            .setHint(QueryHints.HINT_CACHEABLE, true);
+        Collection<Vet> vets = EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
+        vets.forEach(vet -> initializeGraph(vet, fetchGraph));
+        return vets;
+    }
+
+    @Override
+    public List<Vet> findPage(Integer afterId, int limit, String fetchGraph) {
+        TypedQuery<Integer> query = this.em.createQuery("SELECT vet.id FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id", Integer.class);
+        query.setParameter("afterId", afterId == null ? 0 : afterId);
+        query.setMaxResults(limit);
+        return EntityGraphs.findByIds(this.em, "Vet", query.getResultList(), fetchGraph);
     }
 
     @Override
     public void save(Vet vet) {
+        List<Specialty> specialties = vet.getSpecialties();
+        if (!specialties.stream().allMatch(this.em::contains)) {
+            vet.clearSpecialties();
+            specialties.forEach(specialty -> vet.addSpecialty(References.resolve(this.em, Specialty.class, specialty)));
+        }
         if (vet.getId() == null) {
             this.em.persist(vet);
         } else {
             this.em.merge(vet);
+            // changed specialties only write vet_specialties, the vet row would keep its change sequence
+            this.em.createNativeQuery("UPDATE vets SET change_seq=nextval('change_seq') WHERE id=" + vet.getId())
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("vets")
+                .executeUpdate();
         }
     }
 
     @Override
     public void delete(Vet vet) {
+        Tombstones.record(this.em, ChangeSet.VET, "vets", "id=" + vet.getId());
         this.em.remove(this.em.contains(vet) ? vet : this.em.merge(vet));
     }
 
-
+    /**
+     * Vets that come from the query or second-level cache are not loaded through the fetch graph, so their
+     * specialties are initialized here, from the collection cache if possible.
+     */
+    private static void initializeGraph(Vet vet, String fetchGraph) {
+        if (Vet.GRAPH_DETAIL.equals(fetchGraph)) {
+            // reading the collection initializes it
+            vet.getNrOfSpecialties();
+        }
+    }
 }
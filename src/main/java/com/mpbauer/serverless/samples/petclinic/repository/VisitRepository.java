@@ -19,6 +19,7 @@ import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository class for <code>Visit</code> domain objects All method names are compliant with Spring Data naming
@@ -40,11 +41,32 @@ public interface VisitRepository {
      */
     void save(Visit visit);
 
-    List<Visit> findByPetId(Integer petId);
+    List<Visit> findByPetId(Integer petId, String fetchGraph);
 
-    Visit findById(int id);
+    /**
+     * Retrieve the <code>Visit</code>s of several <code>Pet</code>s with a single query.
+     *
+     * @param petIds     the ids of the <code>Pet</code>s
+     * @param fetchGraph the name of the entity graph to load the <code>Visit</code>s with
+     * @return the <code>Visit</code>s of the <code>Pet</code>s, ordered by date
+     */
+    List<Visit> findByPetIds(Collection<Integer> petIds, String fetchGraph);
+
+    Optional<Visit> findById(int id, String fetchGraph);
 
-    Collection<Visit> findAll();
+    Collection<Visit> findAll(String fetchGraph);
+
+    /**
+     * Retrieve a page of <code>Visit</code>s from the data store, ordered by id. Uses keyset pagination, so the cost
+     * of a page does not depend on how far into the table it is.
+     *
+     * @param afterId    the id of the last <code>Visit</code> of the previous page, or <code>null</code> for the first page
+     * @param limit      the maximum number of <code>Visit</code>s to return
+     * @param fetchGraph the name of the entity graph to load the <code>Visit</code>s with
+     * @return a <code>List</code> of at most <code>limit</code> <code>Visit</code>s with an id greater than
+     * <code>afterId</code>
+     */
+    List<Visit> findPage(Integer afterId, int limit, String fetchGraph);
 
     void delete(Visit visit);
 
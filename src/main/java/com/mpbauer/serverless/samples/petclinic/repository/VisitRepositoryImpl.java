@@ -15,6 +15,8 @@
  */
 package com.mpbauer.serverless.samples.petclinic.repository;
 
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -22,8 +24,11 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * JPA implementation of the ClinicService interface using EntityManager.
@@ -46,6 +51,7 @@ public class VisitRepositoryImpl implements VisitRepository {
 
     @Override
     public void save(Visit visit) {
+        visit.setPet(References.resolve(this.em, Pet.class, visit.getPet()));
         if (visit.getId() == null) {
             this.em.persist(visit);
         } else {
@@ -56,26 +62,51 @@ public class VisitRepositoryImpl implements VisitRepository {
 
     @Override
     @SuppressWarnings("unchecked")
-    public List<Visit> findByPetId(Integer petId) {
-        Query query = this.em.createQuery("SELECT v FROM Visit v where v.pet.id= :id");
+    public List<Visit> findByPetId(Integer petId, String fetchGraph) {
+        Query query = this.em.createQuery("SELECT DISTINCT v FROM Visit v where v.pet.id= :id");
         query.setParameter("id", petId);
-        return query.getResultList();
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
     }
 
     @Override
-    public Visit findById(int id) {
-        return this.em.find(Visit.class, id);
+    @SuppressWarnings("unchecked")
+    public List<Visit> findByPetIds(Collection<Integer> petIds, String fetchGraph) {
+        if (petIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query query = this.em.createQuery("SELECT DISTINCT v FROM Visit v WHERE v.pet.id IN :ids ORDER BY v.date, v.id");
+        query.setParameter("ids", petIds);
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
+    }
+
+    @Override
+    public Optional<Visit> findById(int id, String fetchGraph) {
+        return Optional.ofNullable(this.em.find(Visit.class, id, EntityGraphs.hints(this.em, fetchGraph)));
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public Collection<Visit> findAll() {
-        return this.em.createQuery("SELECT v FROM Visit v").getResultList();
+    public Collection<Visit> findAll(String fetchGraph) {
+        Query query = this.em.createQuery("SELECT DISTINCT v FROM Visit v");
+        return EntityGraphs.apply(this.em, query, fetchGraph).getResultList();
+    }
+
+    @Override
+    public List<Visit> findPage(Integer afterId, int limit, String fetchGraph) {
+        TypedQuery<Integer> query = this.em.createQuery("SELECT v.id FROM Visit v WHERE v.id > :afterId ORDER BY v.id", Integer.class);
+        query.setParameter("afterId", afterId == null ? 0 : afterId);
+        query.setMaxResults(limit);
+        return EntityGraphs.findByIds(this.em, "Visit", query.getResultList(), fetchGraph);
     }
 
     @Override
     public void delete(Visit visit) {
-        this.em.remove(this.em.contains(visit) ? visit : this.em.merge(visit));
+        Tombstones.record(this.em, ChangeSet.VISIT, "visits", "id=" + visit.getId());
+        // a merged copy would be persisted again through the cascade of its pet's visits
+        this.em.createQuery("DELETE FROM Visit visit WHERE id=" + visit.getId()).executeUpdate();
+        if (em.contains(visit)) {
+            em.detach(visit);
+        }
     }
 
 }
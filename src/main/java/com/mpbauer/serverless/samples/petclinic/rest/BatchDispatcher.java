@@ -0,0 +1,205 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.RequestOptions;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends the {@link BatchRequest}s of a batch to this service over HTTP, to the address the batch arrived on. Each
+ * sub-request passes the routing, filters, interceptors and providers of a request of its own; it carries the
+ * credentials of the batch and the headers of its entry, so conditional requests and idempotency keys work as well.
+ */
+@ApplicationScoped
+class BatchDispatcher {
+
+    // headers of the batch the sub-requests inherit, so they run with the caller's roles and their links and
+    // locations point to where the client sent the batch
+    private static final List<String> INHERITED_HEADERS = List.of(
+        HttpHeaders.AUTHORIZATION,
+        HttpHeaders.HOST,
+        "Forwarded",
+        "X-Forwarded-For",
+        "X-Forwarded-Host",
+        "X-Forwarded-Port",
+        "X-Forwarded-Prefix",
+        "X-Forwarded-Proto");
+
+    // set by the dispatcher, an entry cannot replace them
+    private static final Set<String> RESERVED_HEADERS = Set.of(
+        "accept",
+        "authorization",
+        "connection",
+        "content-length",
+        "content-type",
+        "host",
+        "transfer-encoding");
+
+    private static final List<String> RESPONSE_HEADERS = List.of(HttpHeaders.LOCATION, HttpHeaders.ETAG, "Link");
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "petclinic.batch.request-timeout", defaultValue = "30S")
+    Duration requestTimeout;
+
+    private HttpClient client;
+
+    @PostConstruct
+    void createClient() {
+        // the sub-requests go back to this service, over TLS if the batch came in over TLS, in which case the JVM has
+        // to trust the certificate of the service for the host name the batch was sent to. The response compression
+        // of this Vert.x version fails on bodies written at once to clients that do not accept gzip, and can leave the
+        // connection in a state the next request on it does not survive, so the client asks for gzip and does not keep
+        // connections, which on the loopback interface cost little.
+        client = vertx.createHttpClient(new HttpClientOptions()
+            .setTryUseCompression(true)
+            .setKeepAlive(false));
+    }
+
+    @PreDestroy
+    void closeClient() {
+        client.close();
+    }
+
+    /**
+     * @param requests the entries of the batch
+     * @param batch    the request that carried the batch
+     * @param rootPath the root path of the service, <code>/petclinic</code> for example
+     * @return the responses of the requests, in order; a failed request does not stop the ones after it
+     */
+    Uni<List<BatchResponse>> dispatchAll(List<BatchRequest> requests, HttpServerRequest batch, String rootPath) {
+        return Multi.createFrom().iterable(requests)
+            .onItem().transformToUniAndConcatenate(request -> dispatch(request, batch, rootPath))
+            .collect().asList();
+    }
+
+    private Uni<BatchResponse> dispatch(BatchRequest request, HttpServerRequest batch, String rootPath) {
+        // connect to the address the batch arrived on, but verify the certificate for the host the client addressed
+        RequestOptions options = new RequestOptions()
+            .setHost(hostName(batch))
+            .setPort(batch.localAddress().port())
+            .setSsl(batch.isSSL())
+            .setURI(rootPath + request.getPath());
+        // the request to a given server address does not take the headers of the options
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        for (String name : INHERITED_HEADERS) {
+            String value = batch.getHeader(name);
+            if (value != null) {
+                headers.add(name, value);
+            }
+        }
+        if (request.getHeaders() != null) {
+            request.getHeaders().forEach((name, value) -> {
+                if (!RESERVED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    headers.add(name, value);
+                }
+            });
+        }
+        // the body of the response is embedded in the batch response
+        headers.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        Buffer body;
+        try {
+            body = request.getBody() == null ? null : Buffer.buffer(mapper.writeValueAsBytes(request.getBody()));
+        } catch (JsonProcessingException e) {
+            return Uni.createFrom().failure(e);
+        }
+        return Uni.createFrom().<BatchResponse>emitter(emitter -> {
+            HttpClientRequest clientRequest = client.request(HttpMethod.valueOf(request.getMethod()),
+                batch.localAddress(), options, response -> response
+                    .exceptionHandler(emitter::fail)
+                    .bodyHandler(responseBody -> emitter.complete(toBatchResponse(response, responseBody))));
+            clientRequest.headers().addAll(headers);
+            clientRequest.setTimeout(requestTimeout.toMillis());
+            clientRequest.exceptionHandler(emitter::fail);
+            if (body == null) {
+                clientRequest.end();
+            } else {
+                clientRequest.putHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+                clientRequest.end(body);
+            }
+        }).onFailure().recoverWithItem(BatchDispatcher::toBatchResponse);
+    }
+
+    /**
+     * @return the host of the <code>Host</code> header of the batch without the port, or the local address if it has none
+     */
+    private static String hostName(HttpServerRequest batch) {
+        String host = batch.host();
+        if (host == null || host.isEmpty()) {
+            return batch.localAddress().host();
+        }
+        if (host.startsWith("[")) {
+            int end = host.indexOf(']');
+            return end < 0 ? host.substring(1) : host.substring(1, end);
+        }
+        int colon = host.lastIndexOf(':');
+        return colon < 0 ? host : host.substring(0, colon);
+    }
+
+    private BatchResponse toBatchResponse(HttpClientResponse response, Buffer body) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : RESPONSE_HEADERS) {
+            String value = response.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return new BatchResponse(response.statusCode(), headers, body(body));
+    }
+
+    /**
+     * @return the body, parsed if it is a JSON document so it is embedded and not quoted
+     */
+    private Object body(Buffer body) {
+        if (body.length() == 0) {
+            return null;
+        }
+        try {
+            return mapper.readTree(body.getBytes());
+        } catch (IOException e) {
+            return TextNode.valueOf(body.toString());
+        }
+    }
+
+    /**
+     * @return the response for a sub-request that did not get an answer
+     */
+    private static BatchResponse toBatchResponse(Throwable failure) {
+        Response.Status status = failure instanceof TimeoutException
+            ? Response.Status.GATEWAY_TIMEOUT
+            : Response.Status.BAD_GATEWAY;
+        return new BatchResponse(status.getStatusCode(), Map.of(), Map.of("errorMessage", String.valueOf(failure.getMessage())));
+    }
+}
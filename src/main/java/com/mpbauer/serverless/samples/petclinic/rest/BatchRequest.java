@@ -0,0 +1,93 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Pattern;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+/**
+ * One sub-request of a {@link BatchRestController batch}: a method, a path below the root path such as
+ * <code>/api/owners/1?fields=lastName</code>, headers, and for <code>POST</code> and <code>PUT</code> the body. Batches
+ * and event streams cannot be part of a batch.
+ */
+public class BatchRequest {
+
+    private static final String PATH = "/api/(?!batch|events).*";
+
+    @NotEmpty
+    @Pattern(regexp = "GET|POST|PUT|DELETE")
+    private String method;
+
+    @NotEmpty
+    @Pattern(regexp = PATH)
+    private String path;
+
+    private Map<String, String> headers;
+
+    private JsonNode body;
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * The server resolves dot segments before it matches a path, so <code>/api/./batch</code> or
+     * <code>/api/../q/health</code> would pass the pattern and reach a batch or a path outside the API. Such paths are
+     * rejected, and so are empty segments and percent-encoded characters, which could hide one; a query may still be
+     * encoded.
+     *
+     * @return false if the path is not already in normal form or its normal form is not allowed in a batch
+     */
+    @JsonIgnore
+    @AssertTrue(message = "must be a normalized path below /api without encoded characters")
+    public boolean isPathNormalized() {
+        if (path == null) {
+            return true;
+        }
+        URI uri;
+        try {
+            uri = new URI(path);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String rawPath = uri.getRawPath();
+        return rawPath != null
+            && rawPath.indexOf('%') < 0
+            && !rawPath.contains("//")
+            && rawPath.equals(uri.normalize().getRawPath())
+            && rawPath.matches(PATH);
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public JsonNode getBody() {
+        return body;
+    }
+
+    public void setBody(JsonNode body) {
+        this.body = body;
+    }
+}
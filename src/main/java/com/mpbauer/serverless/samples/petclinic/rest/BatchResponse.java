@@ -0,0 +1,36 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * The result of one {@link BatchRequest}: its status, the <code>Location</code>, <code>ETag</code> and
+ * <code>Link</code> headers it would have had, and its body.
+ */
+public class BatchResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final Object body;
+
+    public BatchResponse(int status, Map<String, String> headers, Object body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Object getBody() {
+        return body;
+    }
+}
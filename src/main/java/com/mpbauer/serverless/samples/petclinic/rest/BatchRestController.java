@@ -0,0 +1,58 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpServerRequest;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+
+/**
+ * Runs several requests in one round trip, for clients that are far away from the service. The requests are sent to
+ * the service one after the other, each with the roles of the caller, and each in the transactions its resource method
+ * uses on its own; a failed request does not roll back the ones before it. The response lists one
+ * {@link BatchResponse} per request, in order.
+ */
+// nothing blocks, but RESTEasy Reactive cannot compress responses it writes on the event loop
+@Blocking
+@Path("api/batch")
+public class BatchRestController {
+
+    @Inject
+    BatchDispatcher dispatcher;
+
+    @ConfigProperty(name = "petclinic.batch.max-requests", defaultValue = "20")
+    int maxRequests;
+
+    @RolesAllowed({Roles.OWNER_ADMIN, Roles.VET_ADMIN, Roles.ADMIN})
+    @POST
+    @Path("/")
+    public Uni<Response> batch(@Valid @NotEmpty List<BatchRequest> requests,
+                               @Context UriInfo uriInfo, @Context HttpServerRequest request) {
+        if (requests.size() > maxRequests) {
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                .entity(Json.createObjectBuilder()
+                    .add("errorMessage", "A batch may contain at most " + maxRequests + " requests")
+                    .build()
+                    .toString())
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+        }
+        String basePath = uriInfo.getBaseUri().getRawPath();
+        String rootPath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        return this.dispatcher.dispatchAll(requests, request, rootPath)
+            .onItem().transform(responses -> Response.ok(responses).build());
+    }
+}
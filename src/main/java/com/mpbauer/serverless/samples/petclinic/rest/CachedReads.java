@@ -0,0 +1,47 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
+import io.smallrye.mutiny.Uni;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Answers reads of reference data without a worker thread when their lookup is cached. The resource methods are
+ * <code>@NonBlocking</code>: they run on the event loop, peek into the cache of the lookup with
+ * {@link com.mpbauer.serverless.samples.petclinic.service.ClinicCaches#peek(String, Object)} and on a hit build and
+ * write the response right there. On a miss the lookup runs on a worker thread, or a virtual thread, and so does the
+ * serialization of its response.
+ */
+@ApplicationScoped
+public class CachedReads {
+
+    @Inject
+    VirtualThreads virtualThreads;
+
+    /**
+     * @param cached  the result of the lookup if it is cached
+     * @param lookup  the blocking lookup, called if it is not
+     * @param respond builds the response from the result, which may be <code>null</code> for a lookup by id
+     * @return the response, right away on a hit
+     */
+    public <T> Uni<Response> read(Optional<T> cached, Callable<T> lookup, Function<T, Response> respond) {
+        if (cached.isPresent()) {
+            return Uni.createFrom().item(respond.apply(cached.get()));
+        }
+        return load(lookup, respond);
+    }
+
+    /**
+     * @param lookup  a blocking lookup whose result is not cached
+     * @param respond builds the response from the result
+     * @return the response, once the lookup has run on a worker thread or a virtual thread
+     */
+    public <T> Uni<Response> load(Callable<T> lookup, Function<T, Response> respond) {
+        return virtualThreads.runOffEventLoop(lookup).map(respond);
+    }
+}
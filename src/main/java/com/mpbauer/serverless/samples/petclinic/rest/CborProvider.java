@@ -0,0 +1,28 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes <a href="https://tools.ietf.org/html/rfc8949">CBOR</a> bodies.
+ */
+@Provider
+@Singleton
+@Consumes(JacksonBinaryProvider.APPLICATION_CBOR)
+@Produces(JacksonBinaryProvider.APPLICATION_CBOR)
+public class CborProvider extends JacksonBinaryProvider {
+
+    public CborProvider() {
+        super(APPLICATION_CBOR_TYPE);
+    }
+
+    @Override
+    ObjectMapper newMapper() {
+        return new CBORMapper();
+    }
+}
@@ -0,0 +1,27 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimitExceededException;
+
+import javax.json.Json;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Answers requests that could not get a database connection in time, or were shed by their bulkhead, with
+ * <code>503 Service Unavailable</code>. The <code>Retry-After</code> header tells the client when to retry them.
+ */
+@Provider
+public class ConnectionLimitExceededExceptionMapper implements ExceptionMapper<ConnectionLimitExceededException> {
+
+    @Override
+    public Response toResponse(ConnectionLimitExceededException e) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, e.getRetryAfterSeconds())
+            .entity(Json.createObjectBuilder().add("errorMessage", e.getMessage()).build())
+            .type(MediaType.APPLICATION_JSON)
+            .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.model.BaseEntity;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.SparseFieldset;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Builds strong <code>ETag</code>s from the {@link BaseEntity#getVersion() versions} of the entities in a response
+ * body and answers conditional <code>GET</code> requests with 304 Not Modified.
+ * <p>
+ * The tag covers the type, id and version of every entity the custom serializers write, e.g. an owner together with
+ * its pets, their types and their visits. Any update of one of them, or a row added to or removed from a collection,
+ * changes the tag. Associations left out of a sparse fieldset are left out of the tag, they may not even be loaded.
+ * Computing it only reads ids and versions, so a 304 response skips serialization.
+ * <p>
+ * The JSON, CBOR and Smile representations of the same entities get different tags.
+ */
+final class EntityTags {
+
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+        JacksonBinaryProvider.APPLICATION_CBOR_TYPE, JacksonBinaryProvider.APPLICATION_SMILE_TYPE).build();
+
+    private EntityTags() {
+    }
+
+    /**
+     * @param request the current request with its <code>If-None-Match</code> header
+     * @param body    an entity or a collection of entities
+     * @return 304 if the client's tag matches the body, otherwise 200 with the body and its tag
+     */
+    static Response ok(Request request, Object body) {
+        return ok(request, body, of(request, body));
+    }
+
+    /**
+     * @param request the current request with its <code>If-None-Match</code> header
+     * @param body    the response body
+     * @param tag     the tag of the body
+     * @return 304 if the client's tag matches, otherwise 200 with the body and the tag
+     */
+    static Response ok(Request request, Object body, EntityTag tag) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        return Response.ok(body).tag(tag).build();
+    }
+
+    /**
+     * @param request the current request with its <code>Accept</code> header
+     * @param body    an entity or a collection of entities, possibly wrapped in a {@link SparseFieldset}
+     * @return a strong tag that changes whenever one of the serialized entities changes
+     */
+    static EntityTag of(Request request, Object body) {
+        StringBuilder fingerprint = new StringBuilder();
+        Variant variant = request.selectVariant(VARIANTS);
+        if (variant != null && !MediaType.APPLICATION_JSON_TYPE.equals(variant.getMediaType())) {
+            fingerprint.append("media:").append(variant.getMediaType()).append(';');
+        }
+        append(fingerprint, body, Fields.ALL);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder tag = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                tag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return new EntityTag(tag.toString());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(StringBuilder fingerprint, Object body, Fields fields) {
+        if (body instanceof SparseFieldset) {
+            SparseFieldset sparse = (SparseFieldset) body;
+            // the same entities in another fieldset are another representation
+            fingerprint.append("fields:").append(sparse.getFields()).append(';');
+            append(fingerprint, sparse.getValue(), sparse.getFields());
+        } else if (body instanceof Iterable) {
+            fingerprint.append('[');
+            for (Object element : (Iterable<?>) body) {
+                append(fingerprint, element, fields);
+            }
+            fingerprint.append(']');
+        } else if (body instanceof Owner) {
+            Owner owner = (Owner) body;
+            version(fingerprint, "owner", owner);
+            // mirrors the serializer, which leaves out pets that were not loaded
+            if (fields.includes("pets") && owner.isPetsLoaded()) {
+                boolean visits = fields.get("pets").includes("visits");
+                for (Pet pet : owner.getPets()) {
+                    version(fingerprint, "pet", pet);
+                    version(fingerprint, "type", pet.getType());
+                    if (visits) {
+                        for (Visit visit : pet.getVisits()) {
+                            version(fingerprint, "visit", visit);
+                        }
+                    }
+                }
+            }
+        } else if (body instanceof Pet) {
+            Pet pet = (Pet) body;
+            version(fingerprint, "pet", pet);
+            version(fingerprint, "type", pet.getType());
+            version(fingerprint, "owner", pet.getOwner());
+            if (fields.includes("visits")) {
+                for (Visit visit : pet.getVisits()) {
+                    version(fingerprint, "visit", visit);
+                }
+            }
+        } else if (body instanceof Visit) {
+            Visit visit = (Visit) body;
+            version(fingerprint, "visit", visit);
+            Pet pet = visit.getPet();
+            version(fingerprint, "pet", pet);
+            if (pet != null) {
+                version(fingerprint, "type", pet.getType());
+                version(fingerprint, "owner", pet.getOwner());
+            }
+        } else if (body instanceof Vet) {
+            Vet vet = (Vet) body;
+            version(fingerprint, "vet", vet);
+            if (fields.includes("specialties")) {
+                for (BaseEntity specialty : vet.getSpecialties()) {
+                    version(fingerprint, "specialty", specialty);
+                }
+            }
+        } else if (body instanceof BaseEntity) {
+            version(fingerprint, body.getClass().getSimpleName(), (BaseEntity) body);
+        } else {
+            throw new IllegalArgumentException("No entity tag for " + body);
+        }
+    }
+
+    private static void version(StringBuilder fingerprint, String type, BaseEntity entity) {
+        fingerprint.append(type).append(':');
+        if (entity != null) {
+            fingerprint.append(entity.getId()).append(':').append(entity.getVersion());
+        }
+        fingerprint.append(';');
+    }
+}
@@ -0,0 +1,101 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvent;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvents;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+/**
+ * Streams the committed changes of owners, pets and visits as server-sent events, see {@link ClinicEvents}. The name
+ * of each event is its type, the id its epoch and sequence and the data the changed entity:
+ * <pre>
+ * id: k3x9q2-42
+ * event: updated
+ * data: {"id":"k3x9q2-42","sequence":42,"type":"updated","entity":"owner","entityId":6}
+ * </pre>
+ * Clients that reconnect with a <code>Last-Event-ID</code> header get the events they have missed. The stream runs
+ * on the event loop; no worker thread is held while a client is connected.
+ */
+@Path("api/events")
+public class EventRestController {
+
+    @Inject
+    ClinicEvents clinicEvents;
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @GET
+    @Path("/")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamEvents(@HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+                             @Context SseEventSink sink, @Context Sse sse) {
+        this.clinicEvents.subscribe(lastEventId).subscribe().withSubscriber(new SseSubscriber(sink, sse));
+    }
+
+    /**
+     * Requests the next event only once the previous one has been written, so the events a client does not take pile
+     * up in its bounded buffer instead of in the connection.
+     */
+    static class SseSubscriber implements Subscriber<ClinicEvent> {
+
+        private final SseEventSink sink;
+        private final Sse sse;
+        private Subscription subscription;
+
+        SseSubscriber(SseEventSink sink, Sse sse) {
+            this.sink = sink;
+            this.sse = sse;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ClinicEvent event) {
+            if (this.sink.isClosed()) {
+                // the client has gone away while the previous event was written
+                this.subscription.cancel();
+                return;
+            }
+            this.sink.send(this.sse.newEventBuilder()
+                .id(event.getId())
+                .name(event.getType())
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ClinicEvent.class, event)
+                .build())
+                .whenComplete((ignored, failure) -> {
+                    if (failure != null || this.sink.isClosed()) {
+                        // the client has gone away
+                        this.subscription.cancel();
+                    } else {
+                        this.subscription.request(1);
+                    }
+                });
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            this.sink.close();
+        }
+
+        @Override
+        public void onComplete() {
+            this.sink.close();
+        }
+    }
+}
@@ -20,9 +20,12 @@ package com.mpbauer.serverless.samples.petclinic.rest;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.StaleStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -30,6 +33,10 @@ import javax.ws.rs.ext.Provider;
 import static javax.ws.rs.core.Response.status;
 
 /**
+ * Answers failed requests with <code>400 Bad Request</code>, or with <code>409 Conflict</code> if a concurrent update
+ * of the same entity won its version check. The <code>OptimisticLockException</code> of a version check that fails
+ * at commit reaches the mapper wrapped in the exception of the transaction.
+ *
  * @author Vitaliy Fedoriv
  */
 @Provider
@@ -47,7 +54,17 @@ public class ExceptionControllerAdvice implements ExceptionMapper<Exception> {
         } catch (JsonProcessingException e1) {
             LOG.error("Could not serialize error to JSON", e1);
         }
-        return status(Response.Status.BAD_REQUEST).entity(respJSONstring).build();
+        Response.Status status = isConcurrentUpdate(e) ? Response.Status.CONFLICT : Response.Status.BAD_REQUEST;
+        return status(status).entity(respJSONstring).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private static boolean isConcurrentUpdate(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
@@ -0,0 +1,105 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.jackson.ObjectMapperCustomizer;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes request and response bodies in a binary Jackson format. Clients choose the format with the
+ * <code>Accept</code> and <code>Content-Type</code> headers. Responses are only written in the format if the client
+ * names it explicitly, JSON stays the representation for <code>Accept: *&#47;*</code> and requests without the header.
+ * <p>
+ * The formats share the data model of JSON, so the custom serializers and deserializers of the model write and read
+ * them unchanged. The mappers are configured like the JSON mapper of Quarkus, including the application's
+ * {@link ObjectMapperCustomizer}s.
+ */
+public abstract class JacksonBinaryProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    @Inject
+    Instance<ObjectMapperCustomizer> customizers;
+
+    @Context
+    HttpHeaders headers;
+
+    private final MediaType mediaType;
+
+    private ObjectMapper mapper;
+
+    JacksonBinaryProvider(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return a new mapper for the format
+     */
+    abstract ObjectMapper newMapper();
+
+    @PostConstruct
+    void createMapper() {
+        ObjectMapper mapper = newMapper();
+        // quarkus.jackson.fail-on-unknown-properties is false by default
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        // the container closes the streams
+        mapper.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        customizers.stream().sorted().forEach(customizer -> customizer.customize(mapper));
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return true;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        try {
+            return mapper.readValue(entityStream, mapper.constructType(genericType));
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(e.getOriginalMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        for (MediaType accepted : headers.getAcceptableMediaTypes()) {
+            if (!accepted.isWildcardType() && !accepted.isWildcardSubtype() && accepted.isCompatible(this.mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        // the runtime type, like the JSON provider does for bodies of responses without a generic entity
+        mapper.writeValue(entityStream, value);
+    }
+}
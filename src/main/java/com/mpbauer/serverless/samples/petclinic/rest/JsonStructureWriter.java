@@ -0,0 +1,38 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import javax.inject.Singleton;
+import javax.json.Json;
+import javax.json.JsonStructure;
+import javax.json.JsonWriter;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes the JSON-P documents of the error responses, see {@link BeanValidationExceptionMapper} and
+ * {@link ConnectionLimitExceededExceptionMapper}. RESTEasy Reactive has no writer for them and would hand them to
+ * Jackson, which writes a <code>JsonArray</code> or <code>JsonObject</code> as a bean.
+ */
+@Provider
+@Singleton
+@Produces(MediaType.APPLICATION_JSON)
+public class JsonStructureWriter implements MessageBodyWriter<JsonStructure> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return JsonStructure.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(JsonStructure structure, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) {
+        // closing the writer does not close the stream, which the container closes
+        JsonWriter writer = Json.createWriter(entityStream);
+        writer.write(structure);
+    }
+}
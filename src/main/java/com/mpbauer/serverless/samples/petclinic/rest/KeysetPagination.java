@@ -0,0 +1,89 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.model.BaseEntity;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds keyset paginated list responses. Clients pass the <code>limit</code> and the <code>after</code> cursor
+ * (the id of the last row they received) as query parameters and follow the <code>Link: rel="next"</code> header
+ * until it is absent.
+ * <p>
+ * Controllers fetch one row more than the page size, so the presence of a next page is known without a count query.
+ * The <code>ETag</code> of a page covers that extra row as well, so it also changes when the next link does.
+ */
+@ApplicationScoped
+public class KeysetPagination {
+
+    static final String AFTER_PARAM = "after";
+    static final String LIMIT_PARAM = "limit";
+
+    @ConfigProperty(name = "petclinic.pagination.default-limit", defaultValue = "100")
+    int defaultLimit;
+
+    @ConfigProperty(name = "petclinic.pagination.max-limit", defaultValue = "500")
+    int maxLimit;
+
+    /**
+     * @param limit the page size requested by the client, may be <code>null</code>
+     * @return the page size to use, never larger than the configured maximum
+     */
+    public int pageSize(Integer limit) {
+        return Math.min(limit == null ? defaultLimit : limit, maxLimit);
+    }
+
+    /**
+     * Selects the rows of a page from all rows, for lists that are cached as a whole.
+     *
+     * @param all   all rows, in any order
+     * @param after the id of the last row of the previous page, may be <code>null</code>
+     * @param limit the number of rows to select
+     * @return at most <code>limit</code> rows after the cursor ordered by id, the rows the page queries select
+     */
+    public <T extends BaseEntity> List<T> rows(Collection<T> all, Integer after, int limit) {
+        int afterId = after == null ? 0 : after;
+        return all.stream()
+            .filter(row -> row.getId() > afterId)
+            .sorted(Comparator.comparing(BaseEntity::getId))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @param rows     up to <code>pageSize + 1</code> rows ordered by id
+     * @param pageSize the page size returned by {@link #pageSize(Integer)}
+     * @param uriInfo  the current request, used to build the next link
+     * @param request  the current request, used to evaluate <code>If-None-Match</code>
+     * @param fields   the fields to write of each row
+     * @return a 200 response with at most <code>pageSize</code> rows and a next link if more rows exist, or 304 if
+     * the client already has the page
+     */
+    public <T extends BaseEntity> Response page(List<T> rows, int pageSize, UriInfo uriInfo, Request request, Fields fields) {
+        EntityTag tag = EntityTags.of(request, fields.apply(rows));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        if (rows.size() <= pageSize) {
+            return Response.ok(fields.apply(rows)).tag(tag).build();
+        }
+        List<T> page = new ArrayList<>(rows.subList(0, pageSize));
+        URI next = uriInfo.getRequestUriBuilder()
+            .replaceQueryParam(AFTER_PARAM, page.get(pageSize - 1).getId())
+            .replaceQueryParam(LIMIT_PARAM, pageSize)
+            .build();
+        return Response.ok(fields.apply(page)).tag(tag).link(next, "next").build();
+    }
+}
@@ -16,112 +16,173 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.Idempotent;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.OwnerSummary;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
+@Blocking
 @Path("/api/owners")
 public class OwnerRestController {
 
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    KeysetPagination pagination;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/*/lastname/{lastName}")
-    public Response getOwnersList(@PathParam("lastName") String ownerLastName) {
-        if (ownerLastName == null) {
-            ownerLastName = "";
-        }
-        Collection<Owner> owners = this.clinicService.findOwnerByLastName(ownerLastName);
-        if (owners.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(owners).status(Response.Status.OK).build();
+    public Uni<Response> getOwnersList(@PathParam("lastName") String ownerLastName,
+                                       @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                       @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            String lastName = ownerLastName == null ? "" : ownerLastName;
+            Collection<Owner> owners = fields.isAll()
+                ? this.clinicService.findOwnerByLastName(lastName)
+                : this.clinicService.findOwnerByLastName(lastName, fetchGraph(fields));
+            if (owners.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return EntityTags.ok(request, fields.apply(owners));
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
+    @Path("/summaries")
+    public Uni<Response> getOwnerSummaries(@QueryParam("lastName") @DefaultValue("") String ownerLastName) {
+        return this.virtualThreads.run(() -> {
+            Collection<OwnerSummary> owners = this.clinicService.findOwnerSummariesByLastName(ownerLastName);
+            if (owners.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.ok(owners).status(Response.Status.OK).build();
+        });
+    }
+
+    @RolesAllowed(Roles.OWNER_ADMIN)
+    @GET
+    @Coalesced
     @Path("/")
-    public Response getOwners() {
-        Collection<Owner> owners = this.clinicService.findAllOwners();
-        if (owners.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(owners).status(Response.Status.OK).build();
+    public Uni<Response> getOwners(@QueryParam(KeysetPagination.AFTER_PARAM) Integer after,
+                                   @QueryParam(KeysetPagination.LIMIT_PARAM) @Min(1) Integer limit,
+                                   @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                   @Context UriInfo uriInfo, @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            int pageSize = this.pagination.pageSize(limit);
+            // pages list owners without their pets unless the pets are asked for explicitly
+            List<Owner> owners = fields.isAll()
+                ? this.clinicService.findOwnersPage(after, pageSize + 1)
+                : this.clinicService.findOwnersPage(after, pageSize + 1, fetchGraph(fields));
+            if (owners.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return this.pagination.page(owners, pageSize, uriInfo, request, fields);
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/{ownerId}")
-    public Response getOwner(@PathParam("ownerId") int ownerId) {
-        Owner owner = this.clinicService.findOwnerById(ownerId);
-        if (owner == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
+    public Uni<Response> getOwner(@PathParam("ownerId") int ownerId,
+                                  @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                  @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            String fetchGraph = fetchGraph(fields);
+            Owner owner = Owner.GRAPH_DETAIL.equals(fetchGraph)
+                ? this.clinicService.findOwnerById(ownerId)
+                : this.clinicService.findOwnerById(ownerId, fetchGraph);
+            if (owner == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return EntityTags.ok(request, fields.apply(owner));
+        });
+    }
+
+    /**
+     * @return the smallest fetch graph that loads every selected field
+     */
+    private static String fetchGraph(Fields fields) {
+        if (!fields.includes("pets")) {
+            return Owner.GRAPH_SUMMARY;
         }
-        return Response.ok(owner).status(Response.Status.OK).build();
+        return fields.get("pets").includes("visits") ? Owner.GRAPH_DETAIL : Owner.GRAPH_PETS;
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @POST
+    @Idempotent
     @Path("/")
-    public Response addOwner(@Valid @NotNull Owner owner, @Context UriInfo uriInfo) {
-        if (owner.getId() != null) {
-            BindingErrorsResponse bindingErrorsResponse = new BindingErrorsResponse(owner.getId());
-            return Response.status(Response.Status.BAD_REQUEST).header("errors", bindingErrorsResponse.toJSON()).build();
-        }
+    public Uni<Response> addOwner(@Valid @NotNull Owner owner, @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            if (owner.getId() != null) {
+                BindingErrorsResponse bindingErrorsResponse = new BindingErrorsResponse(owner.getId());
+                return Response.status(Response.Status.BAD_REQUEST).header("errors", bindingErrorsResponse.toJSON()).build();
+            }
 
-        this.clinicService.saveOwner(owner);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(owner.getId()));
-        return Response.created(uriBuilder.build()).entity(owner).build();
+            this.clinicService.saveOwner(owner);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(owner.getId()));
+            return Response.created(uriBuilder.build()).entity(owner).build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @PUT
     @Path("/{ownerId}")
-    public Response updateOwner(@PathParam("ownerId") int ownerId, @Valid Owner owner) {
-        boolean bodyIdMatchesPathId = owner.getId() == null || ownerId == owner.getId();
-        if (!bodyIdMatchesPathId) {
-            BindingErrorsResponse bindingErrorsResponse = new BindingErrorsResponse(ownerId, owner.getId());
-            return Response.status(Response.Status.BAD_REQUEST).header("errors", bindingErrorsResponse.toJSON()).build();
-        }
-        Owner currentOwner = this.clinicService.findOwnerById(ownerId);
-        if (currentOwner == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        currentOwner.setAddress(owner.getAddress());
-        currentOwner.setCity(owner.getCity());
-        currentOwner.setFirstName(owner.getFirstName());
-        currentOwner.setLastName(owner.getLastName());
-        currentOwner.setTelephone(owner.getTelephone());
-        this.clinicService.saveOwner(currentOwner);
-        return Response.noContent().build();
+    public Uni<Response> updateOwner(@PathParam("ownerId") int ownerId, @Valid Owner owner) {
+        return this.virtualThreads.run(() -> {
+            boolean bodyIdMatchesPathId = owner.getId() == null || ownerId == owner.getId();
+            if (!bodyIdMatchesPathId) {
+                BindingErrorsResponse bindingErrorsResponse = new BindingErrorsResponse(ownerId, owner.getId());
+                return Response.status(Response.Status.BAD_REQUEST).header("errors", bindingErrorsResponse.toJSON()).build();
+            }
+            if (this.clinicService.updateOwner(ownerId, owner) == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @DELETE
     @Path("/{ownerId}")
-    @Transactional
-    public Response deleteOwner(@PathParam("ownerId") int ownerId) {
-        Owner owner = this.clinicService.findOwnerById(ownerId);
-        if (owner == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deleteOwner(owner);
-        return Response.noContent().build();
+    public Uni<Response> deleteOwner(@PathParam("ownerId") int ownerId) {
+        return this.virtualThreads.run(() -> {
+            Owner owner = this.clinicService.findOwnerById(ownerId);
+            if (owner == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deleteOwner(owner);
+            return Response.noContent().build();
+        });
     }
 }
@@ -16,94 +16,137 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.Idempotent;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
+@Blocking
 @Path("api/pets")
 public class PetRestController {
 
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    KeysetPagination pagination;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/{petId}")
-    public Response getPet(@PathParam("petId") int petId) {
-        Pet pet = this.clinicService.findPetById(petId);
-        if (pet == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(pet).build();
+    public Uni<Response> getPet(@PathParam("petId") int petId,
+                                @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            String fetchGraph = fetchGraph(fields);
+            Pet pet = Pet.GRAPH_DETAIL.equals(fetchGraph)
+                ? this.clinicService.findPetById(petId)
+                : this.clinicService.findPetById(petId, fetchGraph);
+            if (pet == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return EntityTags.ok(request, fields.apply(pet));
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/")
-    public Response getPets() {
-        Collection<Pet> pets = this.clinicService.findAllPets();
-        if (pets.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(pets).build();
+    public Uni<Response> getPets(@QueryParam(KeysetPagination.AFTER_PARAM) Integer after,
+                                 @QueryParam(KeysetPagination.LIMIT_PARAM) @Min(1) Integer limit,
+                                 @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                 @Context UriInfo uriInfo, @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            int pageSize = this.pagination.pageSize(limit);
+            List<Pet> pets = fields.isAll()
+                ? this.clinicService.findPetsPage(after, pageSize + 1)
+                : this.clinicService.findPetsPage(after, pageSize + 1, fetchGraph(fields));
+            if (pets.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return this.pagination.page(pets, pageSize, uriInfo, request, fields);
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/pettypes")
-    public Response getPetTypes() {
-        return Response.ok(this.clinicService.findPetTypes()).build();
+    public Uni<Response> getPetTypes(@Context Request request) {
+        return this.virtualThreads.run(() -> {
+            return EntityTags.ok(request, this.clinicService.findPetTypes());
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @POST
+    @Idempotent
     @Path("/")
-    public Response addPet(@Valid @NotNull Pet pet, @Context UriInfo uriInfo) {
-        this.clinicService.savePet(pet);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(pet.getId()));
-        return Response.status(Response.Status.CREATED).entity(pet).build();
+    public Uni<Response> addPet(@Valid @NotNull Pet pet, @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            // a POST always creates a pet, whatever id the body has
+            pet.setId(null);
+            this.clinicService.savePet(pet);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(pet.getId()));
+            return Response.status(Response.Status.CREATED).entity(pet).build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @PUT
     @Path(value = "/{petId}")
-    public Response updatePet(@PathParam("petId") int petId, @Valid @NotNull Pet pet) {
-        Pet currentPet = this.clinicService.findPetById(petId);
-        if (currentPet == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        currentPet.setBirthDate(pet.getBirthDate());
-        currentPet.setName(pet.getName());
-        currentPet.setType(pet.getType());
-        currentPet.setOwner(pet.getOwner());
-        this.clinicService.savePet(currentPet);
-        return Response.noContent().entity(currentPet).build();
+    public Uni<Response> updatePet(@PathParam("petId") int petId, @Valid @NotNull Pet pet) {
+        return this.virtualThreads.run(() -> {
+            Pet currentPet = this.clinicService.updatePet(petId, pet);
+            if (currentPet == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().entity(currentPet).build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @DELETE
     @Path("/{petId}")
-    @Transactional
-    public Response deletePet(@PathParam("petId") int petId) {
-        Pet pet = this.clinicService.findPetById(petId);
-        if (pet == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deletePet(pet);
-        return Response.noContent().build();
+    public Uni<Response> deletePet(@PathParam("petId") int petId) {
+        return this.virtualThreads.run(() -> {
+            Pet pet = this.clinicService.findPetById(petId);
+            if (pet == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deletePet(pet);
+            return Response.noContent().build();
+        });
+    }
+
+    /**
+     * @return the smallest fetch graph that loads every selected field
+     */
+    private static String fetchGraph(Fields fields) {
+        return fields.includes("visits") ? Pet.GRAPH_DETAIL : Pet.GRAPH_SUMMARY;
     }
 }
@@ -16,13 +16,18 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
@@ -36,61 +41,85 @@ public class PetTypeRestController {
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    CachedReads cachedReads;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed({Roles.OWNER_ADMIN, Roles.VET_ADMIN})
     @GET
+    @NonBlocking
+    @Coalesced
     @Path("/")
-    public Response getAllPetTypes() {
-        Collection<PetType> petTypes = new ArrayList<>(this.clinicService.findAllPetTypes());
-        if (petTypes.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(petTypes).build();
+    public Uni<Response> getAllPetTypes(@Context Request request) {
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.PET_TYPES),
+            this.clinicService::findAllPetTypes, found -> {
+                Collection<PetType> petTypes = new ArrayList<>(found);
+                if (petTypes.isEmpty()) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return EntityTags.ok(request, petTypes);
+            });
     }
 
     @RolesAllowed({Roles.OWNER_ADMIN, Roles.VET_ADMIN})
     @GET
+    @NonBlocking
+    @Coalesced
     @Path("/{petTypeId}")
-    public Response getPetType(@PathParam("petTypeId") int petTypeId) {
-        PetType petType = this.clinicService.findPetTypeById(petTypeId);
-        if (petType == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(petType).build();
+    public Uni<Response> getPetType(@PathParam("petTypeId") int petTypeId, @Context Request request) {
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.PET_TYPES, petTypeId),
+            () -> this.clinicService.findPetTypeById(petTypeId), petType -> {
+                if (petType == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return EntityTags.ok(request, petType);
+            });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @POST
+    @Blocking
     @Path("/")
-    public Response addPetType(@Valid @NotNull PetType petType, @Context UriInfo uriInfo) {
-        this.clinicService.savePetType(petType);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(petType.getId()));
-        return Response.status(Response.Status.CREATED).entity(petType).build();
+    public Uni<Response> addPetType(@Valid @NotNull PetType petType, @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            this.clinicService.savePetType(petType);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(petType.getId()));
+            return Response.status(Response.Status.CREATED).entity(petType).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @PUT
+    @Blocking
     @Path("/{petTypeId}")
-    public Response updatePetType(@PathParam("petTypeId") int petTypeId, @Valid @NotNull PetType petType) {
-        PetType currentPetType = this.clinicService.findPetTypeById(petTypeId);
-        if (currentPetType == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        currentPetType.setName(petType.getName());
-        this.clinicService.savePetType(currentPetType);
-        return Response.noContent().entity(currentPetType).build();
+    public Uni<Response> updatePetType(@PathParam("petTypeId") int petTypeId, @Valid @NotNull PetType petType) {
+        return this.virtualThreads.run(() -> {
+            PetType updatedPetType = this.clinicService.updatePetType(petTypeId, petType);
+            if (updatedPetType == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().entity(updatedPetType).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @DELETE
+    @Blocking
     @Path("/{petTypeId}")
-    @Transactional
-    public Response deletePetType(@PathParam("petTypeId") int petTypeId) {
-        PetType petType = this.clinicService.findPetTypeById(petTypeId);
-        if (petType == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deletePetType(petType);
-        return Response.noContent().build();
+    public Uni<Response> deletePetType(@PathParam("petTypeId") int petTypeId) {
+        return this.virtualThreads.run(() -> {
+            PetType petType = this.clinicService.findPetTypeById(petTypeId);
+            if (petType == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deletePetType(petType);
+            return Response.noContent().build();
+        });
     }
 }
@@ -0,0 +1,28 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes <a href="https://github.com/FasterXML/smile-format-specification">Smile</a> bodies.
+ */
+@Provider
+@Singleton
+@Consumes(JacksonBinaryProvider.APPLICATION_SMILE)
+@Produces(JacksonBinaryProvider.APPLICATION_SMILE)
+public class SmileProvider extends JacksonBinaryProvider {
+
+    public SmileProvider() {
+        super(APPLICATION_SMILE_TYPE);
+    }
+
+    @Override
+    ObjectMapper newMapper() {
+        return new SmileMapper();
+    }
+}
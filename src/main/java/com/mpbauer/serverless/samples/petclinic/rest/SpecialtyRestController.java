@@ -16,13 +16,18 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.Specialty;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
@@ -40,62 +45,86 @@ public class SpecialtyRestController {
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    CachedReads cachedReads;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.VET_ADMIN)
     @GET
+    @NonBlocking
+    @Coalesced
     @Path("/")
-    public Response getAllSpecialtys() {
-        Collection<Specialty> specialties = new ArrayList<>(this.clinicService.findAllSpecialties());
-        if (specialties.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(specialties).build();
+    public Uni<Response> getAllSpecialtys(@Context Request request) {
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.SPECIALTIES),
+            this.clinicService::findAllSpecialties, found -> {
+                Collection<Specialty> specialties = new ArrayList<>(found);
+                if (specialties.isEmpty()) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return EntityTags.ok(request, specialties);
+            });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @GET
+    @NonBlocking
+    @Coalesced
     @Path("/{specialtyId}")
-    public Response getSpecialty(@PathParam("specialtyId") int specialtyId) {
-        Specialty specialty = this.clinicService.findSpecialtyById(specialtyId);
-        if (specialty == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(specialty).build();
+    public Uni<Response> getSpecialty(@PathParam("specialtyId") int specialtyId, @Context Request request) {
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.SPECIALTIES, specialtyId),
+            () -> this.clinicService.findSpecialtyById(specialtyId), specialty -> {
+                if (specialty == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return EntityTags.ok(request, specialty);
+            });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @POST
+    @Blocking
     @Path("/")
-    public Response addSpecialty(@Valid @NotNull Specialty specialty, @Context UriInfo uriInfo) {
-        this.clinicService.saveSpecialty(specialty);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(specialty.getId()));
-        return Response.status(Response.Status.CREATED).entity(specialty).build();
+    public Uni<Response> addSpecialty(@Valid @NotNull Specialty specialty, @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            this.clinicService.saveSpecialty(specialty);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(specialty.getId()));
+            return Response.status(Response.Status.CREATED).entity(specialty).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @PUT
+    @Blocking
     @Path("/{specialtyId}")
-    public Response updateSpecialty(@PathParam("specialtyId") int specialtyId, @Valid @NotNull Specialty specialty) {
-        Specialty currentSpecialty = this.clinicService.findSpecialtyById(specialtyId);
-        if (currentSpecialty == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        currentSpecialty.setName(specialty.getName());
-        this.clinicService.saveSpecialty(currentSpecialty);
-        return Response.noContent().entity(currentSpecialty).build();
+    public Uni<Response> updateSpecialty(@PathParam("specialtyId") int specialtyId, @Valid @NotNull Specialty specialty) {
+        return this.virtualThreads.run(() -> {
+            Specialty updatedSpecialty = this.clinicService.updateSpecialty(specialtyId, specialty);
+            if (updatedSpecialty == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().entity(updatedSpecialty).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @DELETE
+    @Blocking
     @Path("/{specialtyId}")
-    @Transactional
-    public Response deleteSpecialty(@PathParam("specialtyId") int specialtyId) {
-        Specialty specialty = this.clinicService.findSpecialtyById(specialtyId);
-        if (specialty == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deleteSpecialty(specialty);
-        return Response.noContent().build();
+    public Uni<Response> deleteSpecialty(@PathParam("specialtyId") int specialtyId) {
+        return this.virtualThreads.run(() -> {
+            Specialty specialty = this.clinicService.findSpecialtyById(specialtyId);
+            if (specialty == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deleteSpecialty(specialty);
+            return Response.noContent().build();
+        });
     }
 
 }
@@ -0,0 +1,93 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.validation.constraints.Min;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Delta sync for offline clients. <code>GET /api/sync</code> returns every owner, pet, visit, vet, pet type and
+ * specialty, <code>GET /api/sync?since=&lt;next&gt;</code> only what has been inserted, updated or deleted since the
+ * response that returned <code>next</code>. Pages hold at most <code>limit</code> changes; while <code>more</code> is
+ * true the response has a next link.
+ * <p>
+ * A client only gets the entities it may read: owners, pets and visits for owner admins, vets and specialties for vet
+ * admins, pet types for both.
+ */
+@Blocking
+@Path("api/sync")
+public class SyncRestController {
+
+    static final String SINCE_PARAM = "since";
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    KeysetPagination pagination;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
+    @ConfigProperty(name = "petclinic.security.enable", defaultValue = "true")
+    boolean securityEnabled;
+
+    @RolesAllowed({Roles.OWNER_ADMIN, Roles.VET_ADMIN})
+    @GET
+    @Coalesced
+    @Path("/")
+    public Uni<Response> getChanges(@QueryParam(SINCE_PARAM) @DefaultValue("0") @Min(0) long since,
+                                    @QueryParam(KeysetPagination.LIMIT_PARAM) @Min(1) Integer limit,
+                                    @Context UriInfo uriInfo, @Context SecurityContext securityContext) {
+        Set<String> entities = readableEntities(securityContext);
+        return this.virtualThreads.run(() -> {
+            int pageSize = this.pagination.pageSize(limit);
+            ChangeSet changes = this.clinicService.findChanges(since, pageSize, entities);
+            if (!changes.isMore()) {
+                return Response.ok(changes).build();
+            }
+            URI next = uriInfo.getRequestUriBuilder()
+                .replaceQueryParam(SINCE_PARAM, changes.getNext())
+                .replaceQueryParam(KeysetPagination.LIMIT_PARAM, pageSize)
+                .build();
+            return Response.ok(changes).link(next, "next").build();
+        });
+    }
+
+    private Set<String> readableEntities(SecurityContext securityContext) {
+        if (!this.securityEnabled) {
+            return ChangeSet.ENTITIES;
+        }
+        Set<String> entities = new HashSet<>();
+        entities.add(ChangeSet.PET_TYPE);
+        if (securityContext.isUserInRole(Roles.OWNER_ADMIN)) {
+            entities.add(ChangeSet.OWNER);
+            entities.add(ChangeSet.PET);
+            entities.add(ChangeSet.VISIT);
+        }
+        if (securityContext.isUserInRole(Roles.VET_ADMIN)) {
+            entities.add(ChangeSet.VET);
+            entities.add(ChangeSet.SPECIALTY);
+        }
+        return entities;
+    }
+}
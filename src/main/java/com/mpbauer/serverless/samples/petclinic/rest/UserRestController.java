@@ -16,9 +16,12 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.User;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
 import com.mpbauer.serverless.samples.petclinic.service.UserService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
@@ -28,17 +31,23 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
 
+@Blocking
 @Path("api/users")
 public class UserRestController {
 
     @Inject
     UserService userService;
 
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.ADMIN)
     @POST
     @Path("/")
-    public Response addOwner(@Valid @NotNull User user) throws Exception {
-        this.userService.saveUser(user);
-        return Response.status(Response.Status.CREATED).entity(user).build();
+    public Uni<Response> addOwner(@Valid @NotNull User user) {
+        return this.virtualThreads.run(() -> {
+            this.userService.saveUser(user);
+            return Response.status(Response.Status.CREATED).entity(user).build();
+        });
     }
 }
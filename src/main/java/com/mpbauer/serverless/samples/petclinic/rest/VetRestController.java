@@ -15,20 +15,25 @@
  */
 package com.mpbauer.serverless.samples.petclinic.rest;
 
-import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Vitaliy Fedoriv
@@ -40,66 +45,116 @@ public class VetRestController {
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    CachedReads cachedReads;
+
+    @Inject
+    KeysetPagination pagination;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.VET_ADMIN)
     @GET
+    @NonBlocking
+    @Coalesced
     @Path("/")
-    public Response getAllVets() {
-        Collection<Vet> vets = new ArrayList<>(this.clinicService.findAllVets());
+    public Uni<Response> getAllVets(@QueryParam(KeysetPagination.AFTER_PARAM) Integer after,
+                                    @QueryParam(KeysetPagination.LIMIT_PARAM) @Min(1) Integer limit,
+                                    @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                    @Context UriInfo uriInfo, @Context Request request) {
+        int pageSize = this.pagination.pageSize(limit);
+        // the vets are reference data: the list of all vets with their specialties is cached and paged in memory,
+        // pages of the other fieldsets are read from the database
+        if (!fields.isAll()) {
+            return this.cachedReads.load(() -> this.clinicService.findVetsPage(after, pageSize + 1, fetchGraph(fields)),
+                vets -> page(vets, pageSize, uriInfo, request, fields));
+        }
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.VETS), this.clinicService::findAllVets,
+            all -> page(this.pagination.rows(all, after, pageSize + 1), pageSize, uriInfo, request, fields));
+    }
+
+    private Response page(List<Vet> vets, int pageSize, UriInfo uriInfo, Request request, Fields fields) {
         if (vets.isEmpty()) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
-        return Response.ok(vets).build();
+        return this.pagination.page(vets, pageSize, uriInfo, request, fields);
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @GET
+    @NonBlocking
+    @Coalesced
     @Path(value = "/{vetId}")
-    public Response getVet(@PathParam("vetId") int vetId) {
-        Vet vet = this.clinicService.findVetById(vetId);
+    public Uni<Response> getVet(@PathParam("vetId") int vetId,
+                                @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                @Context Request request) {
+        String fetchGraph = fetchGraph(fields);
+        // only the vets with their specialties are cached
+        if (!Vet.GRAPH_DETAIL.equals(fetchGraph)) {
+            return this.cachedReads.load(() -> this.clinicService.findVetById(vetId, fetchGraph),
+                vet -> vet(vet, fields, request));
+        }
+        return this.cachedReads.read(this.clinicCaches.peek(ClinicCaches.VETS, vetId),
+            () -> this.clinicService.findVetById(vetId), vet -> vet(vet, fields, request));
+    }
+
+    private static Response vet(Vet vet, Fields fields, Request request) {
         if (vet == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
-        return Response.ok(vet).build();
+        return EntityTags.ok(request, fields.apply(vet));
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @POST
+    @Blocking
     @Path("/")
-    public Response addVet(@Valid @NotNull Vet vet,  @Context UriInfo uriInfo) {
-        this.clinicService.saveVet(vet);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(vet.getId()));
-        return Response.created(uriBuilder.build()).entity(vet).build();
+    public Uni<Response> addVet(@Valid @NotNull Vet vet,  @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            this.clinicService.saveVet(vet);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(vet.getId()));
+            return Response.created(uriBuilder.build()).entity(vet).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @PUT
+    @Blocking
     @Path("/{vetId}")
-    public Response updateVet(@PathParam("vetId") int vetId, @Valid Vet vet) {
-        Vet currentVet = this.clinicService.findVetById(vetId);
-        if (currentVet == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        currentVet.setFirstName(vet.getFirstName());
-        currentVet.setLastName(vet.getLastName());
-        currentVet.clearSpecialties();
-        for (Specialty spec : vet.getSpecialties()) {
-            currentVet.addSpecialty(spec);
-        }
-        this.clinicService.saveVet(currentVet);
-        return Response.noContent().entity(currentVet).build();
+    public Uni<Response> updateVet(@PathParam("vetId") int vetId, @Valid Vet vet) {
+        return this.virtualThreads.run(() -> {
+            Vet currentVet = this.clinicService.updateVet(vetId, vet);
+            if (currentVet == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().entity(currentVet).build();
+        });
     }
 
     @RolesAllowed(Roles.VET_ADMIN)
     @DELETE
+    @Blocking
     @Path("/{vetId}")
-    @Transactional
-    public Response deleteVet(@PathParam("vetId") int vetId) {
-        Vet vet = this.clinicService.findVetById(vetId);
-        if (vet == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deleteVet(vet);
-        return Response.noContent().build();
+    public Uni<Response> deleteVet(@PathParam("vetId") int vetId) {
+        return this.virtualThreads.run(() -> {
+            Vet vet = this.clinicService.findVetById(vetId);
+            if (vet == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deleteVet(vet);
+            return Response.noContent().build();
+        });
+    }
+
+    /**
+     * @return the smallest fetch graph that loads every selected field
+     */
+    private static String fetchGraph(Fields fields) {
+        return fields.includes("specialties") ? Vet.GRAPH_DETAIL : Vet.GRAPH_SUMMARY;
     }
 }
@@ -16,88 +16,115 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.mpbauer.serverless.samples.petclinic.config.Coalesced;
+import com.mpbauer.serverless.samples.petclinic.config.Idempotent;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
+import com.mpbauer.serverless.samples.petclinic.model.serializer.Fields;
 import com.mpbauer.serverless.samples.petclinic.security.Roles;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
+@Blocking
 @Path("api/visits")
 public class VisitRestController {
 
     @Inject
     ClinicService clinicService;
 
+    @Inject
+    KeysetPagination pagination;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/")
-    public Response getAllVisits() {
-        Collection<Visit> visits = new ArrayList<>(this.clinicService.findAllVisits());
-        if (visits.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(visits).build();
+    public Uni<Response> getAllVisits(@QueryParam(KeysetPagination.AFTER_PARAM) Integer after,
+                                      @QueryParam(KeysetPagination.LIMIT_PARAM) @Min(1) Integer limit,
+                                      @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                      @Context UriInfo uriInfo, @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            int pageSize = this.pagination.pageSize(limit);
+            List<Visit> visits = this.clinicService.findVisitsPage(after, pageSize + 1);
+            if (visits.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return this.pagination.page(visits, pageSize, uriInfo, request, fields);
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @GET
+    @Coalesced
     @Path("/{visitId}")
-    public Response getVisit(@PathParam("visitId") int visitId) {
-        Visit visit = this.clinicService.findVisitById(visitId);
-        if (visit == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.ok(visit).build();
+    public Uni<Response> getVisit(@PathParam("visitId") int visitId,
+                                  @QueryParam(Fields.PARAM) @DefaultValue("") Fields fields,
+                                  @Context Request request) {
+        return this.virtualThreads.run(() -> {
+            Visit visit = this.clinicService.findVisitById(visitId);
+            if (visit == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return EntityTags.ok(request, fields.apply(visit));
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @POST
+    @Idempotent
     @Path("/")
-    public Response addVisit(@Valid @NotNull Visit visit, @Context UriInfo uriInfo) {
-        this.clinicService.saveVisit(visit);
-        UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-        uriBuilder.path(Integer.toString(visit.getId()));
-        return Response.created(uriBuilder.build()).entity(visit).build();
+    public Uni<Response> addVisit(@Valid @NotNull Visit visit, @Context UriInfo uriInfo) {
+        return this.virtualThreads.run(() -> {
+            // a POST always creates a visit, whatever id the body has
+            visit.setId(null);
+            this.clinicService.saveVisit(visit);
+            UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+            uriBuilder.path(Integer.toString(visit.getId()));
+            return Response.created(uriBuilder.build()).entity(visit).build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @PUT
     @Path("/{visitId}")
-    public Response updateVisit(@PathParam("visitId") int visitId, @Valid @NotNull Visit visit) {
-        Visit currentVisit = this.clinicService.findVisitById(visitId);
-        if (currentVisit == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-
-        currentVisit.setDate(visit.getDate());
-        currentVisit.setDescription(visit.getDescription());
-        currentVisit.setPet(visit.getPet());
-        this.clinicService.saveVisit(currentVisit);
-        return Response.noContent().entity(currentVisit).build();
+    public Uni<Response> updateVisit(@PathParam("visitId") int visitId, @Valid @NotNull Visit visit) {
+        return this.virtualThreads.run(() -> {
+            Visit currentVisit = this.clinicService.updateVisit(visitId, visit);
+            if (currentVisit == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.noContent().entity(currentVisit).build();
+        });
     }
 
     @RolesAllowed(Roles.OWNER_ADMIN)
     @DELETE
     @Path("/{visitId}")
-    @Transactional
-    public Response deleteVisit(@PathParam("visitId") int visitId) {
-        Visit visit = this.clinicService.findVisitById(visitId);
-        if (visit == null) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        this.clinicService.deleteVisit(visit);
-        return Response.noContent().build();
+    public Uni<Response> deleteVisit(@PathParam("visitId") int visitId) {
+        return this.virtualThreads.run(() -> {
+            Visit visit = this.clinicService.findVisitById(visitId);
+            if (visit == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            this.clinicService.deleteVisit(visit);
+            return Response.noContent().build();
+        });
     }
 }
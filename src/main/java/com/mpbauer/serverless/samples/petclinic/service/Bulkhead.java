@@ -0,0 +1,50 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import java.time.Duration;
+
+/**
+ * The classes of service calls that the {@link ConnectionLimit} keeps apart, so a burst of one class cannot take the
+ * connections the others need. Each bulkhead is configured with <code>petclinic.bulkhead.&lt;name&gt;.*</code>:
+ * <ul>
+ * <li><code>max-concurrency</code>: the calls that run at the same time</li>
+ * <li><code>max-queue</code>: the calls that wait for one of them, further calls are rejected right away</li>
+ * <li><code>shed-wait</code>: the pool-acquire wait from which calls that would have to wait are rejected right away;
+ * without it they wait up to <code>petclinic.datasource.max-wait</code></li>
+ * </ul>
+ */
+public enum Bulkhead {
+
+    /**
+     * Lookups and searches.
+     */
+    READ("read", 48, 200, Duration.ofMillis(200)),
+
+    /**
+     * Inserts, updates and deletes. They are only rejected when their queue is full or their wait times out.
+     */
+    WRITE("write", 24, 100, null),
+
+    /**
+     * Lists of whole tables and their pages, e.g. <code>getOwners</code>, <code>getAllVisits</code> and the delta sync.
+     */
+    BULK("bulk", 8, 16, Duration.ofMillis(50));
+
+    private final String configName;
+    final int defaultMaxConcurrency;
+    final int defaultMaxQueue;
+    final Duration defaultShedWait;
+
+    Bulkhead(String configName, int defaultMaxConcurrency, int defaultMaxQueue, Duration defaultShedWait) {
+        this.configName = configName;
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+        this.defaultMaxQueue = defaultMaxQueue;
+        this.defaultShedWait = defaultShedWait;
+    }
+
+    /**
+     * @return the name of the bulkhead in its configuration keys and metric tags
+     */
+    public String getConfigName() {
+        return configName;
+    }
+}
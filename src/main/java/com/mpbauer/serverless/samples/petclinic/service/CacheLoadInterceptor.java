@@ -0,0 +1,41 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import javax.annotation.Priority;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+
+/**
+ * Marks a {@link CacheMetrics} invocation as a cache miss. Runs inside of the cache interceptor, which only proceeds
+ * to the method when the value is not cached.
+ * <p>
+ * A <code>null</code> result is thrown as {@link NullResult}, which the cache does not store, and turned back into
+ * <code>null</code> by {@link CacheMetricsInterceptor}.
+ */
+@CacheMetrics
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 3)
+public class CacheLoadInterceptor {
+
+    @AroundInvoke
+    Object markLoad(InvocationContext context) throws Exception {
+        context.getContextData().put(CacheMetricsInterceptor.LOADED, Boolean.TRUE);
+        Object result = context.proceed();
+        if (result == null) {
+            throw NullResult.INSTANCE;
+        }
+        return result;
+    }
+
+    /**
+     * Carries a <code>null</code> result past the cache. Never leaves {@link CacheMetricsInterceptor}.
+     */
+    static final class NullResult extends RuntimeException {
+
+        static final NullResult INSTANCE = new NullResult();
+
+        private NullResult() {
+            super("null result", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Counts the hits and misses of the {@link io.quarkus.cache.CacheResult} cache of the annotated method per cache name,
+ * see {@link ClinicCaches}.
+ * <p>
+ * A <code>null</code> result, a lookup by id that found nothing, is returned to the caller but not cached. Otherwise
+ * requests for ids that do not exist would fill the cache and only the first miss of each id would reach the service.
+ *
+ * @see CacheMetricsInterceptor
+ * @see CacheLoadInterceptor
+ */
+@Inherited
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface CacheMetrics {
+}
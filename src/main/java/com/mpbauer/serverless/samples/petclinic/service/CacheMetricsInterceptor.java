@@ -0,0 +1,52 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import io.quarkus.arc.runtime.InterceptorBindings;
+import io.quarkus.cache.CacheResult;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import java.lang.annotation.Annotation;
+
+/**
+ * Implements {@link CacheMetrics}. Runs outside of the cache interceptor and counts a miss if
+ * {@link CacheLoadInterceptor}, which only runs when the cache has to load the value, marked the invocation. Returns
+ * <code>null</code> for the {@link CacheLoadInterceptor.NullResult} that kept a <code>null</code> result out of the
+ * cache.
+ */
+@CacheMetrics
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 1)
+public class CacheMetricsInterceptor {
+
+    static final String LOADED = CacheMetricsInterceptor.class.getName() + ".loaded";
+
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @AroundInvoke
+    Object countLookup(InvocationContext context) throws Exception {
+        Object result;
+        try {
+            result = context.proceed();
+        } catch (CacheLoadInterceptor.NullResult e) {
+            result = null;
+        }
+        String cacheName = cacheName(context);
+        if (cacheName != null) {
+            clinicCaches.recordLookup(cacheName, context.getContextData().containsKey(LOADED));
+        }
+        return result;
+    }
+
+    private static String cacheName(InvocationContext context) {
+        for (Annotation binding : InterceptorBindings.getInterceptorBindings(context)) {
+            if (binding instanceof CacheResult) {
+                return ((CacheResult) binding).cacheName();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The highest change sequence up to which all changes have been committed, so <code>/api/sync</code> can hand it out
+ * as <code>next</code> without a client skipping a change.
+ * <p>
+ * Change sequences are taken when a transaction writes, not when it commits, so a change can become visible after
+ * one with a higher number. The horizon therefore holds the sequence back by a safety lag: it samples the
+ * <code>change_seq</code> sequence on the primary and returns the newest sample that is at least the lag old. Every
+ * number up to that sample was taken before then, by a transaction that has ended since, as long as no write
+ * transaction runs for longer than the lag. The lag should exceed the transaction timeout, and the replication lag
+ * when reads go to a replica.
+ * <p>
+ * Configured with <code>petclinic.sync.safety-lag</code>; <code>0S</code> turns the horizon off.
+ */
+@ApplicationScoped
+public class ChangeHorizon {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeHorizon.class);
+
+    // a sample burns a number of the sequence, which only leaves a gap
+    private static final String SAMPLE = "SELECT nextval('change_seq')";
+    private static final int SAMPLES_PER_LAG = 4;
+
+    @ConfigProperty(name = "petclinic.sync.safety-lag", defaultValue = "60S")
+    Duration safetyLag;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "petclinic-change-horizon");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // oldest first, the nano time and the value of each sample; guarded by itself
+    private final Deque<long[]> samples = new ArrayDeque<>();
+
+    void start(@Observes StartupEvent event) {
+        if (isEnabled()) {
+            long period = Math.max(1, safetyLag.toMillis() / SAMPLES_PER_LAG);
+            sampler.scheduleAtFixedRate(this::sample, 0, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    /**
+     * @return the highest change sequence whose change has either been committed or rolled back, 0 while no sample is
+     * old enough, or {@link Long#MAX_VALUE} if the horizon is off
+     */
+    long get() {
+        if (!isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        long cutoff = System.nanoTime() - safetyLag.toNanos();
+        synchronized (samples) {
+            // only the newest sample that is old enough is needed, now and later
+            long[] horizon = null;
+            while (!samples.isEmpty() && isOlder(samples.peekFirst(), cutoff)) {
+                horizon = samples.removeFirst();
+            }
+            if (horizon == null) {
+                return 0;
+            }
+            samples.addFirst(horizon);
+            return horizon[1];
+        }
+    }
+
+    private boolean isEnabled() {
+        return !safetyLag.isZero();
+    }
+
+    private void sample() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SAMPLE);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            long[] sample = {System.nanoTime(), resultSet.getLong(1)};
+            synchronized (samples) {
+                samples.addLast(sample);
+            }
+        } catch (SQLException e) {
+            // the horizon stays where it is until the next sample succeeds
+            LOG.warn("Unable to sample the change sequence", e);
+        }
+    }
+
+    private static boolean isOlder(long[] sample, long cutoff) {
+        return sample[0] - cutoff <= 0;
+    }
+}
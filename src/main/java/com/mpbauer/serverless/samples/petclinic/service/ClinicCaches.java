@@ -0,0 +1,300 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.mpbauer.serverless.samples.petclinic.config.ReplicaRouting;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheManager;
+import io.quarkus.cache.runtime.AbstractCache;
+import io.quarkus.cache.runtime.NullValueConverter;
+import io.quarkus.cache.runtime.caffeine.CaffeineCache;
+import io.quarkus.cache.runtime.caffeine.CaffeineComputationThrowable;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The caches of {@link ClinicServiceImpl}. Lookups are cached with {@link io.quarkus.cache.CacheResult}, size and
+ * time to live of each cache are configured with <code>quarkus.cache.caffeine."&lt;name&gt;".*</code>.
+ * <p>
+ * Writes invalidate the entries they affect through this class, right away so later lookups in the same transaction
+ * see the write, and again once the transaction has completed. Invalidating only before the commit, as
+ * {@link io.quarkus.cache.CacheInvalidate} does, would let a concurrent lookup cache the old state again.
+ * <p>
+ * Cached entities are detached and shared by all callers, they are never modified. Updates change an instance of their
+ * own, loaded with one of the lookups with a fetch graph, which are not cached, or copied from the cached one.
+ * <p>
+ * Writes of reference data also clear the Hibernate second-level cache once the transaction has completed. Its keys
+ * include the tenant, Hibernate only updates the entries of the primary and would keep serving the entries read from
+ * the replica. With a replica, the second-level cache is cleared again after the read-your-writes window, which drops
+ * the entries that reads of the replica loaded while it had not yet caught up with the write.
+ * <p>
+ * Invalidations are also sent to the other instances of the application, see {@link ClusterCacheInvalidation}.
+ * <p>
+ * Hits, misses and invalidations are counted per cache, and the number of entries is exported as a gauge. The sizes
+ * show evictions by size and age, which the caches do not count themselves.
+ * <p>
+ * {@link #peek(String, Object)} reads an entry without loading it, for callers that must not block, such as the read
+ * endpoints that answer from the caches on the event loop.
+ */
+@ApplicationScoped
+public class ClinicCaches {
+
+    /** The vets list and vets by id */
+    public static final String VETS = "vets";
+    /** Owners by id */
+    public static final String OWNERS = "owners";
+    /** Pets by id */
+    public static final String PETS = "pets";
+    /** The pet types list and pet types by id */
+    public static final String PET_TYPES = "pet-types";
+    /** The pet types list ordered by name */
+    public static final String PET_TYPES_BY_NAME = "pet-types-by-name";
+    /** The specialties list and specialties by id */
+    public static final String SPECIALTIES = "specialties";
+
+    /** Caches of data that is also kept in the Hibernate second-level cache */
+    private static final Set<String> REFERENCE_DATA = Set.of(VETS, PET_TYPES, PET_TYPES_BY_NAME, SPECIALTIES);
+
+    static final Metadata HITS = counter("petclinic.cache.hits", "Number of lookups answered from the cache");
+    static final Metadata MISSES = counter("petclinic.cache.misses", "Number of lookups that loaded the value");
+    static final Metadata INVALIDATIONS = counter("petclinic.cache.invalidations",
+        "Number of invalidations of a single entry or of the whole cache");
+    static final Metadata SIZE = Metadata.builder()
+        .withName("petclinic.cache.size")
+        .withDescription("Estimated number of entries in the cache")
+        .withType(MetricType.GAUGE)
+        .build();
+
+    // the cache API of this Quarkus version can only read an entry by loading it, the Caffeine cache behind it can
+    // read it without; null if the field is not there, then every peek misses
+    private static final VarHandle CAFFEINE = caffeineHandle();
+
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    @Inject
+    ClusterCacheInvalidation clusterCacheInvalidation;
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Inject
+    Vertx vertx;
+
+    void registerSizeGauges(@Observes StartupEvent event) {
+        for (String cacheName : cacheManager.getCacheNames()) {
+            cacheManager.getCache(cacheName)
+                .filter(CaffeineCache.class::isInstance)
+                .map(CaffeineCache.class::cast)
+                .ifPresent(cache -> metricRegistry.register(SIZE, (Gauge<Long>) cache::getSize, tag(cacheName)));
+        }
+    }
+
+    /**
+     * Invalidates one entry of a cache now and once the current transaction has completed.
+     *
+     * @param cacheName the cache
+     * @param key       the key, usually an id; <code>null</code> keys are ignored
+     */
+    public void invalidate(String cacheName, Object key) {
+        if (key == null) {
+            return;
+        }
+        nowAndAfterTransaction(() -> evict(cacheName, key));
+        if (REFERENCE_DATA.contains(cacheName)) {
+            afterTransaction(this::evictSecondLevelCacheOfAllTenants);
+        }
+        clusterCacheInvalidation.publish(cacheName, key);
+    }
+
+    /**
+     * Invalidates all entries of the given caches now and once the current transaction has completed.
+     *
+     * @param cacheNames the caches
+     */
+    public void invalidateAll(String... cacheNames) {
+        nowAndAfterTransaction(() -> {
+            for (String cacheName : cacheNames) {
+                evict(cacheName, null);
+            }
+        });
+        if (Arrays.stream(cacheNames).anyMatch(REFERENCE_DATA::contains)) {
+            afterTransaction(this::evictSecondLevelCacheOfAllTenants);
+        }
+        for (String cacheName : cacheNames) {
+            clusterCacheInvalidation.publish(cacheName, null);
+        }
+    }
+
+    /**
+     * Applies an invalidation of another instance. Its writes also changed the reference data this instance holds in
+     * the Hibernate second-level cache, which is cleared as well.
+     *
+     * @param cacheName the cache
+     * @param key       the key, or <code>null</code> for all entries
+     */
+    void evictForRemoteWrite(String cacheName, Object key) {
+        evict(cacheName, key);
+        if (REFERENCE_DATA.contains(cacheName)) {
+            evictSecondLevelCacheOfAllTenants();
+        }
+    }
+
+    /**
+     * Clears all caches, including the Hibernate second-level cache, after invalidations of other instances may have
+     * been missed.
+     */
+    void evictAllForRemoteWrites() {
+        cacheManager.getCacheNames().forEach(cacheName -> evict(cacheName, null));
+        evictSecondLevelCacheOfAllTenants();
+    }
+
+    /**
+     * Returns the result of a lookup without parameters, such as the list of all pet types, if it is cached.
+     *
+     * @param cacheName the cache of the lookup
+     * @return the cached result, or empty if the lookup would have to load it
+     */
+    public <T> Optional<T> peek(String cacheName) {
+        return cache(cacheName).flatMap(cache -> peek(cache, cache.getDefaultKey()));
+    }
+
+    /**
+     * Returns the result of a lookup by id if it is cached. Neither loads nor blocks; a hit is counted like the hit of
+     * the lookup, a miss is counted by the lookup the caller makes instead.
+     *
+     * @param cacheName the cache of the lookup
+     * @param key       the id the lookup is called with
+     * @return the cached result, or empty if the lookup would have to load it
+     */
+    public <T> Optional<T> peek(String cacheName, Object key) {
+        return cache(cacheName).flatMap(cache -> peek(cache, key));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> peek(AbstractCache cache, Object key) {
+        if (CAFFEINE == null || !(cache instanceof CaffeineCache)) {
+            return Optional.empty();
+        }
+        CompletableFuture<Object> entry = ((AsyncCache<Object, Object>) CAFFEINE.get(cache)).getIfPresent(key);
+        // an entry still loading, or one whose loading failed and is about to be removed, is not a hit
+        if (entry == null || !entry.isDone() || entry.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        Object value = NullValueConverter.fromCacheValue(entry.getNow(null));
+        if (value == null || value instanceof CaffeineComputationThrowable) {
+            return Optional.empty();
+        }
+        recordLookup(cache.getName(), false);
+        // the caller names the cache of the lookup, whose results have the type it expects
+        return Optional.of((T) value);
+    }
+
+    void recordLookup(String cacheName, boolean loaded) {
+        metricRegistry.counter(loaded ? MISSES : HITS, tag(cacheName)).inc();
+    }
+
+    private void nowAndAfterTransaction(Runnable invalidation) {
+        invalidation.run();
+        if (transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION) {
+            afterTransaction(invalidation);
+        }
+    }
+
+    /**
+     * Runs the invalidation once the current transaction has completed, or right away outside of a transaction.
+     */
+    private void afterTransaction(Runnable invalidation) {
+        if (transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            invalidation.run();
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                invalidation.run();
+            }
+        });
+    }
+
+    /**
+     * Evicts whole regions, which unlike the eviction of single entries drops the entries of every tenant.
+     */
+    private void evictSecondLevelCacheOfAllTenants() {
+        entityManagerFactory.getCache().evictAll();
+        if (replicaRouting.isEnabled()) {
+            long delay = Math.max(1, replicaRouting.getReadYourWritesWindow().toMillis());
+            vertx.setTimer(delay, timer -> entityManagerFactory.getCache().evictAll());
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        cache(cacheName).ifPresent(cache -> {
+            if (key == null) {
+                cache.invalidateAll();
+            } else {
+                cache.invalidate(key);
+            }
+            metricRegistry.counter(INVALIDATIONS, tag(cacheName)).inc();
+        });
+    }
+
+    private Optional<AbstractCache> cache(String cacheName) {
+        Optional<Cache> cache = cacheManager.getCache(cacheName);
+        return cache.filter(AbstractCache.class::isInstance).map(AbstractCache.class::cast);
+    }
+
+    private static VarHandle caffeineHandle() {
+        try {
+            return MethodHandles.privateLookupIn(CaffeineCache.class, MethodHandles.lookup())
+                .findVarHandle(CaffeineCache.class, "cache", AsyncCache.class);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Tag tag(String cacheName) {
+        return new Tag("cache", cacheName);
+    }
+
+    private static Metadata counter(String name, String description) {
+        return Metadata.builder()
+            .withName(name)
+            .withDescription(description)
+            .withType(MetricType.COUNTER)
+            .build();
+    }
+}
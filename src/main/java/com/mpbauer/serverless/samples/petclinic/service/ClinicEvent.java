@@ -0,0 +1,75 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A committed change of an owner, pet or visit, as published by {@link ClinicEvents}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ClinicEvent {
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    /**
+     * Sent instead of the missed events when a client resumes too far behind; it has to reload the data it shows.
+     */
+    public static final String RESET = "reset";
+
+    public static final String OWNER = "owner";
+    public static final String PET = "pet";
+    public static final String VISIT = "visit";
+
+    static final char ID_SEPARATOR = '-';
+
+    private final String epoch;
+    private final long sequence;
+    private final String type;
+    private final String entity;
+    private final Integer entityId;
+
+    ClinicEvent(String epoch, long sequence, String type, String entity, Integer entityId) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.type = type;
+        this.entity = entity;
+        this.entityId = entityId;
+    }
+
+    /**
+     * @return the epoch and the sequence, which identify the event across instances and restarts
+     */
+    public String getId() {
+        return epoch + ID_SEPARATOR + sequence;
+    }
+
+    /**
+     * @return the position of the event in the stream of this instance, increasing with every event of an epoch
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return one of {@link #CREATED}, {@link #UPDATED}, {@link #DELETED} or {@link #RESET}
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return one of {@link #OWNER}, {@link #PET} or {@link #VISIT}, <code>null</code> for {@link #RESET}
+     */
+    public String getEntity() {
+        return entity;
+    }
+
+    public Integer getEntityId() {
+        return entityId;
+    }
+
+    @Override
+    public String toString() {
+        return getId() + " " + type + " " + entity + " " + entityId;
+    }
+}
@@ -0,0 +1,225 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Publishes the changes of owners, pets and visits made through {@link ClinicServiceImpl} to the clients of
+ * <code>/api/events</code>, so dashboards do not have to poll the lists.
+ * <p>
+ * Events are published once the transaction of the change has committed, a rolled back change is never published.
+ * With {@link ClusterCacheInvalidation} enabled, the changes of the other instances are relayed over its channel and
+ * published as well.
+ * <p>
+ * Each event gets the next number of a sequence. Its id combines that number with the epoch of the stream, a random
+ * value chosen at startup, and clients send it back as <code>Last-Event-ID</code> when they reconnect. The last events
+ * are kept to replay them to such clients. A client that has missed more events than are kept, or resumes with an id
+ * of another epoch, for example of another instance or from before a restart, gets a {@link ClinicEvent#RESET} event
+ * instead. When relayed events may have been lost, a new epoch starts and all clients get a reset.
+ * <p>
+ * The events are numbered and handed to the clients on a thread of their own, in order, so the committing thread
+ * does not wait for them. Each client has a buffer of <code>petclinic.events.buffer-size</code> events. A client that
+ * does not keep up fails with a {@link BackPressureFailure} once its buffer is full and is dropped; it can resume with
+ * its last event id.
+ */
+@ApplicationScoped
+public class ClinicEvents {
+
+    static final Metadata CLIENTS = Metadata.builder()
+        .withName("petclinic.events.clients")
+        .withDescription("Number of clients subscribed to the change events")
+        .withType(MetricType.GAUGE)
+        .build();
+    static final Metadata DROPPED_CLIENTS = Metadata.builder()
+        .withName("petclinic.events.dropped-clients")
+        .withDescription("Number of clients dropped because their event buffer was full")
+        .withType(MetricType.COUNTER)
+        .build();
+
+    @ConfigProperty(name = "petclinic.events.buffer-size", defaultValue = "256")
+    int bufferSize;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Inject
+    ClusterCacheInvalidation clusterCacheInvalidation;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    private final Set<MultiEmitter<? super ClinicEvent>> clients = new CopyOnWriteArraySet<>();
+
+    // the clients are registered and the events numbered, kept and emitted on this thread only
+    private final ExecutorService events = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "petclinic-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Deque<ClinicEvent> history = new ArrayDeque<>();
+    private String epoch = newEpoch();
+    private long sequence;
+
+    void registerGauge(@Observes StartupEvent event) {
+        metricRegistry.register(CLIENTS, (Gauge<Integer>) clients::size);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        events.shutdown();
+    }
+
+    /**
+     * Publishes a change once the current transaction has committed, or right away outside of a transaction.
+     *
+     * @param type     {@link ClinicEvent#CREATED}, {@link ClinicEvent#UPDATED} or {@link ClinicEvent#DELETED}
+     * @param entity   {@link ClinicEvent#OWNER}, {@link ClinicEvent#PET} or {@link ClinicEvent#VISIT}
+     * @param entityId the id of the changed entity
+     */
+    public void publish(String type, String entity, Integer entityId) {
+        clusterCacheInvalidation.publishEvent(type, entity, entityId);
+        if (transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            emit(type, entity, entityId);
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    emit(type, entity, entityId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes a change another instance has committed.
+     */
+    void publishRemote(String type, String entity, Integer entityId) {
+        emit(type, entity, entityId);
+    }
+
+    /**
+     * Starts a new epoch and sends all clients a reset, for when relayed events may have been lost.
+     */
+    void reset() {
+        events.execute(() -> {
+            epoch = newEpoch();
+            history.clear();
+            ClinicEvent reset = new ClinicEvent(epoch, sequence, ClinicEvent.RESET, null, null);
+            for (MultiEmitter<? super ClinicEvent> client : clients) {
+                emit(client, reset);
+            }
+        });
+    }
+
+    /**
+     * @param lastEventId the id of the last event the client has received, or <code>null</code> for a new client
+     * @return the events after <code>lastEventId</code> that are still kept, followed by all new events
+     */
+    public Multi<ClinicEvent> subscribe(String lastEventId) {
+        return Multi.createFrom().<ClinicEvent>emitter(emitter -> events.execute(() -> register(emitter, lastEventId)),
+            BackPressureStrategy.ERROR)
+            .onOverflow().buffer(bufferSize)
+            .onFailure(BackPressureFailure.class).invoke(failure -> metricRegistry.counter(DROPPED_CLIENTS).inc());
+    }
+
+    private void register(MultiEmitter<? super ClinicEvent> emitter, String lastEventId) {
+        emitter.onTermination(() -> clients.remove(emitter));
+        if (lastEventId != null) {
+            for (ClinicEvent event : missedEvents(lastEventId)) {
+                emitter.emit(event);
+            }
+        }
+        clients.add(emitter);
+    }
+
+    /**
+     * @return the events after <code>lastEventId</code>, or a reset if some of them are no longer kept or the id is
+     * unknown, e.g. because it was issued by another instance or before a restart
+     */
+    private List<ClinicEvent> missedEvents(String lastEventId) {
+        ClinicEvent reset = new ClinicEvent(epoch, sequence, ClinicEvent.RESET, null, null);
+        int separator = lastEventId.lastIndexOf(ClinicEvent.ID_SEPARATOR);
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return List.of(reset);
+        }
+        long lastSequence;
+        try {
+            lastSequence = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return List.of(reset);
+        }
+        long oldest = history.isEmpty() ? sequence + 1 : history.getFirst().getSequence();
+        if (lastSequence > sequence || lastSequence < oldest - 1) {
+            return List.of(reset);
+        }
+        List<ClinicEvent> missed = new ArrayList<>();
+        for (ClinicEvent event : history) {
+            if (event.getSequence() > lastSequence) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    private void emit(String type, String entity, Integer entityId) {
+        events.execute(() -> {
+            ClinicEvent event = new ClinicEvent(epoch, ++sequence, type, entity, entityId);
+            history.addLast(event);
+            if (history.size() > bufferSize) {
+                history.removeFirst();
+            }
+            for (MultiEmitter<? super ClinicEvent> client : clients) {
+                emit(client, event);
+            }
+        });
+    }
+
+    /**
+     * Hands an event to a client, dropping the client if it fails so the other clients still get the event.
+     */
+    private void emit(MultiEmitter<? super ClinicEvent> client, ClinicEvent event) {
+        try {
+            client.emit(event);
+        } catch (RuntimeException e) {
+            clients.remove(client);
+            client.fail(e);
+        }
+    }
+
+    private static String newEpoch() {
+        return Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+    }
+}
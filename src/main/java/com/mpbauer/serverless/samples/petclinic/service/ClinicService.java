@@ -18,6 +18,8 @@ package com.mpbauer.serverless.samples.petclinic.service;
 import com.mpbauer.serverless.samples.petclinic.model.*;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -30,42 +32,102 @@ public interface ClinicService {
 
     Pet findPetById(int id);
 
+    /**
+     * Loads a pet with only the associations in the given fetch graph, e.g. for a sparse fieldset. The other methods
+     * with a <code>fetchGraph</code> parameter work the same way. Unlike the lookups by id without a graph, their
+     * results are not cached. The cached instances are shared by all callers and must not be modified, updates go
+     * through {@link #updatePet(int, Pet)} and the other update methods.
+     *
+     * @param fetchGraph the name of a {@link javax.persistence.NamedEntityGraph} of the entity
+     */
+    Pet findPetById(int id, String fetchGraph);
+
     Collection<Pet> findAllPets();
 
+    List<Pet> findPetsPage(Integer afterId, int limit);
+
+    List<Pet> findPetsPage(Integer afterId, int limit, String fetchGraph);
+
+    /**
+     * Loads the pets of several owners at once, with their types and owners.
+     */
+    Collection<Pet> findPetsByOwnerIds(Collection<Integer> ownerIds);
+
     void savePet(Pet pet);
 
+    /**
+     * Loads a pet from the primary, copies the fields of the given one to it and saves it, all in one transaction.
+     * The update methods of the other entities work the same way. The lookups may read a replica that has not seen
+     * the latest write yet, and an update of what they return would fail its version check.
+     *
+     * @param petId the id of the pet to update
+     * @param pet   the new state of the pet, its id is ignored
+     * @return the updated pet, or <code>null</code> if there is no pet with that id
+     */
+    Pet updatePet(int petId, Pet pet);
+
     void deletePet(Pet pet);
 
     Collection<Visit> findVisitsByPetId(int petId);
 
+    /**
+     * Loads the visits of several pets at once, so that resolving the visits of a list of pets takes one query
+     * instead of one per pet.
+     */
+    Collection<Visit> findVisitsByPetIds(Collection<Integer> petIds);
+
     Visit findVisitById(int visitId);
 
     Collection<Visit> findAllVisits();
 
+    List<Visit> findVisitsPage(Integer afterId, int limit);
+
     void saveVisit(Visit visit);
 
+    Visit updateVisit(int visitId, Visit visit);
+
     void deleteVisit(Visit visit);
 
     Vet findVetById(int id);
 
+    Vet findVetById(int id, String fetchGraph);
+
     Collection<Vet> findVets();
 
     Collection<Vet> findAllVets();
 
+    List<Vet> findVetsPage(Integer afterId, int limit);
+
+    List<Vet> findVetsPage(Integer afterId, int limit, String fetchGraph);
+
     void saveVet(Vet vet);
 
+    Vet updateVet(int vetId, Vet vet);
+
     void deleteVet(Vet vet);
 
     Owner findOwnerById(int id);
 
+    Owner findOwnerById(int id, String fetchGraph);
+
     Collection<Owner> findAllOwners();
 
+    List<Owner> findOwnersPage(Integer afterId, int limit);
+
+    List<Owner> findOwnersPage(Integer afterId, int limit, String fetchGraph);
+
     void saveOwner(Owner owner);
 
+    Owner updateOwner(int ownerId, Owner owner);
+
     void deleteOwner(Owner owner);
 
     Collection<Owner> findOwnerByLastName(String lastName);
 
+    Collection<Owner> findOwnerByLastName(String lastName, String fetchGraph);
+
+    Collection<OwnerSummary> findOwnerSummariesByLastName(String lastName);
+
     PetType findPetTypeById(int petTypeId);
 
     Collection<PetType> findAllPetTypes();
@@ -74,6 +136,8 @@ public interface ClinicService {
 
     void savePetType(PetType petType);
 
+    PetType updatePetType(int petTypeId, PetType petType);
+
     void deletePetType(PetType petType);
 
     Specialty findSpecialtyById(int specialtyId);
@@ -82,6 +146,18 @@ public interface ClinicService {
 
     void saveSpecialty(Specialty specialty);
 
+    Specialty updateSpecialty(int specialtyId, Specialty specialty);
+
     void deleteSpecialty(Specialty specialty);
 
+    /**
+     * Retrieve a page of the changes after a change sequence, see {@link ChangeSet}.
+     *
+     * @param since    the change sequence of the last change the client has, <code>0</code> for all entities
+     * @param limit    the maximum number of changes to return
+     * @param entities the entity names of {@link ChangeSet} to include, not empty
+     * @return the changes, with the change sequence to continue from
+     */
+    ChangeSet findChanges(long since, int limit, Set<String> entities);
+
 }
@@ -18,26 +18,49 @@ package com.mpbauer.serverless.samples.petclinic.service;
 import com.mpbauer.serverless.samples.petclinic.model.*;
 import com.mpbauer.serverless.samples.petclinic.repository.*;
 import io.quarkus.cache.CacheResult;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Mostly used as a facade for all Petclinic controllers
  * Also a placeholder for @Transactional and @Cacheable annotations
+ * <p>
+ * Query methods run in {@link ReadOnlyTransactional read-only transactions}. All associations are mapped lazily.
+ * Each read method names the entity graph its callers need, so entities are complete when they are serialized after
+ * the transaction has ended.
+ * <p>
+ * Lookups by id and the lists of vets, pet types and specialties are cached, see {@link ClinicCaches}. Cached entities
+ * are shared between callers and must not be modified, updates load their own instance in the write transaction.
+ * Writes invalidate every cached entity that contains the written one.
+ * <p>
+ * Calls that miss the caches are {@link ConnectionLimited limited} to the number of database connections, in separate
+ * {@link Bulkhead bulkheads} for lookups, writes and lists of whole tables.
+ * <p>
+ * Changes of owners, pets and visits are published as {@link ClinicEvents} once they have been committed.
  *
  * @author Michael Isvy
  * @author Vitaliy Fedoriv
  */
+@ConnectionLimited
 @ApplicationScoped
 public class ClinicServiceImpl implements ClinicService {
 
-    private static final Logger LOG = LoggerFactory.getLogger(ClinicServiceImpl.class);
-
+    static final Metadata LOOKUP_MISSES = Metadata.builder()
+        .withName("petclinic.lookup.misses")
+        .withDescription("Number of lookups by id that did not find the requested entity")
+        .withType(MetricType.COUNTER)
+        .build();
 
     PetRepository petRepository;
     VetRepository vetRepository;
@@ -45,6 +68,11 @@ public class ClinicServiceImpl implements ClinicService {
     VisitRepository visitRepository;
     SpecialtyRepository specialtyRepository;
     PetTypeRepository petTypeRepository;
+    ChangeRepository changeRepository;
+    ChangeHorizon changeHorizon;
+    MetricRegistry metricRegistry;
+    ClinicCaches clinicCaches;
+    ClinicEvents clinicEvents;
 
     @Inject
     public ClinicServiceImpl(
@@ -53,231 +81,509 @@ public class ClinicServiceImpl implements ClinicService {
         OwnerRepository ownerRepository,
         VisitRepository visitRepository,
         SpecialtyRepository specialtyRepository,
-        PetTypeRepository petTypeRepository) {
+        PetTypeRepository petTypeRepository,
+        ChangeRepository changeRepository,
+        ChangeHorizon changeHorizon,
+        @RegistryType(type = MetricRegistry.Type.APPLICATION) MetricRegistry metricRegistry,
+        ClinicCaches clinicCaches,
+        ClinicEvents clinicEvents) {
         this.petRepository = petRepository;
         this.vetRepository = vetRepository;
         this.ownerRepository = ownerRepository;
         this.visitRepository = visitRepository;
         this.specialtyRepository = specialtyRepository;
         this.petTypeRepository = petTypeRepository;
+        this.changeRepository = changeRepository;
+        this.changeHorizon = changeHorizon;
+        this.metricRegistry = metricRegistry;
+        this.clinicCaches = clinicCaches;
+        this.clinicEvents = clinicEvents;
     }
 
     @Override
-    @Transactional
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
     public Collection<Pet> findAllPets() {
-        return petRepository.findAll();
+        return petRepository.findAll(Pet.GRAPH_DETAIL);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Pet> findPetsPage(Integer afterId, int limit) {
+        return findPetsPage(afterId, limit, Pet.GRAPH_DETAIL);
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Pet> findPetsPage(Integer afterId, int limit, String fetchGraph) {
+        return petRepository.findPage(afterId, limit, fetchGraph);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void deletePet(Pet pet) {
         petRepository.delete(pet);
+        invalidatePet(pet);
+        clinicEvents.publish(ClinicEvent.DELETED, ClinicEvent.PET, pet.getId());
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
     public Visit findVisitById(int visitId) {
-        Visit visit = null;
-        try {
-            visit = visitRepository.findById(visitId);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
-            return null;
-        }
-        return visit;
+        return orNullCountingMiss(visitRepository.findById(visitId, Visit.GRAPH_DETAIL), Visit.class);
     }
 
     @Override
-    @Transactional
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
     public Collection<Visit> findAllVisits() {
-        return visitRepository.findAll();
+        return visitRepository.findAll(Visit.GRAPH_DETAIL);
     }
 
     @Override
-    @Transactional
-    public void deleteVisit(Visit visit) {
-        visitRepository.delete(visit);
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Visit> findVisitsPage(Integer afterId, int limit) {
+        return visitRepository.findPage(afterId, limit, Visit.GRAPH_DETAIL);
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
-    public Vet findVetById(int id) {
-        Vet vet = null;
-        try {
-            vet = vetRepository.findById(id);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
+    public Visit updateVisit(int visitId, Visit visit) {
+        Visit currentVisit = orNullCountingMiss(visitRepository.findById(visitId, Visit.GRAPH_DETAIL), Visit.class);
+        if (currentVisit == null) {
             return null;
         }
-        return vet;
+        // the visit leaves the cached pet it was moved from as well
+        invalidatePet(currentVisit.getPet());
+        currentVisit.setDate(visit.getDate());
+        currentVisit.setDescription(visit.getDescription());
+        currentVisit.setPet(visit.getPet());
+        saveVisit(currentVisit);
+        return currentVisit;
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
+    public void deleteVisit(Visit visit) {
+        visitRepository.delete(visit);
+        invalidatePet(visit.getPet());
+        clinicEvents.publish(ClinicEvent.DELETED, ClinicEvent.VISIT, visit.getId());
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.VETS)
+    @CacheMetrics
+    public Vet findVetById(int id) {
+        return findVetById(id, Vet.GRAPH_DETAIL);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Vet findVetById(int id, String fetchGraph) {
+        return orNullCountingMiss(vetRepository.findById(id, fetchGraph), Vet.class);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.VETS)
+    @CacheMetrics
     public Collection<Vet> findAllVets() {
-        return vetRepository.findAll();
+        return vetRepository.findAll(Vet.GRAPH_DETAIL);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Vet> findVetsPage(Integer afterId, int limit) {
+        return findVetsPage(afterId, limit, Vet.GRAPH_DETAIL);
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Vet> findVetsPage(Integer afterId, int limit, String fetchGraph) {
+        return vetRepository.findPage(afterId, limit, fetchGraph);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void saveVet(Vet vet) {
         vetRepository.save(vet);
+        clinicCaches.invalidateAll(ClinicCaches.VETS);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
+    @Transactional
+    public Vet updateVet(int vetId, Vet vet) {
+        Vet currentVet = orNullCountingMiss(vetRepository.findById(vetId, Vet.GRAPH_DETAIL), Vet.class);
+        if (currentVet == null) {
+            return null;
+        }
+        currentVet.setFirstName(vet.getFirstName());
+        currentVet.setLastName(vet.getLastName());
+        currentVet.clearSpecialties();
+        for (Specialty specialty : vet.getSpecialties()) {
+            currentVet.addSpecialty(specialty);
+        }
+        saveVet(currentVet);
+        return currentVet;
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void deleteVet(Vet vet) {
         vetRepository.delete(vet);
+        clinicCaches.invalidateAll(ClinicCaches.VETS);
     }
 
     @Override
-    @Transactional
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
     public Collection<Owner> findAllOwners() {
-        return ownerRepository.findAll();
+        return ownerRepository.findAll(Owner.GRAPH_SUMMARY);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Owner> findOwnersPage(Integer afterId, int limit) {
+        return findOwnersPage(afterId, limit, Owner.GRAPH_SUMMARY);
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public List<Owner> findOwnersPage(Integer afterId, int limit, String fetchGraph) {
+        return ownerRepository.findPage(afterId, limit, fetchGraph);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void deleteOwner(Owner owner) {
         ownerRepository.delete(owner);
+        invalidateOwner(owner);
+        clinicEvents.publish(ClinicEvent.DELETED, ClinicEvent.OWNER, owner.getId());
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.PET_TYPES)
+    @CacheMetrics
     public PetType findPetTypeById(int petTypeId) {
-        PetType petType = null;
-        try {
-            petType = petTypeRepository.findById(petTypeId);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
-            return null;
-        }
-        return petType;
+        return orNullCountingMiss(petTypeRepository.findById(petTypeId), PetType.class);
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.PET_TYPES)
+    @CacheMetrics
     public Collection<PetType> findAllPetTypes() {
         return petTypeRepository.findAll();
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void savePetType(PetType petType) {
         petTypeRepository.save(petType);
+        invalidatePetTypes();
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
+    @Transactional
+    public PetType updatePetType(int petTypeId, PetType petType) {
+        PetType currentPetType = orNullCountingMiss(petTypeRepository.findById(petTypeId), PetType.class);
+        if (currentPetType == null) {
+            return null;
+        }
+        currentPetType.setName(petType.getName());
+        savePetType(currentPetType);
+        return currentPetType;
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void deletePetType(PetType petType) {
         petTypeRepository.delete(petType);
+        invalidatePetTypes();
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.SPECIALTIES)
+    @CacheMetrics
     public Specialty findSpecialtyById(int specialtyId) {
-        Specialty specialty = null;
-        try {
-            specialty = specialtyRepository.findById(specialtyId);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
-            return null;
-        }
-        return specialty;
+        return orNullCountingMiss(specialtyRepository.findById(specialtyId), Specialty.class);
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.SPECIALTIES)
+    @CacheMetrics
     public Collection<Specialty> findAllSpecialties() {
         return specialtyRepository.findAll();
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void saveSpecialty(Specialty specialty) {
         specialtyRepository.save(specialty);
+        clinicCaches.invalidateAll(ClinicCaches.SPECIALTIES, ClinicCaches.VETS);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
+    @Transactional
+    public Specialty updateSpecialty(int specialtyId, Specialty specialty) {
+        Specialty currentSpecialty = orNullCountingMiss(specialtyRepository.findById(specialtyId), Specialty.class);
+        if (currentSpecialty == null) {
+            return null;
+        }
+        currentSpecialty.setName(specialty.getName());
+        saveSpecialty(currentSpecialty);
+        return currentSpecialty;
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void deleteSpecialty(Specialty specialty) {
         specialtyRepository.delete(specialty);
+        clinicCaches.invalidateAll(ClinicCaches.SPECIALTIES, ClinicCaches.VETS);
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.PET_TYPES_BY_NAME)
+    @CacheMetrics
     public Collection<PetType> findPetTypes() {
         return petRepository.findPetTypes();
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.OWNERS)
+    @CacheMetrics
     public Owner findOwnerById(int id) {
-        Owner owner = null;
-        try {
-            owner = ownerRepository.findById(id);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
-            return null;
-        }
-        return owner;
+        return findOwnerById(id, Owner.GRAPH_DETAIL);
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    public Owner findOwnerById(int id, String fetchGraph) {
+        return orNullCountingMiss(ownerRepository.findById(id, fetchGraph), Owner.class);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.PETS)
+    @CacheMetrics
     public Pet findPetById(int id) {
-        Pet pet = null;
-        try {
-            pet = petRepository.findById(id);
-        } catch (Exception e) {
-            LOG.warn("An unexpected exception occurred", e);
-            // just ignore not found exceptions for Jdbc/Jpa realization
-            return null;
-        }
-        return pet;
+        return findPetById(id, Pet.GRAPH_DETAIL);
     }
 
     @Override
+    @ReadOnlyTransactional
+    public Pet findPetById(int id, String fetchGraph) {
+        return orNullCountingMiss(petRepository.findById(id, fetchGraph), Pet.class);
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void savePet(Pet pet) {
+        String type = changeType(pet);
         petRepository.save(pet);
+        invalidatePet(pet);
+        clinicEvents.publish(type, ClinicEvent.PET, pet.getId());
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
+    @Transactional
+    public Pet updatePet(int petId, Pet pet) {
+        Pet currentPet = orNullCountingMiss(petRepository.findById(petId, Pet.GRAPH_DETAIL), Pet.class);
+        if (currentPet == null) {
+            return null;
+        }
+        // the pet leaves the cached owner it was moved from as well
+        invalidatePet(currentPet);
+        currentPet.setBirthDate(pet.getBirthDate());
+        currentPet.setName(pet.getName());
+        currentPet.setType(pet.getType());
+        currentPet.setOwner(pet.getOwner());
+        savePet(currentPet);
+        return currentPet;
+    }
+
+    @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void saveVisit(Visit visit) {
+        String type = changeType(visit);
         visitRepository.save(visit);
-
+        invalidatePet(visit.getPet());
+        clinicEvents.publish(type, ClinicEvent.VISIT, visit.getId());
     }
 
     @Override
-    @Transactional
-    @CacheResult(cacheName = "vets")
+    @ReadOnlyTransactional
+    @CacheResult(cacheName = ClinicCaches.VETS)
+    @CacheMetrics
     public Collection<Vet> findVets() {
-        return vetRepository.findAll();
+        return vetRepository.findAll(Vet.GRAPH_DETAIL);
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void saveOwner(Owner owner) {
+        String type = changeType(owner);
         ownerRepository.save(owner);
-
+        invalidateOwner(owner);
+        clinicEvents.publish(type, ClinicEvent.OWNER, owner.getId());
     }
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
+    public Owner updateOwner(int ownerId, Owner owner) {
+        Owner currentOwner = orNullCountingMiss(ownerRepository.findById(ownerId, Owner.GRAPH_DETAIL), Owner.class);
+        if (currentOwner == null) {
+            return null;
+        }
+        currentOwner.setAddress(owner.getAddress());
+        currentOwner.setCity(owner.getCity());
+        currentOwner.setFirstName(owner.getFirstName());
+        currentOwner.setLastName(owner.getLastName());
+        currentOwner.setTelephone(owner.getTelephone());
+        saveOwner(currentOwner);
+        return currentOwner;
+    }
+
+    @Override
+    @ReadOnlyTransactional
     public Collection<Owner> findOwnerByLastName(String lastName) {
-        return ownerRepository.findByLastName(lastName);
+        return findOwnerByLastName(lastName, Owner.GRAPH_DETAIL);
     }
 
     @Override
-    @Transactional
+    @ReadOnlyTransactional
+    public Collection<Owner> findOwnerByLastName(String lastName, String fetchGraph) {
+        return ownerRepository.findByLastName(lastName, fetchGraph);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Collection<OwnerSummary> findOwnerSummariesByLastName(String lastName) {
+        return ownerRepository.findSummariesByLastName(lastName);
+    }
+
+    @Override
+    @ReadOnlyTransactional
     public Collection<Visit> findVisitsByPetId(int petId) {
-        return visitRepository.findByPetId(petId);
+        return visitRepository.findByPetId(petId, Visit.GRAPH_DETAIL);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Collection<Visit> findVisitsByPetIds(Collection<Integer> petIds) {
+        return visitRepository.findByPetIds(petIds, Visit.GRAPH_DETAIL);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Collection<Pet> findPetsByOwnerIds(Collection<Integer> ownerIds) {
+        return petRepository.findByOwnerIds(ownerIds, Pet.GRAPH_SUMMARY);
+    }
+
+    /**
+     * Each page is bounded first, so the entities are loaded with one query per type and none of them needs a limit.
+     * <p>
+     * Change sequences are taken when a transaction writes, not when it commits, so a page ends at the
+     * {@link ChangeHorizon}: a client that got a later change before an earlier one committed would skip it.
+     */
+    @Override
+    @ConnectionLimited(Bulkhead.BULK)
+    @ReadOnlyTransactional
+    public ChangeSet findChanges(long since, int limit, Set<String> entities) {
+        long horizon = changeHorizon.get();
+        List<Long> bounds = changeRepository.findPageBounds(since, horizon, limit, entities);
+        long until = bounds.isEmpty() ? horizon : bounds.get(0);
+        ChangeSet changes = new ChangeSet(since);
+        if (entities.contains(ChangeSet.OWNER)) {
+            changes.setOwners(changeRepository.findChanged(Owner.class, since, until, Owner.GRAPH_SUMMARY));
+        }
+        if (entities.contains(ChangeSet.PET)) {
+            changes.setPets(changeRepository.findChanged(Pet.class, since, until, Pet.GRAPH_SUMMARY));
+        }
+        if (entities.contains(ChangeSet.VISIT)) {
+            changes.setVisits(changeRepository.findChanged(Visit.class, since, until, Visit.GRAPH_DETAIL));
+        }
+        if (entities.contains(ChangeSet.VET)) {
+            changes.setVets(changeRepository.findChanged(Vet.class, since, until, Vet.GRAPH_DETAIL));
+        }
+        if (entities.contains(ChangeSet.PET_TYPE)) {
+            changes.setPetTypes(changeRepository.findChanged(PetType.class, since, until, null));
+        }
+        if (entities.contains(ChangeSet.SPECIALTY)) {
+            changes.setSpecialties(changeRepository.findChanged(Specialty.class, since, until, null));
+        }
+        changes.setDeleted(changeRepository.findTombstones(since, until, entities));
+        changes.setMore(bounds.size() > 1);
+        changes.setNext(bounds.isEmpty() ? changes.getLastChangeSeq() : until);
+        return changes;
+    }
+
+    /**
+     * Unwraps the result of a lookup by id. Misses are expected (stale links, scanners) and only counted per entity
+     * type, the controllers turn them into 404 responses. The caches do not keep misses, see {@link CacheMetrics}, so
+     * every miss is counted.
+     */
+    private <T> T orNullCountingMiss(Optional<T> result, Class<T> entityType) {
+        if (result.isEmpty()) {
+            metricRegistry.counter(LOOKUP_MISSES, new Tag("entity", entityType.getSimpleName())).inc();
+        }
+        return result.orElse(null);
+    }
+
+    private static String changeType(BaseEntity entity) {
+        return entity.isNew() ? ClinicEvent.CREATED : ClinicEvent.UPDATED;
+    }
+
+    private void invalidateOwner(Owner owner) {
+        clinicCaches.invalidate(ClinicCaches.OWNERS, owner.getId());
+        // cached pets include their owner
+        clinicCaches.invalidateAll(ClinicCaches.PETS);
+    }
+
+    private void invalidatePet(Pet pet) {
+        if (pet == null) {
+            return;
+        }
+        clinicCaches.invalidate(ClinicCaches.PETS, pet.getId());
+        if (pet.getOwner() != null) {
+            clinicCaches.invalidate(ClinicCaches.OWNERS, pet.getOwner().getId());
+        }
+    }
+
+    private void invalidatePetTypes() {
+        // cached pets and owners include the pet types
+        clinicCaches.invalidateAll(ClinicCaches.PET_TYPES, ClinicCaches.PET_TYPES_BY_NAME, ClinicCaches.PETS,
+            ClinicCaches.OWNERS);
     }
 }
@@ -0,0 +1,219 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Shares the invalidations of {@link ClinicCaches} between all instances of the application through PostgreSQL
+ * <code>NOTIFY</code>, so an instance does not serve entries that a write on another instance made stale.
+ * <p>
+ * Invalidations are published with <code>pg_notify</code> on the connection of the writing transaction. PostgreSQL
+ * only delivers them once that transaction has committed, and drops them on a rollback. Every instance keeps one
+ * connection that <code>LISTEN</code>s on the channel and evicts the entries named by the notifications of the other
+ * instances. When that connection breaks, notifications may have been missed, so all caches are cleared once it has
+ * been re-established.
+ * <p>
+ * The change events of {@link ClinicEvents} travel on the same channel, so the clients of every instance see the
+ * changes of all of them. The notifications give them the same guarantees; when the connection breaks,
+ * {@link ClinicEvents} starts a new epoch and sends its clients a reset.
+ * <p>
+ * Enabled with <code>petclinic.cache.cluster-invalidation.enabled</code>, which requires a PostgreSQL datasource.
+ */
+@ApplicationScoped
+public class ClusterCacheInvalidation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterCacheInvalidation.class);
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String ALL_KEYS = "*";
+    private static final String EVENT = "event";
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    @ConfigProperty(name = "petclinic.cache.cluster-invalidation.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "petclinic.cache.cluster-invalidation.channel", defaultValue = "petclinic_cache_invalidation")
+    String channel;
+
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    ClinicEvents clinicEvents;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile boolean listening;
+    private Thread listener;
+
+    void start(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalStateException("Invalid cache invalidation channel name: " + channel);
+        }
+        listening = true;
+        listener = new Thread(this::listen, "petclinic-cache-invalidation");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    void stop(@Observes ShutdownEvent event) throws InterruptedException {
+        if (listener == null) {
+            return;
+        }
+        listening = false;
+        listener.join(POLL_TIMEOUT_MILLIS * 2L);
+    }
+
+    /**
+     * @return the id that marks the notifications of this instance
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Tells the other instances to invalidate an entry, or the whole cache.
+     *
+     * @param cacheName the cache
+     * @param key       an id, or <code>null</code> for all entries
+     */
+    void publish(String cacheName, Object key) {
+        if (enabled) {
+            send(instanceId + ' ' + cacheName + ' ' + (key == null ? ALL_KEYS : key));
+        }
+    }
+
+    /**
+     * Tells the other instances to publish a change event to their clients once the current transaction has committed.
+     *
+     * @see ClinicEvents#publish(String, String, Integer)
+     */
+    void publishEvent(String type, String entity, Integer entityId) {
+        if (enabled) {
+            send(instanceId + ' ' + EVENT + ' ' + type + ' ' + entity + ' ' + entityId);
+        }
+    }
+
+    private void send(String payload) {
+        int status = transactionSynchronizationRegistry.getTransactionStatus();
+        if (status == Status.STATUS_ACTIVE) {
+            em.unwrap(Session.class).doWork(connection -> notify(connection, payload));
+            return;
+        }
+        if (status != Status.STATUS_NO_TRANSACTION) {
+            // the transaction will not commit, so it has not changed anything the other instances hold
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            notify(connection, payload);
+        } catch (SQLException e) {
+            LOG.warn("Unable to publish notification {}", payload, e);
+        }
+    }
+
+    /**
+     * Applies an invalidation or a change event published by an instance. Notifications of this instance are ignored,
+     * they have been applied already.
+     *
+     * @param payload <code>&lt;instance id&gt; &lt;cache name&gt; &lt;id or *&gt;</code> or
+     *                <code>&lt;instance id&gt; event &lt;type&gt; &lt;entity&gt; &lt;id&gt;</code>
+     */
+    public void onNotification(String payload) {
+        String[] parts = payload.split(" ");
+        boolean event = parts.length == 5 && EVENT.equals(parts[1]);
+        if (parts.length != 3 && !event) {
+            LOG.warn("Ignoring malformed notification {}", payload);
+            return;
+        }
+        if (instanceId.equals(parts[0])) {
+            return;
+        }
+        if (event) {
+            clinicEvents.publishRemote(parts[2], parts[3], parseId(parts[4]));
+            return;
+        }
+        clinicCaches.evictForRemoteWrite(parts[1], ALL_KEYS.equals(parts[2]) ? null : parseId(parts[2]));
+    }
+
+    private void listen() {
+        while (listening) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                // notifications sent while this instance was not listening are lost
+                clinicCaches.evictAllForRemoteWrites();
+                clinicEvents.reset();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (listening) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOG.warn("Cache invalidation listener failed, reconnecting in {} ms", RECONNECT_DELAY_MILLIS, e);
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listening = false;
+        }
+    }
+
+    private void notify(Connection connection, String payload) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
+
+    private static Integer parseId(String key) {
+        try {
+            return Integer.valueOf(key);
+        } catch (NumberFormatException e) {
+            // keys are ids, evict the whole cache if an instance sends anything else
+            return null;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import com.mpbauer.serverless.samples.petclinic.config.ReplicaRouting;
+import com.mpbauer.serverless.samples.petclinic.config.VirtualThreads;
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.AgroalDataSourceMetrics;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of service calls that use the database at the same time. With a fixed worker pool the pool size
+ * limits them, on {@link com.mpbauer.serverless.samples.petclinic.config.VirtualThreads virtual threads} every request
+ * gets its own thread and thousands of them would queue up inside the connection pool instead.
+ * <p>
+ * The limit defaults to the size of the connection pool. On virtual threads the pinned database calls occupy a carrier
+ * thread each, so no more of them run at the same time than there are carriers. With
+ * <code>petclinic.virtual-threads.limit-to-carriers</code> the limit is capped at that number, and the calls beyond it
+ * wait here without a carrier; otherwise a warning at startup names both numbers. Callers wait in a fair queue for at most
+ * <code>petclinic.datasource.max-wait</code>, then the call fails with a {@link ConnectionLimitExceededException}.
+ * A thread that already holds a permit, for example in a call from one service method to another, does not take a
+ * second one.
+ * <p>
+ * Within that limit every call first takes a permit of its {@link Bulkhead}, so bulk lists cannot starve lookups and
+ * writes. A bulkhead rejects calls right away instead of letting them wait when its queue is full, or when the
+ * connections of the pool the call will use currently take longer than its <code>shed-wait</code> to acquire: the
+ * replica's for reads that {@link ReplicaRouting} sends there, the primary's for everything else. The acquire wait is
+ * the average blocking time of the pool's Agroal metrics over the last sampling interval.
+ */
+@ApplicationScoped
+public class ConnectionLimit {
+
+    static final String QUEUE_FULL = "queue-full";
+    static final String SHED = "shed";
+    static final String TIMEOUT = "timeout";
+
+    static final Metadata ACQUIRE_WAIT = Metadata.builder()
+        .withName("petclinic.datasource.acquire-wait")
+        .withDescription("Average time the connections acquired during the last sampling interval waited in the pool")
+        .withType(MetricType.GAUGE)
+        .withUnit(MetricUnits.MILLISECONDS)
+        .build();
+    static final Metadata MAX_CONCURRENCY = Metadata.builder()
+        .withName("petclinic.bulkhead.max-concurrency")
+        .withDescription("Number of calls a bulkhead runs at the same time")
+        .withType(MetricType.GAUGE)
+        .build();
+    static final Metadata MAX_QUEUE = Metadata.builder()
+        .withName("petclinic.bulkhead.max-queue")
+        .withDescription("Number of calls that may wait for a permit of a bulkhead")
+        .withType(MetricType.GAUGE)
+        .build();
+    static final Metadata QUEUED = Metadata.builder()
+        .withName("petclinic.bulkhead.queued")
+        .withDescription("Number of calls waiting for a permit of a bulkhead")
+        .withType(MetricType.GAUGE)
+        .build();
+    static final Metadata REJECTED = Metadata.builder()
+        .withName("petclinic.bulkhead.rejected")
+        .withDescription("Number of calls a bulkhead rejected, by reason")
+        .withType(MetricType.COUNTER)
+        .build();
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionLimit.class);
+
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final ThreadLocal<Boolean> holdsPermit = new ThreadLocal<>();
+
+    @ConfigProperty(name = "petclinic.datasource.max-concurrency", defaultValue = "80")
+    int maxConcurrency;
+
+    @ConfigProperty(name = "petclinic.datasource.max-wait", defaultValue = "5S")
+    Duration maxWait;
+
+    @ConfigProperty(name = "petclinic.virtual-threads.limit-to-carriers", defaultValue = "false")
+    boolean limitToCarriers;
+
+    @Inject
+    Config config;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @Inject
+    VirtualThreads virtualThreads;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    private Semaphore permits;
+    private final Map<Bulkhead, Compartment> compartments = new EnumMap<>(Bulkhead.class);
+    private Pool primary;
+    private Pool replica;
+
+    @PostConstruct
+    void createPermits() {
+        int carriers = virtualThreads.getCarrierThreads();
+        if (virtualThreads.isEnabled() && maxConcurrency > carriers) {
+            if (limitToCarriers) {
+                LOG.info("Limiting concurrent database calls to the {} carrier threads of the virtual threads",
+                    carriers);
+                maxConcurrency = carriers;
+            } else {
+                LOG.warn("Up to {} concurrent database calls are allowed, but only {} run at a time on the carrier "
+                        + "threads of the virtual threads; raise -Djdk.virtualThreadScheduler.parallelism or set "
+                        + "petclinic.virtual-threads.limit-to-carriers", maxConcurrency, carriers);
+            }
+        }
+        permits = new Semaphore(maxConcurrency, true);
+        primary = new Pool(dataSource);
+        if (replicaRouting.isEnabled()) {
+            replica = new Pool(replicaRouting.getReplicaDataSource());
+        }
+        for (Bulkhead bulkhead : Bulkhead.values()) {
+            compartments.put(bulkhead, new Compartment(bulkhead));
+        }
+    }
+
+    void registerGauges(@Observes StartupEvent event) {
+        metricRegistry.register(ACQUIRE_WAIT, (Gauge<Long>) primary::acquireWaitMillis,
+            new Tag("datasource", ReplicaRouting.PRIMARY));
+        if (replica != null) {
+            metricRegistry.register(ACQUIRE_WAIT, (Gauge<Long>) replica::acquireWaitMillis,
+                new Tag("datasource", ReplicaRouting.REPLICA));
+        }
+        for (Compartment compartment : compartments.values()) {
+            Tag tag = new Tag("bulkhead", compartment.bulkhead.getConfigName());
+            metricRegistry.register(MAX_CONCURRENCY, (Gauge<Integer>) () -> compartment.maxConcurrency, tag);
+            metricRegistry.register(MAX_QUEUE, (Gauge<Integer>) () -> compartment.maxQueue, tag);
+            metricRegistry.register(QUEUED, (Gauge<Integer>) compartment.queued::get, tag);
+        }
+    }
+
+    /**
+     * @return the number of calls that use the database at the same time
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Runs a call in the {@link Bulkhead#READ} bulkhead.
+     *
+     * @see #execute(Bulkhead, Callable)
+     */
+    public <T> T execute(Callable<T> call) throws Exception {
+        return execute(Bulkhead.READ, call);
+    }
+
+    /**
+     * @param bulkhead the bulkhead of the call
+     * @param call     the call that uses the database
+     * @return the result of the call
+     * @throws ConnectionLimitExceededException if the bulkhead rejected the call or no permit became available
+     *                                          within the maximum wait
+     */
+    public <T> T execute(Bulkhead bulkhead, Callable<T> call) throws Exception {
+        if (holdsPermit.get() != null) {
+            return call.call();
+        }
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        Compartment compartment = compartments.get(bulkhead);
+        Pool pool = pool(bulkhead);
+        compartment.acquire(deadline, pool);
+        try {
+            if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw compartment.reject(TIMEOUT, pool,
+                    "No database connection became available within " + maxWait.toMillis() + " ms");
+            }
+            holdsPermit.set(Boolean.TRUE);
+            try {
+                return call.call();
+            } finally {
+                holdsPermit.remove();
+                permits.release();
+            }
+        } finally {
+            compartment.permits.release();
+        }
+    }
+
+    /**
+     * @return the connection pool the call will use; writes stay on the primary
+     */
+    private Pool pool(Bulkhead bulkhead) {
+        return bulkhead != Bulkhead.WRITE && replica != null && replicaRouting.readsFromReplica() ? replica : primary;
+    }
+
+    /**
+     * The permits and queue of one {@link Bulkhead}.
+     */
+    private class Compartment {
+
+        final Bulkhead bulkhead;
+        final int maxConcurrency;
+        final int maxQueue;
+        final Duration shedWait;
+        final Semaphore permits;
+        final AtomicInteger queued = new AtomicInteger();
+
+        Compartment(Bulkhead bulkhead) {
+            String prefix = "petclinic.bulkhead." + bulkhead.getConfigName() + ".";
+            this.bulkhead = bulkhead;
+            this.maxConcurrency = config.getOptionalValue(prefix + "max-concurrency", Integer.class)
+                .orElse(bulkhead.defaultMaxConcurrency);
+            this.maxQueue = config.getOptionalValue(prefix + "max-queue", Integer.class)
+                .orElse(bulkhead.defaultMaxQueue);
+            this.shedWait = config.getOptionalValue(prefix + "shed-wait", Duration.class)
+                .orElse(bulkhead.defaultShedWait);
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        void acquire(long deadline, Pool pool) throws InterruptedException {
+            // a timed tryAcquire, unlike tryAcquire(), does not overtake the calls that are already waiting
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueue) {
+                queued.decrementAndGet();
+                throw reject(QUEUE_FULL, pool, "Too many " + bulkhead.getConfigName() + " calls are waiting for the database");
+            }
+            try {
+                if (shedWait != null && pool.acquireWaitMillis() >= shedWait.toMillis()) {
+                    throw reject(SHED, pool, "The database is too busy for " + bulkhead.getConfigName() + " calls");
+                }
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw reject(TIMEOUT, pool, "No " + bulkhead.getConfigName() + " permit became available within "
+                        + maxWait.toMillis() + " ms");
+                }
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+
+        ConnectionLimitExceededException reject(String reason, Pool pool, String message) {
+            metricRegistry.counter(REJECTED,
+                new Tag("bulkhead", bulkhead.getConfigName()), new Tag("reason", reason)).inc();
+            // the pool should have caught up by the time the callers that are waiting now are served
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(pool.acquireWaitMillis() + 999));
+            return new ConnectionLimitExceededException(message, retryAfter);
+        }
+    }
+
+    /**
+     * The acquire wait of one connection pool, sampled from its Agroal metrics.
+     */
+    private static class Pool {
+
+        final AgroalDataSource dataSource;
+
+        // guarded by this
+        private long sampledAt = System.nanoTime();
+        private long lastAcquireCount;
+        private long lastBlockingMillis;
+        private volatile long acquireWaitMillis;
+
+        Pool(AgroalDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * @return the average time the connections acquired during the last sampling interval waited in the pool, or
+         * the length of the interval if callers are waiting and none was acquired
+         */
+        long acquireWaitMillis() {
+            if (System.nanoTime() - sampledAt >= SAMPLE_INTERVAL_NANOS) {
+                sample();
+            }
+            return acquireWaitMillis;
+        }
+
+        private synchronized void sample() {
+            long now = System.nanoTime();
+            if (now - sampledAt < SAMPLE_INTERVAL_NANOS) {
+                return;
+            }
+            AgroalDataSourceMetrics metrics = dataSource.getMetrics();
+            long acquireCount = metrics.acquireCount();
+            long blockingMillis = metrics.blockingTimeTotal().toMillis();
+            long acquired = acquireCount - lastAcquireCount;
+            if (acquired > 0) {
+                acquireWaitMillis = (blockingMillis - lastBlockingMillis) / acquired;
+            } else {
+                acquireWaitMillis = metrics.awaitingCount() > 0 ? TimeUnit.NANOSECONDS.toMillis(now - sampledAt) : 0;
+            }
+            lastAcquireCount = acquireCount;
+            lastBlockingMillis = blockingMillis;
+            sampledAt = now;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+/**
+ * Thrown when a {@link Bulkhead} rejected a call, or when a call waited longer than
+ * <code>petclinic.datasource.max-wait</code> for a {@link ConnectionLimit} permit.
+ */
+public class ConnectionLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ConnectionLimitExceededException(String message) {
+        this(message, 1);
+    }
+
+    /**
+     * @param retryAfterSeconds the time after which the client should retry the call
+     */
+    public ConnectionLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implements {@link ConnectionLimited}. Runs inside the caches, so a cache hit needs no permit, and outside the
+ * transactions, so a caller waits for its permit before it takes a connection from the pool.
+ */
+@ConnectionLimited
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 100)
+public class ConnectionLimitInterceptor {
+
+    private final Map<Method, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Inject
+    ConnectionLimit connectionLimit;
+
+    @AroundInvoke
+    Object limitConnections(InvocationContext context) throws Exception {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(context.getMethod(), ConnectionLimitInterceptor::bulkhead);
+        return connectionLimit.execute(bulkhead, context::proceed);
+    }
+
+    static Bulkhead bulkhead(Method method) {
+        ConnectionLimited limited = method.getAnnotation(ConnectionLimited.class);
+        if (limited == null) {
+            limited = method.getDeclaringClass().getAnnotation(ConnectionLimited.class);
+        }
+        return limited == null ? Bulkhead.READ : limited.value();
+    }
+}
@@ -0,0 +1,29 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import javax.enterprise.util.Nonbinding;
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method under the {@link ConnectionLimit}: at most as many calls as the datasource has connections run at
+ * the same time, the others wait for a permit. A method annotation names the {@link Bulkhead} of the method and takes
+ * precedence over the annotation of its class.
+ *
+ * @see ConnectionLimitInterceptor
+ */
+@Inherited
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface ConnectionLimited {
+
+    /**
+     * @return the bulkhead of the calls
+     */
+    @Nonbinding
+    Bulkhead value() default Bulkhead.READ;
+}
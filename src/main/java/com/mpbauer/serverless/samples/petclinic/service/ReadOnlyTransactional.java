@@ -0,0 +1,23 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method in a read-only transaction: entities are loaded read-only, so Hibernate keeps no snapshots for dirty
+ * checking, the session is never flushed and the JDBC connection is marked read-only.
+ * <p>
+ * If a transaction is already active the method joins it unchanged, because the caller may still write.
+ *
+ * @see ReadOnlyTransactionalInterceptor
+ */
+@Inherited
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface ReadOnlyTransactional {
+}
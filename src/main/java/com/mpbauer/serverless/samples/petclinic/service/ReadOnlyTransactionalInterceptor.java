@@ -0,0 +1,70 @@
+package com.mpbauer.serverless.samples.petclinic.service;
+
+import com.mpbauer.serverless.samples.petclinic.config.ReplicaRouting;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.TransactionManager;
+
+/**
+ * Implements {@link ReadOnlyTransactional}. The transaction is always rolled back, which ends it without the flush
+ * that precedes a commit. The read-only flag stays on the pooled connection after the transaction,
+ * {@link com.mpbauer.serverless.samples.petclinic.config.ReadOnlyConnectionReset} clears it when the connection is
+ * returned to the pool.
+ * <p>
+ * The session is opened through {@link ReplicaRouting}, which may place it on the read replica.
+ */
+@ReadOnlyTransactional
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 200)
+public class ReadOnlyTransactionalInterceptor {
+
+    @Inject
+    TransactionManager transactionManager;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    ReplicaRouting replicaRouting;
+
+    @AroundInvoke
+    Object readOnlyTransaction(InvocationContext context) throws Exception {
+        if (transactionManager.getStatus() != Status.STATUS_NO_TRANSACTION) {
+            return context.proceed();
+        }
+        transactionManager.begin();
+        Throwable failure = null;
+        try {
+            Session session = em.unwrap(Session.class);
+            // the first call opens the session of the transaction, and with it picks the datasource
+            replicaRouting.openSession(() -> session.setDefaultReadOnly(true));
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            // must happen before the first statement, drivers refuse to change it inside a running transaction
+            session.doWork(connection -> connection.setReadOnly(true));
+            return context.proceed();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            // there is nothing to commit, and the transaction scoped session is flushed before every commit
+            // regardless of its flush mode
+            try {
+                transactionManager.rollback();
+            } catch (Exception rollbackFailure) {
+                // keep the exception of the call, the failed rollback is only a consequence of it
+                if (failure == null) {
+                    throw rollbackFailure;
+                }
+                failure.addSuppressed(rollbackFailure);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 
+@ConnectionLimited
 @ApplicationScoped
 public class UserServiceImpl implements UserService {
 
@@ -15,6 +16,7 @@ public class UserServiceImpl implements UserService {
     UserRepository userRepository;
 
     @Override
+    @ConnectionLimited(Bulkhead.WRITE)
     @Transactional
     public void saveUser(User user) throws Exception {
 
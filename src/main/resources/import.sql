@@ -2,6 +2,7 @@ CREATE TABLE IF NOT EXISTS vets (
   id SERIAL,
   first_name VARCHAR(30),
   last_name VARCHAR(30),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_vets PRIMARY KEY (id)
 );
 
@@ -13,6 +14,7 @@ ALTER SEQUENCE vets_id_seq RESTART WITH 100;
 CREATE TABLE IF NOT EXISTS specialties (
   id SERIAL,
   name VARCHAR(80),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_specialties PRIMARY KEY (id)
 );
 
@@ -34,6 +36,7 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
 CREATE TABLE IF NOT EXISTS types (
   id SERIAL,
   name VARCHAR(80),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_types PRIMARY KEY (id)
 );
 
@@ -48,6 +51,7 @@ CREATE TABLE IF NOT EXISTS owners (
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_owners PRIMARY KEY (id)
 );
 
@@ -62,6 +66,7 @@ CREATE TABLE IF NOT EXISTS pets (
   birth_date DATE,
   type_id INT NOT NULL,
   owner_id INT NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id),
   CONSTRAINT pk_pets PRIMARY KEY (id)
@@ -77,6 +82,7 @@ CREATE TABLE IF NOT EXISTS visits (
   pet_id INT NOT NULL,
   visit_date DATE,
   description VARCHAR(255),
+  version INT NOT NULL DEFAULT 0,
   FOREIGN KEY (pet_id) REFERENCES pets(id),
   CONSTRAINT pk_visits PRIMARY KEY (id)
 );
@@ -94,6 +100,7 @@ CREATE TABLE IF NOT EXISTS roles (
   id SERIAL,
   username varchar(20) NOT NULL,
   role varchar(20) NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_roles PRIMARY KEY (id),
   FOREIGN KEY (username) REFERENCES users (username)
 );
@@ -101,6 +108,38 @@ CREATE TABLE IF NOT EXISTS roles (
 ALTER TABLE roles ADD CONSTRAINT uni_username_role UNIQUE (role,username);
 ALTER SEQUENCE roles_id_seq RESTART WITH 100;
 
+-- optimistic locking versions for databases created before they were added
+ALTER TABLE vets ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE specialties ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE types ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE pets ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE visits ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE roles ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+
+-- change sequence of /api/sync, existing rows are numbered when the column is added
+CREATE SEQUENCE IF NOT EXISTS change_seq;
+ALTER TABLE vets ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE specialties ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE types ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE pets ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE visits ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+ALTER TABLE roles ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('change_seq');
+CREATE INDEX IF NOT EXISTS idx_vets_change_seq ON vets (change_seq);
+CREATE INDEX IF NOT EXISTS idx_specialties_change_seq ON specialties (change_seq);
+CREATE INDEX IF NOT EXISTS idx_types_change_seq ON types (change_seq);
+CREATE INDEX IF NOT EXISTS idx_owners_change_seq ON owners (change_seq);
+CREATE INDEX IF NOT EXISTS idx_pets_change_seq ON pets (change_seq);
+CREATE INDEX IF NOT EXISTS idx_visits_change_seq ON visits (change_seq);
+
+CREATE TABLE IF NOT EXISTS tombstones (
+  change_seq BIGINT NOT NULL,
+  entity VARCHAR(20) NOT NULL,
+  entity_id INT NOT NULL,
+  CONSTRAINT pk_tombstones PRIMARY KEY (change_seq)
+);
+
 
 INSERT INTO vets (id, first_name, last_name) VALUES (1, 'James', 'Carter') ON CONFLICT DO NOTHING;
 INSERT INTO vets (id, first_name, last_name) VALUES (2, 'Helen', 'Leary') ON CONFLICT DO NOTHING;
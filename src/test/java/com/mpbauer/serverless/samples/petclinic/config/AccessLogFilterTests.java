@@ -0,0 +1,39 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.rest.OwnerRestController;
+import com.mpbauer.serverless.samples.petclinic.rest.VisitRestController;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogFilterTests {
+
+    @Test
+    void shouldJoinClassAndMethodPaths() throws NoSuchMethodException {
+        assertThat(AccessLogFilter.pathTemplate(OwnerRestController.class, method(OwnerRestController.class, "getOwner")))
+            .isEqualTo("/api/owners/{ownerId}");
+        assertThat(AccessLogFilter.pathTemplate(OwnerRestController.class, method(OwnerRestController.class, "getOwners")))
+            .isEqualTo("/api/owners");
+        assertThat(AccessLogFilter.pathTemplate(VisitRestController.class, method(VisitRestController.class, "getVisit")))
+            .isEqualTo("/api/visits/{visitId}");
+    }
+
+    @Test
+    void shouldRedactHeadersIgnoringCase() {
+        Set<String> redacted = Set.of("Authorization", "Cookie");
+        assertThat(AccessLogFilter.redact("authorization", "Bearer abc", redacted)).isEqualTo(AccessLogFilter.REDACTED);
+        assertThat(AccessLogFilter.redact("Accept", "application/json", redacted)).isEqualTo("application/json");
+    }
+
+    private static Method method(Class<?> type, String name) throws NoSuchMethodException {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
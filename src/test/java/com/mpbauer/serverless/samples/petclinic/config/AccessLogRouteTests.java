@@ -0,0 +1,113 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sends requests through the HTTP stack and reads the access log events they produce.
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class AccessLogRouteTests extends AbstractIntegrationTest {
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            events.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void captureEvents() {
+        Logger.getLogger("petclinic.access").addHandler(handler);
+    }
+
+    @AfterEach
+    void stopCapturing() {
+        Logger.getLogger("petclinic.access").removeHandler(handler);
+    }
+
+    @Test
+    void shouldLogPathTemplateOfMatchedResource() throws InterruptedException {
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/pettypes/1")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode());
+
+        JsonObject event = event("/api/pettypes/{petTypeId}");
+        assertThat(event.getString("method")).isEqualTo("GET");
+        assertThat(event.getInt("status")).isEqualTo(200);
+        assertThat(event.getJsonNumber("durationMicros").longValue()).isPositive();
+        assertThat(event.getJsonNumber("bytes").longValue()).isPositive();
+    }
+
+    @Test
+    void shouldLogRequestsNoResourceMatched() throws InterruptedException {
+        int status = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/unknown")
+            .then()
+            .extract().statusCode();
+
+        assertThat(event(AccessLogFilter.UNMATCHED).getInt("status")).isEqualTo(status);
+    }
+
+    @Test
+    void shouldLogRequestsOutsideOfRestEasy() throws InterruptedException {
+        given()
+            .when()
+            .get("/q/health/live")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode());
+
+        assertThat(event(AccessLogFilter.UNMATCHED).getInt("status")).isEqualTo(200);
+    }
+
+    /**
+     * @param path the path of the event
+     * @return the next event with the path; it is logged once the response has been sent, after the client got it
+     */
+    private JsonObject event(String path) throws InterruptedException {
+        while (true) {
+            String message = Optional.ofNullable(events.poll(5, TimeUnit.SECONDS))
+                .orElseThrow(() -> new AssertionError("no access log event for " + path));
+            JsonObject event = Json.createReader(new StringReader(message)).readObject();
+            if (path.equals(event.getString("path"))) {
+                return event;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimit;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import javax.inject.Inject;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs with virtual threads enabled and the connection limit capped at their carrier threads, see
+ * {@link VirtualThreadsTests} for how to run it on a Java 21 runtime.
+ */
+@QuarkusTest
+@TestProfile(CarrierLimitedVirtualThreadsTests.CarrierLimitedProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class CarrierLimitedVirtualThreadsTests {
+
+    @Inject
+    VirtualThreads virtualThreads;
+
+    @Inject
+    ConnectionLimit connectionLimit;
+
+    @ConfigProperty(name = "quarkus.datasource.jdbc.max-size")
+    int poolSize;
+
+    @Test
+    @DisabledIf("com.mpbauer.serverless.samples.petclinic.config.VirtualThreadsTests#supportsVirtualThreads")
+    void shouldKeepConnectionLimitBeforeJava21() {
+        assertThat(connectionLimit.getMaxConcurrency()).isEqualTo(poolSize);
+    }
+
+    @Test
+    @EnabledIf("com.mpbauer.serverless.samples.petclinic.config.VirtualThreadsTests#supportsVirtualThreads")
+    void shouldLimitDatabaseCallsToCarrierThreads() {
+        assertThat(connectionLimit.getMaxConcurrency())
+            .isEqualTo(Math.min(poolSize, virtualThreads.getCarrierThreads()));
+    }
+
+    public static class CarrierLimitedProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("petclinic.virtual-threads.enabled", "true",
+                "petclinic.virtual-threads.limit-to-carriers", "true",
+                "mp.openapi.scan.disable", "true");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.restassured.http.ContentType;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.restassured.response.ValidatableResponse;
+import io.restassured.specification.RequestSpecification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class IdempotencyKeysTests extends AbstractIntegrationTest {
+
+    private static final String NEW_OWNER = "{\"firstName\":\"Sam\",\"lastName\":\"Schultz\","
+        + "\"address\":\"4, Evans Street\",\"city\":\"Wollongong\",\"telephone\":\"4444444444\"}";
+
+    @InjectMock
+    ClinicService clinicService;
+
+    private final AtomicInteger ids = new AtomicInteger(100);
+
+    @BeforeEach
+    void assignIds() {
+        doAnswer(invocation -> {
+            invocation.<Owner>getArgument(0).setId(ids.incrementAndGet());
+            return null;
+        }).when(clinicService).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldReplayResponseForRepeatedKey() {
+        String key = UUID.randomUUID().toString();
+
+        ExtractableResponse<Response> first = addOwner(key, NEW_OWNER).statusCode(201).extract();
+        ExtractableResponse<Response> repeat = addOwner(key, NEW_OWNER).statusCode(201).extract();
+
+        assertThat(first.header(IdempotencyKeys.REPLAYED_HEADER)).isNull();
+        assertThat(repeat.header(IdempotencyKeys.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(repeat.header("Location")).isEqualTo(first.header("Location"));
+        assertThat(repeat.body().asString()).isEqualTo(first.body().asString());
+        verify(clinicService, times(1)).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldRejectRepeatWithDifferentBody() {
+        String key = UUID.randomUUID().toString();
+        addOwner(key, NEW_OWNER).statusCode(201);
+
+        addOwner(key, NEW_OWNER.replace("Sam", "Samantha"))
+            .statusCode(422)
+            .header(IdempotencyKeys.REPLAYED_HEADER, nullValue());
+        addOwner(key, NEW_OWNER).statusCode(201).header(IdempotencyKeys.REPLAYED_HEADER, "true");
+        verify(clinicService, times(1)).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldRunRequestsWithDifferentKeys() {
+        addOwner(UUID.randomUUID().toString(), NEW_OWNER).statusCode(201);
+        addOwner(UUID.randomUUID().toString(), NEW_OWNER).statusCode(201);
+        addOwner(null, NEW_OWNER).statusCode(201);
+
+        verify(clinicService, times(3)).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldRejectRepeatWhileFirstRequestIsRunning() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            invocation.<Owner>getArgument(0).setId(ids.incrementAndGet());
+            return null;
+        }).when(clinicService).saveOwner(any(Owner.class));
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(
+            () -> addOwner(key, NEW_OWNER).extract().statusCode());
+        verify(clinicService, timeout(10_000)).saveOwner(any(Owner.class));
+        addOwner(key, NEW_OWNER).statusCode(409);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(201);
+        addOwner(key, NEW_OWNER).statusCode(201).header(IdempotencyKeys.REPLAYED_HEADER, "true");
+        verify(clinicService, times(1)).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldFreeKeyOfFailedRequest() {
+        String key = UUID.randomUUID().toString();
+
+        addOwner(key, "{\"lastName\":\"Schultz\"}").statusCode(400);
+        addOwner(key, NEW_OWNER).statusCode(201).header(IdempotencyKeys.REPLAYED_HEADER, nullValue());
+
+        verify(clinicService, times(1)).saveOwner(any(Owner.class));
+    }
+
+    @Test
+    void shouldRejectOverlongKey() {
+        addOwner("k".repeat(IdempotencyKeys.MAX_KEY_LENGTH + 1), NEW_OWNER).statusCode(400);
+    }
+
+    private ValidatableResponse addOwner(String key, String owner) {
+        RequestSpecification request = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(ContentType.JSON)
+            .contentType(ContentType.JSON)
+            .body(owner);
+        if (key != null) {
+            request.header(IdempotencyKeys.HEADER, key);
+        }
+        return request.when().post("/api/owners").then();
+    }
+}
@@ -0,0 +1,124 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectSpy;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.smallrye.jwt.build.Jwt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * With a replica configured, a caller that has just written reads from the primary, while the calls of other callers
+ * with the same roles read from the replica. The service call of the first request is held, so the second one finds
+ * it in flight.
+ */
+@QuarkusTest
+@TestProfile(RequestCoalescingReplicaTests.ReplicaProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class RequestCoalescingReplicaTests extends AbstractIntegrationTest {
+
+    private static final String TEST_DATA = "RUNSCRIPT FROM 'classpath:db/migration/V9999.0.1__testdata.sql'";
+    private static final String OWNER_SUMMARY = "/api/owners/1?fields=firstName,lastName";
+
+    @InjectSpy
+    ClinicService clinicService;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    void loadTestData() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(TEST_DATA);
+        }
+    }
+
+    @Test
+    void shouldNotShareReplicaReadWithCallerThatHasToReadItsWrites() throws Exception {
+        String writer = ownerAdminToken("writer");
+        String reader = ownerAdminToken("reader");
+        given()
+            .auth().oauth2(writer)
+            .contentType(ContentType.JSON)
+            .body("{\"firstName\":\"Jean\",\"lastName\":\"Coleman\",\"address\":\"105 N. Lake St.\"," +
+                "\"city\":\"Monona\",\"telephone\":\"6085552654\"}")
+            .when().post("/api/owners")
+            .then()
+            .statusCode(201);
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(30, TimeUnit.SECONDS);
+            return owner;
+        }).when(clinicService).findOwnerById(1, Owner.GRAPH_SUMMARY);
+
+        CompletableFuture<HttpResponse<String>> fromReplica = send(reader);
+        verify(clinicService, timeout(10_000).times(1)).findOwnerById(1, Owner.GRAPH_SUMMARY);
+        CompletableFuture<HttpResponse<String>> fromPrimary = send(writer);
+        verify(clinicService, timeout(10_000).times(2)).findOwnerById(1, Owner.GRAPH_SUMMARY);
+        release.countDown();
+
+        assertThat(fromReplica.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(fromPrimary.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String token) {
+        URI uri = URI.create(RestAssured.baseURI + ":" + RestAssured.port + "/")
+            .resolve(RestAssured.basePath + OWNER_SUMMARY);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .header("Authorization", "Bearer " + token)
+            .header("Accept", "application/json")
+            .timeout(Duration.ofSeconds(30))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String ownerAdminToken(String subject) {
+        return Jwt.subject(subject).groups(Roles.OWNER_ADMIN).sign();
+    }
+
+    public static class ReplicaProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "petclinic.replica.enabled", "true",
+                "petclinic.replica.read-your-writes-window", "30S");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectSpy;
+import io.restassured.RestAssured;
+import io.smallrye.jwt.build.Jwt;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The service call of the first request is held until the other requests have arrived, so they all find it in flight.
+ */
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class RequestCoalescingTests extends AbstractIntegrationTest {
+
+    private static final String OWNER_SUMMARY = "/api/owners/1?fields=firstName,lastName";
+
+    @InjectSpy
+    ClinicService clinicService;
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void shouldRunOneQueryForConcurrentIdenticalRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        holdOwnerSummary(release, InvocationOnMock::callRealMethod);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        long coalesced = coalesced();
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            responses.add(send(OWNER_SUMMARY, generateValidOwnerAdminToken()));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (coalesced() < coalesced + 499 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        String body = responses.get(0).get(30, TimeUnit.SECONDS).body();
+        assertThat(body).contains("\"lastName\":\"Franklin\"");
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertThat(response.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+            assertThat(response.get().body()).isEqualTo(body);
+        }
+        assertThat(coalesced()).isEqualTo(coalesced + 499);
+        verify(clinicService, times(1)).findOwnerById(1, Owner.GRAPH_SUMMARY);
+        assertThat(statistics.getPrepareStatementCount() - statements).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotShareResponseBetweenRoles() throws Exception {
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        CountDownLatch release = new CountDownLatch(1);
+        holdOwnerSummary(release, invocation -> owner);
+        String ownerAndVetAdminToken = Jwt.subject("X00004").groups(Set.of(Roles.OWNER_ADMIN, Roles.VET_ADMIN)).sign();
+
+        CompletableFuture<HttpResponse<String>> ownerAdmin = send(OWNER_SUMMARY, generateValidOwnerAdminToken());
+        CompletableFuture<HttpResponse<String>> ownerAndVetAdmin = send(OWNER_SUMMARY, ownerAndVetAdminToken);
+        verify(clinicService, timeout(10_000).times(2)).findOwnerById(1, Owner.GRAPH_SUMMARY);
+        release.countDown();
+
+        assertThat(ownerAdmin.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(ownerAndVetAdmin.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+    }
+
+    /**
+     * Holds the calls of the owner summary until <code>release</code> is counted down, then answers them.
+     */
+    private void holdOwnerSummary(CountDownLatch release, Answer<?> answer) {
+        doAnswer(invocation -> {
+            release.await(30, TimeUnit.SECONDS);
+            return answer.answer(invocation);
+        }).when(clinicService).findOwnerById(1, Owner.GRAPH_SUMMARY);
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path, String token) {
+        URI uri = URI.create(RestAssured.baseURI + ":" + RestAssured.port + "/")
+            .resolve(RestAssured.basePath + path);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .header("Authorization", "Bearer " + token)
+            .header("Accept", "application/json")
+            .timeout(Duration.ofSeconds(30))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private long coalesced() {
+        Counter counter = metricRegistry.getCounters().get(new MetricID(RequestCoalescing.COALESCED.getName()));
+        return counter == null ? 0 : counter.getCount();
+    }
+}
@@ -0,0 +1,77 @@
+package com.mpbauer.serverless.samples.petclinic.config;
+
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimit;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs with virtual threads enabled. Which tests run depends on the JVM, <code>mvn test -Pjava21
+ * -Djava21.home=&lt;JDK 21&gt;</code> runs them on a Java 21 runtime.
+ */
+@QuarkusTest
+@TestProfile(VirtualThreadsTests.VirtualThreadsProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class VirtualThreadsTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Inject
+    VirtualThreads virtualThreads;
+
+    @Inject
+    ConnectionLimit connectionLimit;
+
+    @ConfigProperty(name = "quarkus.datasource.jdbc.max-size")
+    int poolSize;
+
+    @Test
+    @DisabledIf("supportsVirtualThreads")
+    void shouldRunOnCallingThreadBeforeJava21() {
+        Thread caller = Thread.currentThread();
+
+        assertThat(virtualThreads.isEnabled()).isFalse();
+        assertThat(virtualThreads.run(Thread::currentThread).await().atMost(TIMEOUT)).isSameAs(caller);
+        assertThat(connectionLimit.getMaxConcurrency()).isEqualTo(poolSize);
+    }
+
+    @Test
+    @EnabledIf("supportsVirtualThreads")
+    void shouldRunOnVirtualThread() throws Exception {
+        Thread thread = virtualThreads.run(Thread::currentThread).await().atMost(TIMEOUT);
+
+        assertThat(virtualThreads.isEnabled()).isTrue();
+        assertThat(Thread.class.getMethod("isVirtual").invoke(thread)).isEqualTo(Boolean.TRUE);
+    }
+
+    @Test
+    @EnabledIf("supportsVirtualThreads")
+    void shouldKeepConnectionLimitWhateverTheCarrierThreads() {
+        assertThat(connectionLimit.getMaxConcurrency()).isEqualTo(poolSize);
+    }
+
+    static boolean supportsVirtualThreads() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    public static class VirtualThreadsProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // the OpenAPI scanner of this Quarkus version fails on Java 21, the tests do not need the document
+            return Map.of("petclinic.virtual-threads.enabled", "true", "mp.openapi.scan.disable", "true");
+        }
+    }
+}
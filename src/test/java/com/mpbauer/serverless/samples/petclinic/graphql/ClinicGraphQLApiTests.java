@@ -0,0 +1,85 @@
+package com.mpbauer.serverless.samples.petclinic.graphql;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.ValidatableResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class ClinicGraphQLApiTests extends AbstractIntegrationTest {
+
+    private static final String OWNERS_WITH_VISITS =
+        "{ owners(limit: %d) { id lastName pets { name type { name } visits { date description } } } }";
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testOwnersWithPetsAndVisitsRunConstantNumberOfStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        query(generateValidOwnerAdminToken(), String.format(OWNERS_WITH_VISITS, 2))
+            .body("data.owners", hasSize(2));
+        long statements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        query(generateValidOwnerAdminToken(), String.format(OWNERS_WITH_VISITS, 10))
+            .body("data.owners", hasSize(10))
+            .body("data.owners.find { it.id == 6 }.pets.name", contains("Max", "Samantha"))
+            .body("data.owners.find { it.id == 6 }.pets[1].visits.description", contains("rabies shot", "spayed"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void testGetPetWithOwnerAndVisits() {
+        query(generateValidOwnerAdminToken(),
+            "{ pet(id: 7) { name birthDate type { name } owner { lastName } visits { id date } } }")
+            .body("data.pet.name", equalTo("Samantha"))
+            .body("data.pet.birthDate", equalTo("2012-09-04"))
+            .body("data.pet.type.name", equalTo("cat"))
+            .body("data.pet.owner.lastName", equalTo("Coleman"))
+            .body("data.pet.visits.id", contains(1, 4))
+            .body("data.pet.visits[0].date", equalTo("2013-01-01"));
+    }
+
+    @Test
+    void testGetVetsWithSpecialties() {
+        query(generateValidVetAdminToken(), "{ vets { lastName specialties { name } } }")
+            .body("data.vets", hasSize(6))
+            .body("data.vets.find { it.lastName == 'Douglas' }.specialties.name", contains("dentistry", "surgery"));
+    }
+
+    @Test
+    void testGetOwnersForbiddenForVetAdmin() {
+        query(generateValidVetAdminToken(), "{ owners { id } }")
+            .body("data.owners", nullValue())
+            .body("errors", not(empty()));
+    }
+
+    private static ValidatableResponse query(String token, String query) {
+        return given()
+            .auth().oauth2(token)
+            .contentType("application/json")
+            .body(Map.of("query", query))
+            .when().post("/api/graphql")
+            .then()
+            .statusCode(200);
+    }
+}
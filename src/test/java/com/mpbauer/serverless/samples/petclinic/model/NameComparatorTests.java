@@ -0,0 +1,46 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NameComparatorTests {
+
+    @Test
+    void shouldOrderEqualNamesByIdWhateverTheInsertionOrder() {
+        Pet first = pet(7, "Leo");
+        Pet second = pet(3, "Leo");
+        Pet third = pet(5, "leo");
+
+        Set<Pet> oneWay = new TreeSet<>(new NameComparator());
+        oneWay.addAll(List.of(first, second, third));
+        Set<Pet> otherWay = new TreeSet<>(new NameComparator());
+        otherWay.addAll(List.of(third, second, first));
+
+        assertThat(oneWay).extracting(Pet::getId).containsExactly(3, 7, 5);
+        assertThat(otherWay).extracting(Pet::getId).containsExactly(3, 7, 5);
+    }
+
+    @Test
+    void shouldKeepUnsavedEntitiesWithEqualNamesAfterSavedOnes() {
+        Pet saved = pet(3, "Leo");
+        Pet unsaved = pet(null, "Leo");
+        Pet otherUnsaved = pet(null, "Leo");
+
+        Set<Pet> pets = new TreeSet<>(new NameComparator());
+        pets.addAll(List.of(unsaved, saved, otherUnsaved));
+
+        assertThat(pets).containsExactly(saved, unsaved, otherUnsaved);
+    }
+
+    private static Pet pet(Integer id, String name) {
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName(name);
+        return pet;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mpbauer.serverless.samples.petclinic.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OwnerTests {
+
+    @Test
+    void shouldFindPetWhoseNameDiffersInCaseOnEitherSideOfTheExactName() {
+        Owner owner = new Owner();
+        owner.addPet(pet(4, "LEO"));
+        owner.addPet(pet(5, "leo"));
+        owner.addPet(pet(2, "Max"));
+        owner.addPet(pet(6, "Basil"));
+
+        assertThat(owner.getPet("Leo").getId()).isEqualTo(5);
+        assertThat(owner.getPet("lEO").getId()).isEqualTo(5);
+        assertThat(owner.getPet("lEo").getId()).isEqualTo(5);
+        assertThat(owner.getPet("LEO").getId()).isEqualTo(4);
+        assertThat(owner.getPet("max").getId()).isEqualTo(2);
+        assertThat(owner.getPet("Lea")).isNull();
+        assertThat(owner.getPet("Zoe")).isNull();
+    }
+
+    @Test
+    void shouldSkipNewPetsWhenAskedTo() {
+        Owner owner = new Owner();
+        owner.addPet(pet(4, "LEO"));
+        owner.addPet(pet(null, "Leo"));
+        owner.addPet(pet(null, "leo"));
+
+        assertThat(owner.getPet("leo").isNew()).isTrue();
+        assertThat(owner.getPet("leo", true).getId()).isEqualTo(4);
+    }
+
+    private static Pet pet(Integer id, String name) {
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName(name);
+        return pet;
+    }
+}
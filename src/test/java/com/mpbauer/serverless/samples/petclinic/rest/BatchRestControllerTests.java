@@ -0,0 +1,194 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Test class for {@link BatchRestController}
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class BatchRestControllerTests extends AbstractIntegrationTest {
+
+    @InjectMock
+    ClinicService clinicService;
+
+    private Owner owner;
+    private PetType petType;
+
+    @BeforeEach
+    void initData() {
+        owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setAddress("110 W. Liberty St.");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+
+        petType = new PetType();
+        petType.setId(1);
+        petType.setName("cat");
+    }
+
+    @Test
+    void testBatchOfReads() {
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        given(this.clinicService.findAllPetTypes()).willReturn(List.of(petType));
+        // the sub-requests get the answers of requests of their own
+        int malformedId = given().auth().oauth2(generateValidOwnerAdminToken()).get("/api/owners/abc").statusCode();
+        int unknownPath = given().auth().oauth2(generateValidOwnerAdminToken()).get("/api/unknown").statusCode();
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("[{\"method\":\"GET\",\"path\":\"/api/owners/1\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/pettypes\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/owners/2?fields=lastName\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/owners/abc\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/unknown\"}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .body("$", hasSize(5))
+            .body("[0].status", equalTo(200))
+            .body("[0].body.lastName", equalTo("Franklin"))
+            .body("[0].headers.ETag", notNullValue())
+            .body("[1].status", equalTo(200))
+            .body("[1].body[0].name", equalTo("cat"))
+            .body("[2].status", equalTo(404))
+            .body("[3].status", equalTo(malformedId))
+            .body("[4].status", equalTo(unknownPath));
+    }
+
+    @Test
+    void testBatchCreatesWithLocationOfSubRequest() {
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Owner.class).setId(999);
+            return null;
+        }).when(this.clinicService).saveOwner(any(Owner.class));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("[{\"method\":\"POST\",\"path\":\"/api/owners\",\"body\":{\"firstName\":\"Jean\","
+                + "\"lastName\":\"Coleman\",\"address\":\"105 N. Lake St.\",\"city\":\"Monona\",\"telephone\":\"6085552654\"}},"
+                + "{\"method\":\"POST\",\"path\":\"/api/owners\",\"body\":{\"firstName\":\"Jean\"}}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(200)
+            .body("[0].status", equalTo(Response.Status.CREATED.getStatusCode()))
+            .body("[0].headers.Location", endsWith("/api/owners/999"))
+            .body("[0].body.lastName", equalTo("Coleman"))
+            .body("[1].status", equalTo(Response.Status.BAD_REQUEST.getStatusCode()))
+            .body("[1].body[0].objectName", equalTo("owner"));
+    }
+
+    @Test
+    void testBatchChecksRolesOfEachRequest() {
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .contentType(ContentType.JSON)
+            .body("[{\"method\":\"GET\",\"path\":\"/api/owners/1\"}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(200)
+            .body("[0].status", equalTo(Response.Status.FORBIDDEN.getStatusCode()));
+    }
+
+    @Test
+    void testBatchEvaluatesHeadersOfEachRequest() {
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        String etag = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("[{\"method\":\"GET\",\"path\":\"/api/owners/1\"}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(200)
+            .extract().path("[0].headers.ETag");
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .header("If-None-Match", etag)
+            .body("[{\"method\":\"GET\",\"path\":\"/api/owners/1\",\"headers\":{\"If-None-Match\":"
+                + "\"" + etag.replace("\"", "\\\"") + "\"}},"
+                + "{\"method\":\"GET\",\"path\":\"/api/owners/1\"}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(200)
+            .body("[0].status", equalTo(Response.Status.NOT_MODIFIED.getStatusCode()))
+            .body("[0].headers.ETag", equalTo(etag))
+            .body("[1].status", equalTo(200))
+            .body("[1].body.lastName", equalTo("Franklin"));
+    }
+
+    @Test
+    void testBatchCannotContainBatch() {
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("[{\"method\":\"POST\",\"path\":\"/api/batch\",\"body\":[]}]")
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    void testBatchRejectsPathThatIsNotNormalized() {
+        for (String path : List.of("/api/./batch", "/api/pettypes/../batch", "/api/../q/health", "/api//pettypes",
+            "/api/%2e/batch", "/api/pet%74ypes", "/api/pettypes/.")) {
+            given()
+                .auth().oauth2(generateValidOwnerAdminToken())
+                .contentType(ContentType.JSON)
+                .body("[{\"method\":\"GET\",\"path\":\"" + path + "\"}]")
+                .when()
+                .post("/api/batch")
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    @Test
+    void testBatchTooLarge() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 21; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"method\":\"GET\",\"path\":\"/api/pettypes\"}");
+        }
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body(body.append("]").toString())
+            .when()
+            .post("/api/batch")
+            .then()
+            .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+}
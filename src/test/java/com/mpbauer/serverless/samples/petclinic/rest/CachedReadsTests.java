@@ -0,0 +1,145 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectSpy;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Reads reference data through the real {@link ClinicService}. Once a lookup is cached, the event loop answers the
+ * request from the cache without calling the service.
+ */
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class CachedReadsTests extends AbstractIntegrationTest {
+
+    @InjectSpy
+    ClinicService clinicService;
+
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @BeforeEach
+    @AfterEach
+    void clearCaches() {
+        clinicCaches.invalidateAll(ClinicCaches.PET_TYPES, ClinicCaches.SPECIALTIES, ClinicCaches.VETS);
+    }
+
+    @Test
+    void shouldAnswerCachedPetTypesWithoutCallingTheService() {
+        for (String encoding : new String[]{"gzip", "identity", "gzip"}) {
+            given()
+                .auth().oauth2(generateValidOwnerAdminToken())
+                .header("Accept-Encoding", encoding)
+                .when()
+                .get("/api/pettypes")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType(ContentType.JSON)
+                .body("name", hasItems("cat", "dog"));
+            given()
+                .auth().oauth2(generateValidOwnerAdminToken())
+                .header("Accept-Encoding", encoding)
+                .when()
+                .get("/api/pettypes/2")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("name", equalTo("dog"));
+        }
+
+        verify(clinicService, times(1)).findAllPetTypes();
+        verify(clinicService, times(1)).findPetTypeById(2);
+    }
+
+    @Test
+    void shouldAnswerCachedSpecialtiesWithoutCallingTheService() {
+        for (int i = 0; i < 2; i++) {
+            given()
+                .auth().oauth2(generateValidVetAdminToken())
+                .when()
+                .get("/api/specialties")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("name", hasItems("radiology"));
+            given()
+                .auth().oauth2(generateValidVetAdminToken())
+                .when()
+                .get("/api/specialties/1")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("name", equalTo("radiology"));
+        }
+
+        verify(clinicService, times(1)).findAllSpecialties();
+        verify(clinicService, times(1)).findSpecialtyById(1);
+    }
+
+    @Test
+    void shouldAnswerCachedVetsWithoutCallingTheService() {
+        for (int i = 0; i < 2; i++) {
+            given()
+                .auth().oauth2(generateValidVetAdminToken())
+                .when()
+                .get("/api/vets?limit=2")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("size()", equalTo(2))
+                .body("[0].id", equalTo(1));
+            given()
+                .auth().oauth2(generateValidVetAdminToken())
+                .when()
+                .get("/api/vets?after=2&limit=2")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("[0].id", equalTo(3));
+            given()
+                .auth().oauth2(generateValidVetAdminToken())
+                .when()
+                .get("/api/vets/1")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("lastName", equalTo("Carter"));
+        }
+
+        verify(clinicService, times(1)).findAllVets();
+        verify(clinicService, times(1)).findVetById(1);
+    }
+
+    @Test
+    void shouldAnswerMissesFromTheService() {
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/pettypes/-1")
+            .then()
+            .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/pettypes/-1")
+            .then()
+            .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+
+        verify(clinicService, times(2)).findPetTypeById(-1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvent;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvents;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.RestAssured;
+import io.smallrye.mutiny.subscription.Cancellable;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link EventRestController}
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class EventRestControllerTests extends AbstractIntegrationTest {
+
+    @Inject
+    ClinicEvents clinicEvents;
+
+    @Test
+    void testStreamEventsAfterLastEventId() throws Exception {
+        CompletableFuture<ClinicEvent> first = new CompletableFuture<>();
+        Cancellable subscription = this.clinicEvents.subscribe(null).subscribe().with(first::complete);
+        this.clinicEvents.publish(ClinicEvent.UPDATED, ClinicEvent.OWNER, 6);
+        ClinicEvent published = first.get(10, TimeUnit.SECONDS);
+        subscription.cancel();
+        String id = published.getId();
+        String previousId = id.substring(0, id.lastIndexOf('-') + 1) + (published.getSequence() - 1);
+
+        URI eventsUri = URI.create(RestAssured.baseURI + ":" + RestAssured.port + "/")
+            .resolve(RestAssured.basePath + "/api/events");
+        HttpRequest request = HttpRequest.newBuilder(eventsUri)
+            .header("Authorization", "Bearer " + generateValidOwnerAdminToken())
+            .header("Last-Event-ID", previousId)
+            .timeout(Duration.ofSeconds(10))
+            .build();
+        HttpResponse<InputStream> response = HttpClient.newHttpClient()
+            .send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+            type -> assertThat(type).startsWith("text/event-stream"));
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (line.startsWith("data:")) {
+                    break;
+                }
+            }
+        }
+        assertThat(lines).contains("id:" + id, "event:updated");
+        assertThat(lines.get(lines.size() - 1))
+            .contains("\"type\":\"updated\"", "\"entity\":\"owner\"", "\"entityId\":6");
+    }
+
+    @Test
+    void testStreamEventsForbiddenForVetAdmin() {
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .when().get("/api/events")
+            .then()
+            .statusCode(403);
+    }
+}
@@ -0,0 +1,192 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectSpy;
+import io.restassured.http.ContentType;
+import io.restassured.response.ExtractableResponse;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.Response;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Writes pets, visits and vets through the REST API and the real {@link ClinicService}, unlike the controller tests,
+ * which mock it. Their bodies refer to the pet type, owner, pet and specialties by id, without a version.
+ */
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class NestedReferenceWritesTests extends AbstractIntegrationTest {
+
+    @InjectSpy
+    ClinicService clinicService;
+
+    @Test
+    void shouldCreateAndUpdatePetAndVisit() {
+        int petId = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"name\":\"Leo\",\"birthDate\":\"2020/01/01\"," +
+                "\"type\":{\"id\":1,\"name\":\"cat\"},\"owner\":{\"id\":10,\"firstName\":\"Carlos\"}}")
+            .when()
+            .post("/api/pets")
+            .then()
+            .statusCode(Response.Status.CREATED.getStatusCode())
+            .extract().path("id");
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"name\":\"Leonardo\",\"birthDate\":\"2020/01/01\"," +
+                "\"type\":{\"id\":2,\"name\":\"dog\"},\"owner\":{\"id\":10,\"firstName\":\"Carlos\"}}")
+            .when()
+            .put("/api/pets/" + petId)
+            .then()
+            .statusCode(Response.Status.NO_CONTENT.getStatusCode());
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/pets/" + petId)
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("name", equalTo("Leonardo"))
+            .body("type.id", equalTo(2))
+            .body("owner.id", equalTo(10));
+
+        int visitId = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"date\":\"2021/03/04\",\"description\":\"checkup\",\"pet\":{\"id\":" + petId + "}}")
+            .when()
+            .post("/api/visits")
+            .then()
+            .statusCode(Response.Status.CREATED.getStatusCode())
+            .extract().path("id");
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"date\":\"2021/03/05\",\"description\":\"second checkup\",\"pet\":{\"id\":" + petId + "}}")
+            .when()
+            .put("/api/visits/" + visitId)
+            .then()
+            .statusCode(Response.Status.NO_CONTENT.getStatusCode());
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/visits/" + visitId)
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("description", equalTo("second checkup"))
+            .body("pet.id", equalTo(petId));
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .delete("/api/pets/" + petId)
+            .then()
+            .statusCode(Response.Status.NO_CONTENT.getStatusCode());
+    }
+
+    @Test
+    void shouldCreateNewPetAndVisitForBodyWithIdZero() {
+        int petId = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"id\":0,\"name\":\"Leo\",\"birthDate\":\"2020/01/01\"," +
+                "\"type\":{\"id\":1},\"owner\":{\"id\":10}}")
+            .when()
+            .post("/api/pets")
+            .then()
+            .statusCode(Response.Status.CREATED.getStatusCode())
+            .body("id", not(equalTo(0)))
+            .extract().path("id");
+
+        ExtractableResponse<?> visit = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"id\":0,\"date\":\"2021/03/04\",\"description\":\"checkup\",\"pet\":{\"id\":" + petId + "}}")
+            .when()
+            .post("/api/visits")
+            .then()
+            .statusCode(Response.Status.CREATED.getStatusCode())
+            .body("id", not(equalTo(0)))
+            .extract();
+        int visitId = visit.path("id");
+        assertThat(visit.header("Location")).endsWith("/api/visits/" + visitId);
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/visits/" + visitId)
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("pet.id", equalTo(petId));
+    }
+
+    @Test
+    void shouldUpdateVetSpecialties() {
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"firstName\":\"James\",\"lastName\":\"Carter\",\"specialties\":[{\"id\":1}]}")
+            .when()
+            .put("/api/vets/1")
+            .then()
+            .statusCode(Response.Status.NO_CONTENT.getStatusCode());
+
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .when()
+            .get("/api/vets/1")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("specialties.id", contains(1))
+            .body("specialties.name", contains("radiology"));
+
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"firstName\":\"James\",\"lastName\":\"Carter\",\"specialties\":[]}")
+            .when()
+            .put("/api/vets/1")
+            .then()
+            .statusCode(Response.Status.NO_CONTENT.getStatusCode());
+    }
+
+    @Test
+    void shouldAnswerConcurrentUpdateWithConflict() {
+        doThrow(new OptimisticLockException("Row was updated or deleted by another transaction"))
+            .when(clinicService).updateOwner(eq(1), any(Owner.class));
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .contentType(ContentType.JSON)
+            .body("{\"firstName\":\"George\",\"lastName\":\"Franklin\",\"address\":\"110 W. Liberty St.\"," +
+                "\"city\":\"Madison\",\"telephone\":\"6085551023\"}")
+            .when()
+            .put("/api/owners/1")
+            .then()
+            .statusCode(Response.Status.CONFLICT.getStatusCode())
+            .contentType(ContentType.JSON);
+    }
+}
@@ -19,10 +19,12 @@ package com.mpbauer.serverless.samples.petclinic.rest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.OwnerSummary;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
 import com.mpbauer.serverless.samples.petclinic.model.Visit;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimitExceededException;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
 import io.quarkus.test.junit.QuarkusTest;
@@ -33,12 +35,22 @@ import org.junit.jupiter.api.Test;
 
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test class for {@link OwnerRestController}
@@ -146,6 +158,116 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .statusCode(Response.Status.NOT_FOUND.getStatusCode());
     }
 
+    @Test
+    void testGetOwnerConnectionLimitExceeded() {
+        given(this.clinicService.findOwnerById(1)).willThrow(new ConnectionLimitExceededException("busy", 3));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(ContentType.JSON)
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(Response.Status.SERVICE_UNAVAILABLE.getStatusCode())
+            .header("Retry-After", "3")
+            .contentType(ContentType.JSON)
+            .body("errorMessage", equalTo("busy"));
+    }
+
+    @Test
+    void testGetOwnerNotModified() {
+        given(this.clinicService.findOwnerById(1)).willReturn(owners.get(0));
+        String etag = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(200)
+            .extract().header("ETag");
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(Response.Status.NOT_MODIFIED.getStatusCode())
+            .header("ETag", equalTo(etag))
+            .body(equalTo(""));
+    }
+
+    @Test
+    void testGetOwnerModifiedWhenVisitChanges() {
+        given(this.clinicService.findOwnerById(1)).willReturn(owners.get(0));
+        String etag = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(200)
+            .extract().header("ETag");
+
+        owners.get(0).getPets().get(0).getVisits().get(0).setVersion(1);
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(200)
+            .header("ETag", not(equalTo(etag)))
+            .body("id", equalTo(1));
+    }
+
+    @Test
+    void testGetOwnerSparseFieldset() {
+        given(this.clinicService.findOwnerById(1, Owner.GRAPH_PETS)).willReturn(owners.get(0));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/1?fields=id,pets.name")
+            .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .body("id", equalTo(1))
+            .body("firstName", nullValue())
+            .body("pets[0].name", equalTo("Rosy"))
+            .body("pets[0].id", nullValue())
+            .body("pets[0].visits", nullValue());
+    }
+
+    @Test
+    void testGetOwnerSparseFieldsetWithoutPets() {
+        given(this.clinicService.findOwnerById(1, Owner.GRAPH_SUMMARY)).willReturn(owners.get(0));
+        String etag = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/1?fields=lastName")
+            .then()
+            .statusCode(200)
+            .body("lastName", equalTo("Franklin"))
+            .body("id", nullValue())
+            .body("pets", nullValue())
+            .extract().header("ETag");
+
+        // changes of data the fieldset leaves out keep the tag, the full representation has another one
+        owners.get(0).getPets().get(0).getVisits().get(0).setVersion(1);
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/owners/1?fields=lastName")
+            .then()
+            .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+        given(this.clinicService.findOwnerById(1)).willReturn(owners.get(0));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/owners/1")
+            .then()
+            .statusCode(200);
+    }
+
     @Test
     void testGetOwnersListSuccess() {
         owners.remove(0);
@@ -177,11 +299,44 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .statusCode(Response.Status.NOT_FOUND.getStatusCode());
     }
 
+    @Test
+    void testGetOwnerSummariesSuccess() {
+        List<OwnerSummary> summaries = new ArrayList<>();
+        summaries.add(new OwnerSummary(2, "Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749", 2, "Basil"));
+        summaries.add(new OwnerSummary(4, "Harold", "Davis", "563 Friendly St.", "Windsor", "6085553198", null, null));
+        given(this.clinicService.findOwnerSummariesByLastName("Davis")).willReturn(summaries);
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/summaries?lastName=Davis")
+            .then()
+            .contentType(ContentType.JSON)
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("[0].id", equalTo(2))
+            .body("[0].firstName", equalTo("Betty"))
+            .body("[0].pets[0].id", equalTo(2))
+            .body("[0].pets[0].name", equalTo("Basil"))
+            .body("[0].pets[0].visits", nullValue())
+            .body("[1].id", equalTo(4))
+            .body("[1].pets.size()", equalTo(0));
+    }
+
+    @Test
+    void testGetOwnerSummariesNotFound() {
+        given(this.clinicService.findOwnerSummariesByLastName("0")).willReturn(Collections.emptyList());
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners/summaries?lastName=0")
+            .then()
+            .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+    }
+
     @Test
     void testGetAllOwnersSuccess() {
         owners.remove(0);
         owners.remove(1);
-        given(this.clinicService.findAllOwners()).willReturn(owners);
+        given(this.clinicService.findOwnersPage(isNull(), anyInt())).willReturn(owners);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .when()
@@ -198,7 +353,7 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testGetAllOwnersNotFound() {
         owners.clear();
-        given(this.clinicService.findAllOwners()).willReturn(owners);
+        given(this.clinicService.findOwnersPage(isNull(), anyInt())).willReturn(owners);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
@@ -208,6 +363,47 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .statusCode(Response.Status.NOT_FOUND.getStatusCode());
     }
 
+    @Test
+    void testGetOwnersPageWithNextLink() {
+        given(this.clinicService.findOwnersPage(1, 3)).willReturn(owners.subList(1, 4));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners?after=1&limit=2")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .contentType(ContentType.JSON)
+            .body("size()", equalTo(2))
+            .body("[0].id", equalTo(2))
+            .body("[1].id", equalTo(3))
+            .header("Link", containsString("after=3"))
+            .header("Link", containsString("limit=2"))
+            .header("Link", containsString("rel=\"next\""));
+    }
+
+    @Test
+    void testGetOwnersLastPageWithoutNextLink() {
+        given(this.clinicService.findOwnersPage(2, 3)).willReturn(owners.subList(2, 4));
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners?after=2&limit=2")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("size()", equalTo(2))
+            .header("Link", nullValue());
+    }
+
+    @Test
+    void testGetOwnersInvalidLimit() {
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .when()
+            .get("/api/owners?limit=0")
+            .then()
+            .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
     @Test
     void testCreateOwnerErrorIdSpecified() throws Exception {
         Owner newOwner = owners.get(0);
@@ -243,12 +439,15 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .when()
             .post("/api/owners/")
             .then()
-            .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+            .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+            .contentType(ContentType.JSON)
+            .body("[0].fieldName", equalTo("firstName"))
+            .body("[0].errorMessage", equalTo("must not be empty"));
     }
 
     @Test
     void testUpdateOwnerSuccess() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(owners.get(0));
+        given(this.clinicService.updateOwner(eq(1), any(Owner.class))).willReturn(owners.get(0));
         int ownerId = owners.get(0).getId();
         Owner updatedOwner = new Owner();
         // body.id = ownerId which is used in url path
@@ -271,22 +470,12 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .then()
             .statusCode(Response.Status.NO_CONTENT.getStatusCode());
 
-        given()
-            .auth().oauth2(generateValidOwnerAdminToken())
-            .accept(ContentType.JSON)
-            .contentType(ContentType.JSON)
-            .when()
-            .get("/api/owners/" + ownerId)
-            .then()
-            .contentType(ContentType.JSON)
-            .statusCode(Response.Status.OK.getStatusCode())
-            .body("id", equalTo(1))
-            .body("firstName", equalTo("George I"));
+        verify(this.clinicService).updateOwner(eq(ownerId), argThat(owner -> "George I".equals(owner.getFirstName())));
     }
 
     @Test
     void testUpdateOwnerSuccessNoBodyId() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(owners.get(0));
+        given(this.clinicService.updateOwner(eq(1), any(Owner.class))).willReturn(owners.get(0));
         int ownerId = owners.get(0).getId();
         Owner updatedOwner = new Owner();
         updatedOwner.setFirstName("George I");
@@ -307,17 +496,28 @@ class OwnerRestControllerTests extends AbstractIntegrationTest {
             .then()
             .statusCode(Response.Status.NO_CONTENT.getStatusCode());
 
+        verify(this.clinicService).updateOwner(eq(ownerId), argThat(owner -> "George I".equals(owner.getFirstName())));
+    }
+
+    @Test
+    void testUpdateOwnerNotFound() throws Exception {
+        Owner updatedOwner = new Owner();
+        updatedOwner.setFirstName("George I");
+        updatedOwner.setLastName("Franklin");
+        updatedOwner.setAddress("110 W. Liberty St.");
+        updatedOwner.setCity("Madison");
+        updatedOwner.setTelephone("6085551023");
+        String newOwnerAsJSON = new ObjectMapper().writeValueAsString(updatedOwner);
+
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
             .contentType(ContentType.JSON)
+            .body(newOwnerAsJSON)
             .when()
-            .get("/api/owners/" + ownerId)
+            .put("/api/owners/-1")
             .then()
-            .contentType(ContentType.JSON)
-            .statusCode(Response.Status.OK.getStatusCode())
-            .body("id", equalTo(ownerId))
-            .body("firstName", equalTo("George I"));
+            .statusCode(Response.Status.NOT_FOUND.getStatusCode());
     }
 
     @Test
@@ -38,7 +38,14 @@ import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 
 /**
@@ -118,7 +125,7 @@ class PetRestControllerTests extends AbstractIntegrationTest {
 
     @Test
     void testGetAllPetsSuccess() {
-        given(this.clinicService.findAllPets()).willReturn(pets);
+        given(this.clinicService.findPetsPage(isNull(), anyInt())).willReturn(pets);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
@@ -136,7 +143,7 @@ class PetRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testGetAllPetsNotFound() {
         pets.clear();
-        given(this.clinicService.findAllPets()).willReturn(pets);
+        given(this.clinicService.findPetsPage(isNull(), anyInt())).willReturn(pets);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
@@ -148,6 +155,10 @@ class PetRestControllerTests extends AbstractIntegrationTest {
 
     @Test
     void testCreatePetSuccess() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Pet>getArgument(0).setId(999);
+            return null;
+        }).when(this.clinicService).savePet(any(Pet.class));
         Pet newPet = pets.get(0);
         newPet.setId(999);
         ObjectMapper mapper = new ObjectMapper();
@@ -187,6 +198,7 @@ class PetRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testUpdatePetSuccess() throws Exception {
         given(this.clinicService.findPetById(3)).willReturn(pets.get(0));
+        given(this.clinicService.updatePet(eq(3), any(Pet.class))).willReturn(pets.get(0));
         Pet newPet = pets.get(0);
         newPet.setName("Rosy I");
         ObjectMapper mapper = new ObjectMapper();
@@ -232,6 +244,24 @@ class PetRestControllerTests extends AbstractIntegrationTest {
             .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
     }
 
+    @Test
+    void testUpdatePetErrorNonNumericId() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String newPetAsJSON = mapper.writeValueAsString(pets.get(0)).replaceFirst("\"id\":3", "\"id\":\"three\"");
+
+        given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(ContentType.JSON)
+            .contentType(ContentType.JSON)
+            .body(newPetAsJSON)
+            .when()
+            .put("/api/pets/3")
+            .then()
+            .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+
+        verify(this.clinicService, never()).updatePet(anyInt(), any(Pet.class));
+    }
+
     @Test
     void testDeletePetSuccess() throws Exception {
         Pet newPet = pets.get(0);
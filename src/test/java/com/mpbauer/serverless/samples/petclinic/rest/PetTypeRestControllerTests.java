@@ -19,6 +19,7 @@ package com.mpbauer.serverless.samples.petclinic.rest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
 import com.mpbauer.serverless.samples.petclinic.model.PetType;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
@@ -29,12 +30,15 @@ import io.restassured.http.ContentType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 
 
@@ -50,10 +54,15 @@ class PetTypeRestControllerTests extends AbstractIntegrationTest {
     @InjectMock
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
     private List<PetType> petTypes;
 
     @BeforeEach
     public void initPetTypes() {
+        // the reads answer from the caches of the real service without calling the mock
+        clinicCaches.invalidateAll(ClinicCaches.PET_TYPES);
         petTypes = new ArrayList<>();
 
         PetType petType = new PetType();
@@ -209,6 +218,7 @@ class PetTypeRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testUpdatePetTypeSuccess() throws Exception {
         given(this.clinicService.findPetTypeById(2)).willReturn(petTypes.get(1));
+        given(this.clinicService.updatePetType(eq(2), any(PetType.class))).willReturn(petTypes.get(1));
         PetType newPetType = petTypes.get(1);
         newPetType.setName("dog I");
         ObjectMapper mapper = new ObjectMapper();
@@ -19,6 +19,7 @@ package com.mpbauer.serverless.samples.petclinic.rest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
 import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
@@ -28,12 +29,15 @@ import io.restassured.http.ContentType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 
 /**
@@ -48,10 +52,15 @@ class SpecialtyRestControllerTests extends AbstractIntegrationTest {
     @InjectMock
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
     private List<Specialty> specialties;
 
     @BeforeEach
     public void initSpecialtys() {
+        // the reads answer from the caches of the real service without calling the mock
+        clinicCaches.invalidateAll(ClinicCaches.SPECIALTIES);
         specialties = new ArrayList<>();
 
         Specialty specialty = new Specialty();
@@ -166,6 +175,7 @@ class SpecialtyRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testUpdateSpecialtySuccess() throws Exception {
         given(this.clinicService.findSpecialtyById(2)).willReturn(specialties.get(1));
+        given(this.clinicService.updateSpecialty(eq(2), any(Specialty.class))).willReturn(specialties.get(1));
         Specialty newSpecialty = specialties.get(1);
         newSpecialty.setName("surgery I");
         ObjectMapper mapper = new ObjectMapper();
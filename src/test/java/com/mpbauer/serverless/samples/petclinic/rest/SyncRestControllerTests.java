@@ -0,0 +1,170 @@
+package com.mpbauer.serverless.samples.petclinic.rest;
+
+import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
+import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import com.mpbauer.serverless.samples.petclinic.security.Roles;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.ValidatableResponse;
+import io.smallrye.jwt.build.Jwt;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Test class for {@link SyncRestController}
+ */
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class SyncRestControllerTests extends AbstractIntegrationTest {
+
+    @Inject
+    ClinicService clinicService;
+
+    @Test
+    void testGetChangesForbiddenForAdmin() {
+        given()
+            .auth().oauth2(generateValidAdminToken())
+            .when().get("/api/sync")
+            .then()
+            .statusCode(403);
+    }
+
+    @Test
+    void testFullSyncInPages() {
+        List<Integer> owners = new ArrayList<>();
+        List<Integer> pets = new ArrayList<>();
+        List<Integer> visits = new ArrayList<>();
+        List<Integer> vets = new ArrayList<>();
+        List<Integer> petTypes = new ArrayList<>();
+        List<Integer> specialties = new ArrayList<>();
+        long since = 0;
+        int pages = 0;
+        boolean more = true;
+        while (more) {
+            JsonPath page = sync(since, 10).extract().jsonPath();
+            int changes = page.getList("owners").size() + page.getList("pets").size() + page.getList("visits").size()
+                + page.getList("vets").size() + page.getList("petTypes").size() + page.getList("specialties").size();
+            assertThat(changes).isLessThanOrEqualTo(10);
+            owners.addAll(page.getList("owners.id"));
+            pets.addAll(page.getList("pets.id"));
+            visits.addAll(page.getList("visits.id"));
+            vets.addAll(page.getList("vets.id"));
+            petTypes.addAll(page.getList("petTypes.id"));
+            specialties.addAll(page.getList("specialties.id"));
+            assertThat(page.getLong("since")).isEqualTo(since);
+            assertThat(page.getLong("next")).isGreaterThan(since);
+            since = page.getLong("next");
+            more = page.getBoolean("more");
+            pages++;
+        }
+        assertThat(pages).isEqualTo(5);
+        assertThat(owners).hasSize(10).doesNotHaveDuplicates();
+        assertThat(pets).hasSize(13).doesNotHaveDuplicates();
+        assertThat(visits).containsExactlyInAnyOrder(1, 2, 3, 4);
+        assertThat(vets).hasSize(6).doesNotHaveDuplicates();
+        assertThat(petTypes).hasSize(6).doesNotHaveDuplicates();
+        assertThat(specialties).containsExactlyInAnyOrder(1, 2, 3);
+
+        sync(since, 10)
+            .body("next", equalTo((int) since))
+            .body("more", equalTo(false))
+            .body("owners", empty())
+            .body("deleted", empty());
+    }
+
+    @Test
+    void testGetChangesWritesNextLink() {
+        given()
+            .auth().oauth2(generateValidOwnerAndVetAdminToken())
+            .queryParam("limit", 5)
+            .when().get("/api/sync")
+            .then()
+            .statusCode(200)
+            .header("Link", containsString("since="))
+            .header("Link", containsString("rel=\"next\""))
+            .body("more", equalTo(true))
+            .body("vets", hasSize(5));
+    }
+
+    @Test
+    void testGetChangesOnlyReturnsChangesSinceToken() {
+        long since = sync(0, 100).extract().jsonPath().getLong("next");
+
+        Owner owner = this.clinicService.findOwnerById(6);
+        owner.setCity("Sydney");
+        this.clinicService.saveOwner(owner);
+        this.clinicService.deletePet(this.clinicService.findPetById(8));
+
+        sync(since, 100)
+            .body("more", equalTo(false))
+            .body("owners.id", contains(6))
+            .body("owners[0].city", equalTo("Sydney"))
+            .body("owners[0].pets", nullValue())
+            .body("pets", empty())
+            .body("visits", empty())
+            .body("deleted.entity", containsInAnyOrder("visit", "visit", "pet"))
+            .body("deleted.id", containsInAnyOrder(2, 3, 8));
+    }
+
+    @Test
+    void testGetChangesAfterSpecialtyOfVetChanged() {
+        long since = sync(0, 100).extract().jsonPath().getLong("next");
+
+        Vet vet = this.clinicService.findVetById(1);
+        vet.addSpecialty(this.clinicService.findSpecialtyById(2));
+        this.clinicService.saveVet(vet);
+
+        sync(since, 100)
+            .body("vets.id", contains(1))
+            .body("vets[0].specialties.id", contains(2))
+            .body("vets[0].specialties[0].name", nullValue());
+    }
+
+    @Test
+    void testGetChangesOnlyReturnsReadableEntities() {
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .when().get("/api/sync")
+            .then()
+            .statusCode(200)
+            .body("owners", nullValue())
+            .body("pets", nullValue())
+            .body("visits", nullValue())
+            .body("vets", hasSize(6))
+            .body("petTypes", hasSize(6))
+            .body("specialties", hasSize(3));
+    }
+
+    private ValidatableResponse sync(long since, int limit) {
+        return given()
+            .auth().oauth2(generateValidOwnerAndVetAdminToken())
+            .queryParam("since", since)
+            .queryParam("limit", limit)
+            .when().get("/api/sync")
+            .then()
+            .statusCode(200);
+    }
+
+    private static String generateValidOwnerAndVetAdminToken() {
+        return Jwt
+            .subject("X00004")
+            .groups(Set.of(Roles.OWNER_ADMIN, Roles.VET_ADMIN))
+            .sign();
+    }
+}
@@ -19,6 +19,7 @@ package com.mpbauer.serverless.samples.petclinic.rest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
 import com.mpbauer.serverless.samples.petclinic.model.Vet;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
@@ -28,12 +29,18 @@ import io.restassured.http.ContentType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 
 /**
@@ -48,10 +55,15 @@ class VetRestControllerTests extends AbstractIntegrationTest {
     @InjectMock
     ClinicService clinicService;
 
+    @Inject
+    ClinicCaches clinicCaches;
+
     private List<Vet> vets;
 
     @BeforeEach
     public void initVets() {
+        // the reads answer from the caches of the real service without calling the mock
+        clinicCaches.invalidateAll(ClinicCaches.VETS);
         vets = new ArrayList<>();
 
 
@@ -118,6 +130,56 @@ class VetRestControllerTests extends AbstractIntegrationTest {
             .body("[1].firstName", equalTo("Helen"));
     }
 
+    @Test
+    void testGetAllVetsSparseFieldset() {
+        given(this.clinicService.findVetsPage(isNull(), anyInt(), eq(Vet.GRAPH_SUMMARY))).willReturn(vets);
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .accept(ContentType.JSON)
+            .when()
+            .get("/api/vets/?fields=id,lastName")
+            .then()
+            .contentType(ContentType.JSON)
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("[0].id", equalTo(1))
+            .body("[0].lastName", equalTo("Carter"))
+            .body("[0].firstName", nullValue())
+            .body("[0].specialties", nullValue());
+    }
+
+    @Test
+    void testGetAllVetsNotModified() {
+        given(this.clinicService.findAllVets()).willReturn(vets);
+        String etag = given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .accept(ContentType.JSON)
+            .when()
+            .get("/api/vets/")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .extract().header("ETag");
+
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .accept(ContentType.JSON)
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/vets/")
+            .then()
+            .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+
+        vets.remove(1);
+        given()
+            .auth().oauth2(generateValidVetAdminToken())
+            .accept(ContentType.JSON)
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/vets/")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .body("size()", equalTo(2));
+    }
+
     @Test
     void testGetAllVetsNotFound() {
         vets.clear();
@@ -169,6 +231,7 @@ class VetRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testUpdateVetSuccess() throws Exception {
         given(this.clinicService.findVetById(1)).willReturn(vets.get(0));
+        given(this.clinicService.updateVet(eq(1), any(Vet.class))).willReturn(vets.get(0));
         Vet newVet = vets.get(0);
         newVet.setFirstName("James");
         ObjectMapper mapper = new ObjectMapper();
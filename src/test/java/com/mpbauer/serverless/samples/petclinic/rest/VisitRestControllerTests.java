@@ -16,7 +16,10 @@
 
 package com.mpbauer.serverless.samples.petclinic.rest;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.mpbauer.serverless.samples.petclinic.AbstractIntegrationTest;
 import com.mpbauer.serverless.samples.petclinic.model.Owner;
 import com.mpbauer.serverless.samples.petclinic.model.Pet;
@@ -38,9 +41,17 @@ import java.util.Date;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
 
 /**
  * Test class for {@link VisitRestController}
@@ -124,7 +135,7 @@ class VisitRestControllerTests extends AbstractIntegrationTest {
 
     @Test
     void testGetAllVisitsSuccess() {
-        given(this.clinicService.findAllVisits()).willReturn(visits);
+        given(this.clinicService.findVisitsPage(isNull(), anyInt())).willReturn(visits);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
@@ -142,7 +153,7 @@ class VisitRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testGetAllVisitsNotFound() {
         visits.clear();
-        given(this.clinicService.findAllVisits()).willReturn(visits);
+        given(this.clinicService.findVisitsPage(isNull(), anyInt())).willReturn(visits);
         given()
             .auth().oauth2(generateValidOwnerAdminToken())
             .accept(ContentType.JSON)
@@ -152,8 +163,87 @@ class VisitRestControllerTests extends AbstractIntegrationTest {
             .statusCode(Response.Status.NOT_FOUND.getStatusCode());
     }
 
+    @Test
+    void testGetAllVisitsAsCbor() throws Exception {
+        given(this.clinicService.findVisitsPage(isNull(), anyInt())).willReturn(visits);
+        byte[] body = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(JacksonBinaryProvider.APPLICATION_CBOR)
+            .when()
+            .get("/api/visits/")
+            .then()
+            .contentType(JacksonBinaryProvider.APPLICATION_CBOR)
+            .statusCode(Response.Status.OK.getStatusCode())
+            .header("Vary", containsString("Accept"))
+            .extract().asByteArray();
+
+        JsonNode visits = new CBORMapper().readTree(body);
+        assertEquals(2, visits.get(0).get("id").asInt());
+        assertEquals("rabies shot", visits.get(0).get("description").asText());
+        assertEquals("Rosy", visits.get(0).get("pet").get("name").asText());
+        assertEquals(3, visits.get(1).get("id").asInt());
+    }
+
+    @Test
+    void testGetVisitAsSmileHasOwnTag() throws Exception {
+        given(this.clinicService.findVisitById(2)).willReturn(visits.get(0));
+        String etag = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(ContentType.JSON)
+            .when()
+            .get("/api/visits/2")
+            .then()
+            .statusCode(Response.Status.OK.getStatusCode())
+            .extract().header("ETag");
+
+        byte[] body = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(JacksonBinaryProvider.APPLICATION_SMILE)
+            .header("If-None-Match", etag)
+            .when()
+            .get("/api/visits/2")
+            .then()
+            .contentType(JacksonBinaryProvider.APPLICATION_SMILE)
+            .statusCode(Response.Status.OK.getStatusCode())
+            .header("ETag", not(equalTo(etag)))
+            .extract().asByteArray();
+
+        JsonNode visit = new SmileMapper().readTree(body);
+        assertEquals(2, visit.get("id").asInt());
+        assertEquals(visits.get(0).getPet().getOwner().getLastName(), visit.get("pet").get("owner").get("lastName").asText());
+    }
+
+    @Test
+    void testCreateVisitAsCbor() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Visit>getArgument(0).setId(999);
+            return null;
+        }).when(this.clinicService).saveVisit(any(Visit.class));
+        Visit newVisit = visits.get(0);
+        newVisit.setId(999);
+        byte[] body = given()
+            .auth().oauth2(generateValidOwnerAdminToken())
+            .accept(JacksonBinaryProvider.APPLICATION_CBOR)
+            .contentType(JacksonBinaryProvider.APPLICATION_CBOR)
+            .body(new CBORMapper().writeValueAsBytes(newVisit))
+            .when()
+            .post("/api/visits/")
+            .then()
+            .contentType(JacksonBinaryProvider.APPLICATION_CBOR)
+            .statusCode(Response.Status.CREATED.getStatusCode())
+            .extract().asByteArray();
+
+        JsonNode visit = new CBORMapper().readTree(body);
+        assertEquals(999, visit.get("id").asInt());
+        assertEquals("rabies shot", visit.get("description").asText());
+    }
+
     @Test
     void testCreateVisitSuccess() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Visit>getArgument(0).setId(999);
+            return null;
+        }).when(this.clinicService).saveVisit(any(Visit.class));
         Visit newVisit = visits.get(0);
         newVisit.setId(999);
         ObjectMapper mapper = new ObjectMapper();
@@ -193,6 +283,7 @@ class VisitRestControllerTests extends AbstractIntegrationTest {
     @Test
     void testUpdateVisitSuccess() throws Exception {
         given(this.clinicService.findVisitById(2)).willReturn(visits.get(0));
+        given(this.clinicService.updateVisit(eq(2), any(Visit.class))).willReturn(visits.get(0));
         Visit newVisit = visits.get(0);
         newVisit.setDescription("rabies shot test");
         ObjectMapper mapper = new ObjectMapper();
@@ -0,0 +1,189 @@
+package com.mpbauer.serverless.samples.petclinic.service.clinicService;
+
+import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvent;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicEvents;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.mpbauer.serverless.samples.petclinic.service.ClusterCacheInvalidation;
+import com.radcortez.flyway.test.annotation.DataSource;
+import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.Cancellable;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@FlywayTest(@DataSource(QuarkusDataSourceProvider.class))
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class ClinicEventsTests {
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    ClinicEvents clinicEvents;
+
+    @Inject
+    ClusterCacheInvalidation clusterCacheInvalidation;
+
+    @Inject
+    UserTransaction userTransaction;
+
+    @ConfigProperty(name = "petclinic.events.buffer-size")
+    int bufferSize;
+
+    private final List<Cancellable> subscriptions = new ArrayList<>();
+
+    @AfterEach
+    void cancelSubscriptions() {
+        subscriptions.forEach(Cancellable::cancel);
+    }
+
+    @Test
+    void shouldPublishSavedOwnerAfterCommit() {
+        List<ClinicEvent> events = subscribe(null);
+        Owner owner = new Owner();
+        owner.setFirstName("Sam");
+        owner.setLastName("Schultz");
+        owner.setAddress("4, Evans Street");
+        owner.setCity("Wollongong");
+        owner.setTelephone("4444444444");
+        this.clinicService.saveOwner(owner);
+        owner.setCity("Sydney");
+        this.clinicService.saveOwner(owner);
+
+        awaitEvents(events, 2);
+        assertThat(events).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.CREATED, ClinicEvent.UPDATED);
+        assertThat(events).extracting(ClinicEvent::getEntity).containsOnly(ClinicEvent.OWNER);
+        assertThat(events).extracting(ClinicEvent::getEntityId).containsOnly(owner.getId());
+        assertThat(events.get(1).getSequence()).isEqualTo(events.get(0).getSequence() + 1);
+    }
+
+    @Test
+    void shouldNotPublishRolledBackChange() throws Exception {
+        List<ClinicEvent> events = subscribe(null);
+        userTransaction.begin();
+        try {
+            this.clinicEvents.publish(ClinicEvent.UPDATED, ClinicEvent.OWNER, 1);
+            assertThat(events).isEmpty();
+        } finally {
+            userTransaction.rollback();
+        }
+        this.clinicEvents.publish(ClinicEvent.DELETED, ClinicEvent.OWNER, 2);
+        awaitEvents(events, 1);
+        assertThat(events).extracting(ClinicEvent::getEntityId).containsExactly(2);
+    }
+
+    @Test
+    void shouldReplayEventsAfterLastEventId() {
+        List<ClinicEvent> events = subscribe(null);
+        this.clinicEvents.publish(ClinicEvent.CREATED, ClinicEvent.VISIT, 10);
+        this.clinicEvents.publish(ClinicEvent.UPDATED, ClinicEvent.VISIT, 10);
+        this.clinicEvents.publish(ClinicEvent.DELETED, ClinicEvent.VISIT, 10);
+        awaitEvents(events, 3);
+
+        List<ClinicEvent> resumed = subscribe(events.get(0).getId());
+        awaitEvents(resumed, 2);
+        assertThat(resumed).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.UPDATED, ClinicEvent.DELETED);
+    }
+
+    @Test
+    void shouldResetClientWithUnknownLastEventId() {
+        List<ClinicEvent> events = subscribe(null);
+        this.clinicEvents.publish(ClinicEvent.CREATED, ClinicEvent.VISIT, 11);
+        awaitEvents(events, 1);
+        String id = events.get(0).getId();
+        String epoch = id.substring(0, id.lastIndexOf('-'));
+
+        List<ClinicEvent> ahead = subscribe(epoch + "-" + Long.MAX_VALUE);
+        List<ClinicEvent> otherInstance = subscribe("otherepoch-" + events.get(0).getSequence());
+        List<ClinicEvent> malformed = subscribe("42");
+        awaitEvents(ahead, 1);
+        awaitEvents(otherInstance, 1);
+        awaitEvents(malformed, 1);
+        assertThat(ahead).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.RESET);
+        assertThat(otherInstance).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.RESET);
+        assertThat(otherInstance.get(0).getId()).startsWith(epoch + "-");
+        assertThat(malformed).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.RESET);
+    }
+
+    @Test
+    void shouldPublishEventsRelayedFromOtherInstances() {
+        List<ClinicEvent> events = subscribe(null);
+        this.clusterCacheInvalidation.onNotification(this.clusterCacheInvalidation.getInstanceId() + " event updated pet 3");
+        this.clusterCacheInvalidation.onNotification("other-instance event updated pet 4");
+
+        awaitEvents(events, 1);
+        assertThat(events).extracting(ClinicEvent::getEntityId).containsExactly(4);
+        assertThat(events).extracting(ClinicEvent::getType).containsExactly(ClinicEvent.UPDATED);
+    }
+
+    @Test
+    void shouldDropClientThatDoesNotKeepUp() {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        this.clinicEvents.subscribe(null).subscribe().withSubscriber(new Subscriber<ClinicEvent>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                // never requests an event
+            }
+
+            @Override
+            public void onNext(ClinicEvent event) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                failure.set(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        List<ClinicEvent> events = subscribe(null);
+        for (int i = 0; i < bufferSize; i++) {
+            this.clinicEvents.publish(ClinicEvent.UPDATED, ClinicEvent.PET, 7);
+        }
+        // the clients get each event in the order they subscribed, the stuck one has seen what the other one has
+        awaitEvents(events, bufferSize);
+        assertThat(failure.get()).isNull();
+
+        this.clinicEvents.publish(ClinicEvent.UPDATED, ClinicEvent.PET, 7);
+        awaitEvents(events, bufferSize + 1);
+        assertThat(failure.get()).isInstanceOf(BackPressureFailure.class);
+    }
+
+    private List<ClinicEvent> subscribe(String lastEventId) {
+        List<ClinicEvent> events = new CopyOnWriteArrayList<>();
+        subscriptions.add(this.clinicEvents.subscribe(lastEventId).subscribe().with(events::add));
+        return events;
+    }
+
+    /**
+     * Waits for the event thread to hand the events to a client.
+     */
+    private static void awaitEvents(List<ClinicEvent> events, int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < count && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(events).hasSizeGreaterThanOrEqualTo(count);
+    }
+}
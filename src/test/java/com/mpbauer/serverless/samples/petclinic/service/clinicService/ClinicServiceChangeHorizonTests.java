@@ -0,0 +1,137 @@
+package com.mpbauer.serverless.samples.petclinic.service.clinicService;
+
+import com.mpbauer.serverless.samples.petclinic.model.ChangeSet;
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two write transactions that take their change sequences in one order and commit in the other, with a safety
+ * lag short enough for the test to wait for.
+ */
+@QuarkusTest
+@TestProfile(ClinicServiceChangeHorizonTests.SafetyLagProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class ClinicServiceChangeHorizonTests {
+
+    private static final String TEST_DATA = "RUNSCRIPT FROM 'classpath:db/migration/V9999.0.1__testdata.sql'";
+    private static final long SAFETY_LAG_MILLIS = 2000;
+    private static final Set<String> OWNERS = Set.of(ChangeSet.OWNER);
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    UserTransaction userTransaction;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @BeforeEach
+    void loadTestData() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(TEST_DATA);
+        }
+    }
+
+    @Test
+    void shouldNotSkipChangeThatCommitsAfterLaterOne() throws Exception {
+        long since = awaitHorizon();
+
+        // the first transaction takes its change sequence and stays open while the second one commits
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Owner first = owner("First");
+        CompletableFuture<Void> firstTransaction = CompletableFuture.runAsync(() -> {
+            // the session needs a request context to resolve its tenant
+            ManagedContext requestContext = Arc.container().requestContext();
+            requestContext.activate();
+            try {
+                userTransaction.begin();
+                clinicService.saveOwner(first);
+                written.countDown();
+                commit.await(10, TimeUnit.SECONDS);
+                userTransaction.commit();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                requestContext.terminate();
+            }
+        });
+        assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+        Owner second = owner("Second");
+        clinicService.saveOwner(second);
+        assertThat(second.getChangeSeq()).isGreaterThan(first.getChangeSeq());
+
+        ChangeSet changes = clinicService.findChanges(since, 100, OWNERS);
+        assertThat(changes.getOwners()).extracting(Owner::getId).doesNotContain(second.getId());
+        assertThat(changes.getNext()).isLessThan(first.getChangeSeq());
+
+        commit.countDown();
+        firstTransaction.get(10, TimeUnit.SECONDS);
+        List<Integer> synced = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + SAFETY_LAG_MILLIS * 3;
+        while (changes.getNext() < second.getChangeSeq() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            changes = clinicService.findChanges(changes.getNext(), 100, OWNERS);
+            changes.getOwners().forEach(owner -> synced.add(owner.getId()));
+        }
+        assertThat(synced).contains(first.getId(), second.getId());
+    }
+
+    /**
+     * @return the change sequence the horizon has reached once its first sample is old enough
+     */
+    private long awaitHorizon() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SAFETY_LAG_MILLIS * 3;
+        ChangeSet changes = clinicService.findChanges(0, 1000, OWNERS);
+        while (changes.getNext() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            changes = clinicService.findChanges(0, 1000, OWNERS);
+        }
+        assertThat(changes.getNext()).isPositive();
+        return changes.getNext();
+    }
+
+    private static Owner owner(String firstName) {
+        Owner owner = new Owner();
+        owner.setFirstName(firstName);
+        owner.setLastName("Horizon");
+        owner.setAddress("4, Evans Street");
+        owner.setCity("Wollongong");
+        owner.setTelephone("4444444444");
+        return owner;
+    }
+
+    public static class SafetyLagProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("petclinic.sync.safety-lag", "PT" + SAFETY_LAG_MILLIS / 1000 + "S");
+        }
+    }
+}
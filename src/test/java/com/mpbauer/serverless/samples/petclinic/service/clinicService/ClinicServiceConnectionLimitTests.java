@@ -0,0 +1,140 @@
+package com.mpbauer.serverless.samples.petclinic.service.clinicService;
+
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.service.Bulkhead;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimit;
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimitExceededException;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs with a single permit, so one caller holding it keeps every other caller from the database. The calls are
+ * rejected before they open a transaction, the tests need no data.
+ * <p>
+ * The read and bulk bulkheads also run one call at a time. The bulk bulkhead has no queue and the read bulkhead sheds
+ * every call that would have to wait.
+ */
+@QuarkusTest
+@TestProfile(ClinicServiceConnectionLimitTests.SinglePermitProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class ClinicServiceConnectionLimitTests {
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    ConnectionLimit connectionLimit;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    @Test
+    void shouldFailWhenNoPermitBecomesAvailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> holder = hold(Bulkhead.READ, release);
+        long timeouts = rejected("bulk", "timeout");
+
+        assertThatThrownBy(() -> clinicService.findAllOwners()).isInstanceOf(ConnectionLimitExceededException.class);
+        assertThat(rejected("bulk", "timeout")).isEqualTo(timeouts + 1);
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        assertThat(connectionLimit.execute(() -> Boolean.TRUE)).isTrue();
+    }
+
+    @Test
+    void shouldRejectBulkCallRightAwayWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> holder = hold(Bulkhead.BULK, release);
+        long queueFull = rejected("bulk", "queue-full");
+        try {
+            assertThatThrownBy(() -> clinicService.findOwnersPage(null, 10))
+                .isInstanceOf(ConnectionLimitExceededException.class)
+                .hasMessageContaining("waiting");
+            assertThat(rejected("bulk", "queue-full")).isEqualTo(queueFull + 1);
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void shouldShedReadCallThatWouldWait() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> holder = hold(Bulkhead.READ, release);
+        long shed = rejected("read", "shed");
+        try {
+            assertThatThrownBy(() -> clinicService.findOwnerById(1, Owner.GRAPH_SUMMARY))
+                .isInstanceOfSatisfying(ConnectionLimitExceededException.class,
+                    e -> assertThat(e.getRetryAfterSeconds()).isPositive());
+            assertThat(rejected("read", "shed")).isEqualTo(shed + 1);
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void shouldNotTakeSecondPermitInNestedCall() throws Exception {
+        assertThat(connectionLimit.execute(() -> connectionLimit.execute(() -> Boolean.TRUE))).isTrue();
+    }
+
+    /**
+     * Holds a permit of the bulkhead until <code>release</code> is counted down.
+     */
+    private CompletableFuture<Object> hold(Bulkhead bulkhead, CountDownLatch release) throws InterruptedException {
+        CountDownLatch acquired = new CountDownLatch(1);
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return connectionLimit.execute(bulkhead, () -> {
+                    acquired.countDown();
+                    return release.await(10, TimeUnit.SECONDS);
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(acquired.await(10, TimeUnit.SECONDS)).isTrue();
+        return holder;
+    }
+
+    private long rejected(String bulkhead, String reason) {
+        Counter counter = metricRegistry.getCounters().get(
+            new MetricID("petclinic.bulkhead.rejected", new Tag("bulkhead", bulkhead), new Tag("reason", reason)));
+        return counter == null ? 0 : counter.getCount();
+    }
+
+    public static class SinglePermitProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "petclinic.datasource.max-concurrency", "1",
+                "petclinic.datasource.max-wait", "PT0.1S",
+                "petclinic.bulkhead.read.max-concurrency", "1",
+                "petclinic.bulkhead.bulk.max-concurrency", "1",
+                "petclinic.bulkhead.bulk.max-queue", "0",
+                "petclinic.bulkhead.read.shed-wait", "0S");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.mpbauer.serverless.samples.petclinic.service.clinicService;
+
+import com.mpbauer.serverless.samples.petclinic.model.Owner;
+import com.mpbauer.serverless.samples.petclinic.model.Specialty;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.mpbauer.serverless.samples.petclinic.service.ConnectionLimitExceededException;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.cache.CacheManager;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Routes reads to a second H2 database standing in for the read replica. The replica gets the same test data as the
+ * primary, but owner 1 is renamed so the tests can tell where a read went.
+ * <p>
+ * The replica pool has a single connection and the bulk bulkhead runs one call at a time, so a test can starve the
+ * replica while the primary is idle.
+ */
+@QuarkusTest
+@TestProfile(ClinicServiceReplicaTests.ReplicaProfile.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class ClinicServiceReplicaTests {
+
+    private static final String TEST_DATA = "RUNSCRIPT FROM 'classpath:db/migration/V9999.0.1__testdata.sql'";
+
+    @Inject
+    ClinicService clinicService;
+
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    AgroalDataSource primary;
+
+    @Inject
+    @DataSource("replica")
+    AgroalDataSource replica;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    @BeforeEach
+    void loadTestData() throws SQLException {
+        execute(primary, TEST_DATA);
+        execute(replica, TEST_DATA);
+        execute(replica, "UPDATE owners SET first_name = 'Replicated' WHERE id = 1");
+        clinicCaches.invalidateAll(cacheManager.getCacheNames().toArray(new String[0]));
+    }
+
+    @Test
+    void shouldReadFromReplica() {
+        assertThat(clinicService.findOwnerById(1).getFirstName()).isEqualTo("Replicated");
+        assertThat(clinicService.findAllOwners()).extracting(Owner::getFirstName).contains("Replicated");
+    }
+
+    @Test
+    void shouldReadOwnWritesFromPrimaryWithinWindow() throws InterruptedException {
+        Owner owner = clinicService.findOwnerById(2);
+        owner.setCity("Madison");
+        clinicService.saveOwner(owner);
+
+        // lists are not cached
+        assertThat(clinicService.findAllOwners()).extracting(Owner::getFirstName).contains("George");
+        assertThat(clinicService.findOwnerById(2).getCity()).isEqualTo("Madison");
+
+        Thread.sleep(ReplicaProfile.WINDOW_MILLIS + 100);
+        assertThat(clinicService.findAllOwners()).extracting(Owner::getFirstName).contains("Replicated");
+    }
+
+    @Test
+    void shouldNotKeepReplicaEntriesOfSecondLevelCacheAfterWrite() throws Exception {
+        // loads specialty 1 from the replica into the second-level cache
+        Specialty specialty = clinicService.findSpecialtyById(1);
+        assertThat(specialty.getName()).isEqualTo("radiology");
+
+        Specialty renamed = new Specialty();
+        renamed.setId(specialty.getId());
+        renamed.setVersion(specialty.getVersion());
+        renamed.setName("radiography");
+        clinicService.saveSpecialty(renamed);
+        execute(replica, "UPDATE specialties SET name = 'radiography' WHERE id = 1");
+
+        Thread.sleep(ReplicaProfile.WINDOW_MILLIS + 100);
+        assertThat(clinicService.findSpecialtyById(1).getName()).isEqualTo("radiography");
+    }
+
+    @Test
+    void shouldShedReadWhenReplicaPoolIsBusy() throws Exception {
+        Thread.sleep(ReplicaProfile.WINDOW_MILLIS + 100);
+        CompletableFuture<Collection<Owner>> waiting;
+        try (Connection held = replica.getConnection()) {
+            // the next samples of the pools cover only the wait of the call below
+            assertThat(acquireWait("primary").getValue()).isNotNull();
+            assertThat(acquireWait("replica").getValue()).isNotNull();
+            // takes the bulk permit and waits for the replica connection
+            waiting = CompletableFuture.supplyAsync(() -> {
+                ManagedContext requestContext = Arc.container().requestContext();
+                requestContext.activate();
+                try {
+                    return clinicService.findAllOwners();
+                } finally {
+                    requestContext.terminate();
+                }
+            });
+            Thread.sleep(500);
+
+            assertThatThrownBy(() -> clinicService.findAllOwners())
+                .isInstanceOf(ConnectionLimitExceededException.class)
+                .hasMessageContaining("too busy");
+        }
+        assertThat(waiting.get(10, TimeUnit.SECONDS)).extracting(Owner::getFirstName).contains("Replicated");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Gauge<Long> acquireWait(String dataSource) {
+        return metricRegistry.getGauges().get(
+            new MetricID("petclinic.datasource.acquire-wait", new Tag("datasource", dataSource)));
+    }
+
+    private static void execute(AgroalDataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public static class ReplicaProfile implements QuarkusTestProfile {
+
+        static final long WINDOW_MILLIS = 500;
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "petclinic.replica.enabled", "true",
+                "petclinic.replica.read-your-writes-window", "PT" + WINDOW_MILLIS / 1000.0 + "S",
+                "quarkus.datasource.replica.jdbc.max-size", "1",
+                "petclinic.bulkhead.bulk.max-concurrency", "1");
+        }
+    }
+}
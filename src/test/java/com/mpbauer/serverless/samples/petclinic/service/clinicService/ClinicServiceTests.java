@@ -19,18 +19,37 @@ import com.mpbauer.serverless.samples.petclinic.config.QuarkusDataSourceProvider
 import com.mpbauer.serverless.samples.petclinic.model.*;
 import com.mpbauer.serverless.samples.petclinic.repository.PetTypeRepository;
 import com.mpbauer.serverless.samples.petclinic.repository.VetRepository;
+import com.mpbauer.serverless.samples.petclinic.service.ClinicCaches;
 import com.mpbauer.serverless.samples.petclinic.service.ClinicService;
+import com.mpbauer.serverless.samples.petclinic.service.ClusterCacheInvalidation;
 import com.radcortez.flyway.test.annotation.DataSource;
 import com.radcortez.flyway.test.annotation.FlywayTest;
+import io.quarkus.cache.CacheManager;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
 import io.quarkus.test.junit.QuarkusTest;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
 import javax.transaction.Transactional;
+import javax.transaction.UserTransaction;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -59,6 +78,32 @@ class ClinicServiceTests {
     @Inject
     VetRepository vetRepository;
 
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    @RegistryType(type = MetricRegistry.Type.APPLICATION)
+    MetricRegistry metricRegistry;
+
+    @Inject
+    ClinicCaches clinicCaches;
+
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    UserTransaction userTransaction;
+
+    @Inject
+    ClusterCacheInvalidation clusterCacheInvalidation;
+
+    @BeforeEach
+    void clearCaches() {
+        // the database is reset before every test, the caches are not
+        clinicCaches.invalidateAll(cacheManager.getCacheNames().toArray(new String[0]));
+        entityManagerFactory.getCache().evictAll();
+    }
+
     @Test
     void shouldFindOwnersByLastName() {
         Collection<Owner> owners = this.clinicService.findOwnerByLastName("Davis");
@@ -68,6 +113,20 @@ class ClinicServiceTests {
         assertThat(owners.isEmpty()).isTrue();
     }
 
+    @Test
+    void shouldFindOwnerSummariesByLastName() {
+        List<OwnerSummary> owners = new ArrayList<>(this.clinicService.findOwnerSummariesByLastName("Davis"));
+        assertThat(owners).extracting(OwnerSummary::getId).containsExactly(2, 4);
+        assertThat(owners.get(0).getPets()).extracting(OwnerSummary.PetSummary::getName).containsExactly("Basil");
+        assertThat(owners.get(1).getPets()).extracting(OwnerSummary.PetSummary::getName).containsExactly("Iggy");
+
+        owners = new ArrayList<>(this.clinicService.findOwnerSummariesByLastName("Coleman"));
+        assertThat(owners).hasSize(1);
+        assertThat(owners.get(0).getPets()).extracting(OwnerSummary.PetSummary::getName).containsExactly("Max", "Samantha");
+
+        assertThat(this.clinicService.findOwnerSummariesByLastName("Daviss")).isEmpty();
+    }
+
     @Test
     void shouldFindSingleOwnerWithPet() {
         Owner owner = this.clinicService.findOwnerById(1);
@@ -111,6 +170,29 @@ class ClinicServiceTests {
         assertThat(owner.getLastName()).isEqualTo(newLastName);
     }
 
+    @Test
+    void shouldUpdateOwnerWithoutChangingCachedOwner() {
+        // no test transaction, which would share its entities with the lookups
+        Owner cachedOwner = this.clinicService.findOwnerById(1);
+        String oldLastName = cachedOwner.getLastName();
+        Owner owner = new Owner();
+        owner.setFirstName(cachedOwner.getFirstName());
+        owner.setLastName(oldLastName + "X");
+        owner.setAddress(cachedOwner.getAddress());
+        owner.setCity(cachedOwner.getCity());
+        owner.setTelephone(cachedOwner.getTelephone());
+
+        Owner updatedOwner = this.clinicService.updateOwner(1, owner);
+
+        assertThat(updatedOwner.getLastName()).isEqualTo(oldLastName + "X");
+        assertThat(cachedOwner.getLastName()).isEqualTo(oldLastName);
+        assertThat(this.clinicService.findOwnerById(1).getLastName()).isEqualTo(oldLastName + "X");
+        assertThat(this.clinicService.updateOwner(-1, owner)).isNull();
+
+        owner.setLastName(oldLastName);
+        this.clinicService.updateOwner(1, owner);
+    }
+
     @Test
     void shouldFindPetWithCorrectId() {
         Pet pet7 = this.clinicService.findPetById(7);
@@ -127,7 +209,7 @@ class ClinicServiceTests {
 
         Pet pet = new Pet();
         pet.setName("bowser");
-        pet.setType(petTypeRepository.findById(2));
+        pet.setType(petTypeRepository.findById(2).orElseThrow());
         pet.setBirthDate(new Date());
         owner6.addPet(pet);
         assertThat(owner6.getPets().size()).isEqualTo(found + 1);
@@ -141,6 +223,26 @@ class ClinicServiceTests {
         assertThat(pet.getId()).isNotNull();
     }
 
+    @Test
+    void shouldFindPetsByOwnerIdsOrderedByNameIgnoringCase() throws Exception {
+        userTransaction.begin();
+        try {
+            Owner owner3 = this.clinicService.findOwnerById(3);
+            Pet pet = new Pet();
+            pet.setName("kiwi");
+            pet.setType(petTypeRepository.findById(1).orElseThrow());
+            pet.setBirthDate(new Date());
+            owner3.addPet(pet);
+            this.clinicService.savePet(pet);
+
+            assertThat(this.clinicService.findPetsByOwnerIds(List.of(3)))
+                .extracting(Pet::getName)
+                .containsExactly("Jewel", "kiwi", "Rosy");
+        } finally {
+            userTransaction.rollback();
+        }
+    }
+
     @Test
     @Transactional
     void shouldUpdatePetName() throws Exception {
@@ -155,11 +257,35 @@ class ClinicServiceTests {
         assertThat(pet7.getName()).isEqualTo(newName);
     }
 
+    @Test
+    void shouldUpdatePetAndMoveItToAnotherOwner() {
+        // no test transaction, which would share its entities with the lookups
+        Pet cachedPet = this.clinicService.findPetById(7);
+        Owner newOwner = this.clinicService.findOwnerById(3);
+        int found = newOwner.getPets().size();
+        Pet pet = new Pet();
+        pet.setName(cachedPet.getName() + "X");
+        pet.setBirthDate(cachedPet.getBirthDate());
+        pet.setType(cachedPet.getType());
+        pet.setOwner(newOwner);
+
+        this.clinicService.updatePet(7, pet);
+
+        assertThat(cachedPet.getOwner().getId()).isNotEqualTo(3);
+        assertThat(this.clinicService.findPetById(7).getName()).isEqualTo(cachedPet.getName() + "X");
+        assertThat(this.clinicService.findOwnerById(3).getPets()).hasSize(found + 1);
+        assertThat(this.clinicService.updatePet(-1, pet)).isNull();
+
+        pet.setName(cachedPet.getName());
+        pet.setOwner(cachedPet.getOwner());
+        this.clinicService.updatePet(7, pet);
+    }
+
     @Test
     void shouldFindVets() {
         Collection<Vet> vets = this.clinicService.findVets();
 
-        Vet vet = vetRepository.findById(3);
+        Vet vet = vetRepository.findById(3, Vet.GRAPH_DETAIL).orElseThrow();
         assertThat(vet.getLastName()).isEqualTo("Douglas");
         assertThat(vet.getNrOfSpecialties()).isEqualTo(2);
         assertThat(vet.getSpecialties().get(0).getName()).isEqualTo("dentistry");
@@ -182,6 +308,36 @@ class ClinicServiceTests {
         assertThat(visit.getId()).isNotNull();
     }
 
+    @Test
+    void shouldKeepVisitsOrderedByDate() {
+        Pet pet7 = this.clinicService.findPetById(7);
+        Visit visit = new Visit();
+        visit.setDate(new GregorianCalendar(2012, Calendar.DECEMBER, 31).getTime());
+        visit.setDescription("checkup");
+        pet7.addVisit(visit);
+        assertThat(pet7.getVisits()).extracting(Visit::getDescription).containsExactly("checkup", "rabies shot", "spayed");
+        this.clinicService.saveVisit(visit);
+
+        assertThat(this.clinicService.findPetById(7).getVisits())
+            .extracting(Visit::getDescription).containsExactly("checkup", "rabies shot", "spayed");
+        assertThat(this.clinicService.findOwnerById(6).getPet("Samantha").getVisits())
+            .extracting(Visit::getDescription).containsExactly("checkup", "rabies shot", "spayed");
+    }
+
+    @Test
+    void shouldFindPetOfOwnerByNameIgnoringCase() {
+        Owner owner6 = this.clinicService.findOwnerById(6);
+        assertThat(owner6.getPets()).extracting(Pet::getName).containsExactly("Max", "Samantha");
+        assertThat(owner6.getPet("samantha").getId()).isEqualTo(7);
+        assertThat(owner6.getPet("Leo")).isNull();
+
+        Pet pet = new Pet();
+        pet.setName("max");
+        owner6.addPet(pet);
+        assertThat(owner6.getPets()).extracting(Pet::getName).containsExactly("Max", "max", "Samantha");
+        assertThat(owner6.getPet("MAX", true).getId()).isEqualTo(8);
+    }
+
     @Test
     void shouldFindVisitsByPetId() throws Exception {
         Collection<Visit> visits = this.clinicService.findVisitsByPetId(7);
@@ -334,6 +490,167 @@ class ClinicServiceTests {
         assertThat(owner3.getFirstName()).isEqualTo("Eduardo");
     }
 
+    @Test
+    void shouldCountLookupMissesPerEntity(){
+        Tag owner = new Tag("entity", "Owner");
+        Tag pet = new Tag("entity", "Pet");
+        long ownerMissesBefore = count("petclinic.lookup.misses", owner);
+        long petMissesBefore = count("petclinic.lookup.misses", pet);
+
+        assertThat(this.clinicService.findOwnerById(-1)).isNull();
+        assertThat(this.clinicService.findOwnerById(-1)).isNull();
+        assertThat(this.clinicService.findOwnerById(-2)).isNull();
+        assertThat(this.clinicService.findOwnerById(1)).isNotNull();
+
+        assertThat(count("petclinic.lookup.misses", owner)).isEqualTo(ownerMissesBefore + 3);
+        assertThat(count("petclinic.lookup.misses", pet)).isEqualTo(petMissesBefore);
+    }
+
+    @Test
+    void shouldNotCacheMisses(){
+        Tag petTypes = new Tag("cache", ClinicCaches.PET_TYPES);
+        long hitsBefore = count("petclinic.cache.hits", petTypes);
+        long missesBefore = count("petclinic.cache.misses", petTypes);
+
+        assertThat(this.clinicService.findPetTypeById(-1)).isNull();
+        assertThat(this.clinicService.findPetTypeById(-1)).isNull();
+
+        assertThat(count("petclinic.cache.misses", petTypes)).isEqualTo(missesBefore + 2);
+        assertThat(count("petclinic.cache.hits", petTypes)).isEqualTo(hitsBefore);
+    }
+
+    @Test
+    void shouldCountCacheHitsAndMisses(){
+        Tag petTypes = new Tag("cache", ClinicCaches.PET_TYPES);
+        long hitsBefore = count("petclinic.cache.hits", petTypes);
+        long missesBefore = count("petclinic.cache.misses", petTypes);
+
+        PetType petType = this.clinicService.findPetTypeById(1);
+        assertThat(this.clinicService.findPetTypeById(1)).isSameAs(petType);
+        assertThat(count("petclinic.cache.misses", petTypes)).isEqualTo(missesBefore + 1);
+        assertThat(count("petclinic.cache.hits", petTypes)).isEqualTo(hitsBefore + 1);
+
+        petType.setName("kitten");
+        this.clinicService.savePetType(petType);
+        assertThat(this.clinicService.findPetTypeById(1).getName()).isEqualTo("kitten");
+        assertThat(count("petclinic.cache.misses", petTypes)).isEqualTo(missesBefore + 2);
+    }
+
+    @Test
+    void shouldInvalidateCachedOwnerWhenPetIsAdded(){
+        Owner owner = this.clinicService.findOwnerById(6);
+        int found = owner.getPets().size();
+
+        Pet pet = new Pet();
+        pet.setName("bowser");
+        pet.setType(this.clinicService.findPetTypeById(2));
+        pet.setBirthDate(new Date());
+        owner.addPet(pet);
+        this.clinicService.savePet(pet);
+
+        assertThat(this.clinicService.findOwnerById(6).getPets()).hasSize(found + 1);
+    }
+
+    @Test
+    void shouldFindAllOwnersWithConstantNumberOfStatements(){
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        this.clinicService.findAllOwners();
+        long statements = statistics.getPrepareStatementCount();
+
+        PetType cat = this.clinicService.findPetTypeById(1);
+        for (int i = 0; i < 5; i++) {
+            Owner owner = new Owner();
+            owner.setFirstName("Sam" + i);
+            owner.setLastName("Schultz");
+            owner.setAddress("4, Evans Street");
+            owner.setCity("Wollongong");
+            owner.setTelephone("4444444444");
+            Pet pet = new Pet();
+            pet.setName("bowser" + i);
+            pet.setType(cat);
+            pet.setBirthDate(new Date());
+            owner.addPet(pet);
+            this.clinicService.saveOwner(owner);
+        }
+
+        statistics.clear();
+        Collection<Owner> owners = this.clinicService.findAllOwners();
+        assertThat(owners).hasSize(15);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+
+    @Test
+    void shouldEvictEntriesInvalidatedByOtherInstances(){
+        Owner owner = this.clinicService.findOwnerById(1);
+        clusterCacheInvalidation.onNotification(clusterCacheInvalidation.getInstanceId() + " owners 1");
+        assertThat(this.clinicService.findOwnerById(1)).isSameAs(owner);
+
+        clusterCacheInvalidation.onNotification("other-instance owners 1");
+        assertThat(this.clinicService.findOwnerById(1)).isNotSameAs(owner);
+
+        CacheRegionStatistics vetRegion = entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+            .getDomainDataRegionStatistics(Vet.class.getName());
+        Collection<Vet> vets = this.clinicService.findAllVets();
+        assertThat(vetRegion.getElementCountInMemory()).isPositive();
+        clusterCacheInvalidation.onNotification("other-instance vets *");
+        assertThat(vetRegion.getElementCountInMemory()).isZero();
+        assertThat(this.clinicService.findAllVets()).isNotSameAs(vets);
+    }
+
+    @Test
+    void shouldLoadReferenceDataFromSecondLevelCache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        inTransaction(() -> vetRepository.findAll(Vet.GRAPH_DETAIL));
+        inTransaction(() -> petTypeRepository.findAll());
+        long statements = statistics.getPrepareStatementCount();
+
+        Collection<Vet> vets = inTransaction(() -> vetRepository.findAll(Vet.GRAPH_DETAIL));
+        Collection<PetType> petTypes = inTransaction(() -> petTypeRepository.findAll());
+        Vet vetById = inTransaction(() -> vetRepository.findById(2, Vet.GRAPH_DETAIL).orElseThrow());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+        assertThat(vets).hasSize(6);
+        assertThat(petTypes).hasSize(6);
+        Vet vet = vets.stream().filter(v -> v.getId() == 3).findFirst().orElseThrow();
+        assertThat(vet.getSpecialties()).extracting(Specialty::getName).containsExactly("dentistry", "surgery");
+        assertThat(vetById.getSpecialties()).extracting(Specialty::getName).containsExactly("radiology");
+    }
+
+    @Test
+    void shouldNotFlushReadOnlyQueries(){
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        this.clinicService.findAllOwners();
+        this.clinicService.findOwnerById(1);
+        this.clinicService.findVets();
+        assertThat(statistics.getFlushCount()).isZero();
+
+        Owner owner = this.clinicService.findOwnerById(1);
+        owner.setCity("Springfield");
+        this.clinicService.saveOwner(owner);
+        assertThat(statistics.getFlushCount()).isPositive();
+        assertThat(this.clinicService.findOwnerById(1).getCity()).isEqualTo("Springfield");
+    }
+
+    @Test
+    void shouldFindOwnersPageAfterId(){
+        List<Owner> firstPage = this.clinicService.findOwnersPage(null, 3);
+        assertThat(firstPage).extracting(Owner::getId).containsExactly(1, 2, 3);
+
+        List<Owner> secondPage = this.clinicService.findOwnersPage(3, 3);
+        assertThat(secondPage).extracting(Owner::getId).containsExactly(4, 5, 6);
+    }
+
+    @Test
+    void shouldFindVisitsPageAfterId(){
+        List<Visit> page = this.clinicService.findVisitsPage(2, 10);
+        assertThat(page).extracting(Visit::getId).containsExactly(3, 4);
+    }
+
     @Test
     @Transactional
     void shouldDeleteOwner(){
@@ -464,4 +781,18 @@ class ClinicServiceTests {
 		}
         assertThat(specialty).isNull();
     }
+
+    private <T> T inTransaction(Callable<T> work) throws Exception {
+        userTransaction.begin();
+        try {
+            return work.call();
+        } finally {
+            userTransaction.commit();
+        }
+    }
+
+    private long count(String name, Tag tag) {
+        Counter counter = metricRegistry.getCounters().get(new MetricID(name, tag));
+        return counter == null ? 0 : counter.getCount();
+    }
 }